@@ -0,0 +1,81 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.SpanAndEndpoint.StaticSpanAndEndpoint;
+import com.twitter.zipkin.gen.Annotation;
+import com.twitter.zipkin.gen.BinaryAnnotation;
+import com.twitter.zipkin.gen.Endpoint;
+import com.twitter.zipkin.gen.Span;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import zipkin.Constants;
+import zipkin.TraceKeys;
+
+/**
+ * Measures the annotations recorded for a traced server request: start and end annotations, and
+ * two tags. Run with {@code -prof gc} to compare gc.alloc.rate.norm between recording into the
+ * span's arrays, and the model objects previously allocated per annotation.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(1)
+public class AnnotationSubmitterBenchmarks {
+  static final Endpoint ENDPOINT = Endpoint.create("backend", 192 << 24 | 168 << 16 | 2, 9000);
+
+  @Benchmark
+  public Span tracedRequest() {
+    Span span = new Span().setTrace_id(1L).setId(1L).setName("get");
+    AnnotationSubmitter submitter =
+        AnnotationSubmitter.create(StaticSpanAndEndpoint.create(span, ENDPOINT));
+    submitter.submitStartAnnotation(Constants.SERVER_RECV);
+    submitter.submitBinaryAnnotation(TraceKeys.HTTP_URL, "/api/users");
+    submitter.submitBinaryAnnotation(TraceKeys.HTTP_STATUS_CODE, "200");
+    submitter.submitEndAnnotation(Constants.SERVER_SEND, EMPTY);
+    return span;
+  }
+
+  /** What the annotation submitter did before recording into arrays */
+  @Benchmark
+  public Span compare_tracedRequest_modelObjects() {
+    Span span = new Span().setTrace_id(1L).setId(1L).setName("get");
+    AnnotationSubmitter submitter =
+        AnnotationSubmitter.create(StaticSpanAndEndpoint.create(span, ENDPOINT));
+    long start = submitter.currentTimeMicroseconds();
+    span.setTimestamp(start);
+    span.addToAnnotations(Annotation.create(start, Constants.SERVER_RECV, ENDPOINT));
+    span.addToBinary_annotations(
+        BinaryAnnotation.create(TraceKeys.HTTP_URL, "/api/users", ENDPOINT));
+    span.addToBinary_annotations(
+        BinaryAnnotation.create(TraceKeys.HTTP_STATUS_CODE, "200", ENDPOINT));
+    long end = submitter.currentTimeMicroseconds();
+    span.addToAnnotations(Annotation.create(end, Constants.SERVER_SEND, ENDPOINT));
+    span.setDuration(end - start);
+    EMPTY.collect(span);
+    return span;
+  }
+
+  static final SpanCollector EMPTY = new EmptySpanCollector();
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(".*" + AnnotationSubmitterBenchmarks.class.getSimpleName() + ".*")
+        .addProfiler("gc")
+        .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,138 @@
+package com.github.kristofa.brave;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the overhead of propagating spans to executor tasks. The {@code direct_} benchmarks run
+ * tasks on the calling thread, so they only measure wrapping, capturing and restoring spans. The
+ * {@code forkJoinPool_} benchmarks include handing the task to a pool thread and waiting for it.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(1)
+@State(Scope.Benchmark)
+public class ExecutorBenchmarks {
+  static final int IP = 192 << 24 | 168 << 16 | 2;
+  static final ThreadLocalServerClientAndLocalSpanState THREAD_LOCAL =
+      new ThreadLocalServerClientAndLocalSpanState(IP, 9000, "backend");
+  static final ScopedServerClientAndLocalSpanState SCOPED =
+      new ScopedServerClientAndLocalSpanState(IP, 9000, "backend");
+  static final Runnable TASK = new Runnable() {
+    @Override public void run() {
+    }
+  };
+
+  /** Runs tasks on the calling thread. */
+  static final class DirectExecutorService extends AbstractExecutorService {
+    @Override public void execute(Runnable command) {
+      command.run();
+    }
+
+    @Override public void shutdown() {
+    }
+
+    @Override public List<Runnable> shutdownNow() {
+      return Collections.emptyList();
+    }
+
+    @Override public boolean isShutdown() {
+      return false;
+    }
+
+    @Override public boolean isTerminated() {
+      return false;
+    }
+
+    @Override public boolean awaitTermination(long timeout, TimeUnit unit) {
+      return true;
+    }
+  }
+
+  static final ExecutorService DIRECT = new DirectExecutorService();
+  static final ExecutorService DIRECT_SERVER_SPAN =
+      new BraveExecutorService(DIRECT, new ServerSpanThreadBinder(THREAD_LOCAL));
+  static final ExecutorService DIRECT_THREAD_LOCAL =
+      BraveExecutors.executorService(DIRECT, THREAD_LOCAL);
+  static final ExecutorService DIRECT_SCOPED = BraveExecutors.executorService(DIRECT, SCOPED);
+
+  ForkJoinPool forkJoinPool;
+  ExecutorService forkJoinPoolScoped;
+
+  @Setup public void setup() {
+    ServerSpan serverSpan = ServerSpan.create(1L, 1L, null, "get");
+    THREAD_LOCAL.setCurrentServerSpan(serverSpan);
+    SCOPED.setCurrentServerSpan(serverSpan);
+    forkJoinPool = new ForkJoinPool();
+    forkJoinPoolScoped = BraveExecutors.executorService(forkJoinPool, SCOPED);
+  }
+
+  @TearDown public void tearDown() {
+    forkJoinPool.shutdownNow();
+  }
+
+  @Benchmark
+  public void direct_untraced() {
+    DIRECT.execute(TASK);
+  }
+
+  /** Propagates all spans via the ServerSpanThreadBinder */
+  @Benchmark
+  public void direct_braveExecutorService() {
+    DIRECT_SERVER_SPAN.execute(TASK);
+  }
+
+  @Benchmark
+  public void direct_threadLocal() {
+    DIRECT_THREAD_LOCAL.execute(TASK);
+  }
+
+  @Benchmark
+  public void direct_scoped() {
+    DIRECT_SCOPED.execute(TASK);
+  }
+
+  @Benchmark
+  public Object forkJoinPool_untraced() throws ExecutionException, InterruptedException {
+    return forkJoinPool.submit(TASK).get();
+  }
+
+  @Benchmark
+  public Object forkJoinPool_scoped() throws ExecutionException, InterruptedException {
+    return forkJoinPoolScoped.submit(TASK).get();
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(".*" + ExecutorBenchmarks.class.getSimpleName() + ".*")
+        .addProfiler("gc")
+        .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,83 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.http.DefaultSpanNameProvider;
+import com.github.kristofa.brave.http.HttpRuleSampler;
+import com.github.kristofa.brave.http.HttpServerRequest;
+import com.github.kristofa.brave.http.HttpServerRequestAdapter;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures choosing a sampler per request with {@link HttpRuleSampler}, which should cost about
+ * the same as the sampling decision itself.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(1)
+public class HttpRuleSamplerBenchmarks {
+  static final HttpRuleSampler RULES;
+
+  static {
+    HttpRuleSampler.Builder builder = HttpRuleSampler.builder()
+        .addPath(null, "/health", Sampler.NEVER_SAMPLE)
+        .addPath("POST", "/api/checkout", Sampler.ALWAYS_SAMPLE);
+    for (int i = 0; i < 50; i++) {
+      builder.addPath(null, "/api/v1/resource" + i, Sampler.create(0.5f));
+    }
+    RULES = builder.build();
+  }
+
+  static final HttpServerRequestAdapter MATCH = adapter("GET", "/api/v1/resource42/items?id=1");
+  static final HttpServerRequestAdapter NO_MATCH = adapter("GET", "/static/app.js");
+
+  @Benchmark
+  public Sampler sampler_match() {
+    return RULES.sampler("get", MATCH);
+  }
+
+  @Benchmark
+  public Sampler sampler_noMatch() {
+    return RULES.sampler("get", NO_MATCH);
+  }
+
+  static HttpServerRequestAdapter adapter(final String method, String uri) {
+    final URI parsed = URI.create("http://localhost:8080" + uri);
+    return new HttpServerRequestAdapter(new HttpServerRequest() {
+      @Override public String getHttpHeaderValue(String headerName) {
+        return null;
+      }
+
+      @Override public URI getUri() {
+        return parsed;
+      }
+
+      @Override public String getHttpMethod() {
+        return method;
+      }
+    }, new DefaultSpanNameProvider());
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(".*" + HttpRuleSamplerBenchmarks.class.getSimpleName() + ".*")
+        .build();
+
+    new Runner(opt).run();
+  }
+}
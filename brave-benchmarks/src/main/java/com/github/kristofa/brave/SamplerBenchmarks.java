@@ -1,5 +1,6 @@
 package com.github.kristofa.brave;
 
+import java.util.BitSet;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
 import org.openjdk.jmh.annotations.Benchmark;
@@ -30,6 +31,9 @@ import org.openjdk.jmh.runner.options.OptionsBuilder;
  * <p>While random sampling gives a better statistical average across all spans, it's less useful
  * than the ability to see end to end interrelated work, such as a from a specific user, or messages
  * blocking others in a queue. More sampling patterns are expected in OpenTracing and Zipkin v2.
+ *
+ * <p>Samplers are shared by all request threads, so {@link #main} runs each benchmark at 1, 4, 16
+ * and 64 threads to expose contention. When running the benchmarks jar directly, pass {@code -t}.
  */
 @Measurement(iterations = 5, time = 1)
 @Warmup(iterations = 10, time = 1)
@@ -87,6 +91,37 @@ public class SamplerBenchmarks {
 
   static final Sampler TRACE_ID_SAMPLER_COUNTING = CountingSampler.create(SAMPLE_RATE);
 
+  /**
+   * This measures the rate-limiting sampler provided with brave-core. After the first second's
+   * burst, most decisions are refusals, which don't write shared state.
+   */
+  @Benchmark
+  public boolean sampler_rateLimiting(Args args) {
+    return TRACE_ID_SAMPLER_RATE_LIMITING.isSampled(args.traceId);
+  }
+
+  static final Sampler TRACE_ID_SAMPLER_RATE_LIMITING = RateLimitingSampler.create(1000);
+
+  /**
+   * This measures the counting sampler as it was before it became lock-free, for comparison.
+   */
+  @Benchmark
+  public boolean compare_counting_synchronized(Args args) {
+    return TRACE_ID_SAMPLER_COUNTING_SYNCHRONIZED.isSampled(args.traceId);
+  }
+
+  static final Sampler TRACE_ID_SAMPLER_COUNTING_SYNCHRONIZED = new Sampler() {
+    final BitSet sampleDecisions =
+        CountingSampler.randomBitSet(100, (int) (SAMPLE_RATE * 100.0f), new Random());
+    int i; // guarded by this
+
+    @Override public synchronized boolean isSampled(long traceIdIgnored) {
+      boolean result = sampleDecisions.get(i++);
+      if (i == 100) i = 0;
+      return result;
+    }
+  };
+
   /**
    * Finagle's scala sampler samples using modulo 10000 arithmetic, which allows a minimum sample
    * rate of 0.01%.
@@ -127,10 +162,13 @@ public class SamplerBenchmarks {
 
   // Convenience main entry-point
   public static void main(String[] args) throws RunnerException {
-    Options opt = new OptionsBuilder()
-        .include(".*" + SamplerBenchmarks.class.getSimpleName() + ".*")
-        .build();
+    for (int threads : new int[] {1, 4, 16, 64}) {
+      Options opt = new OptionsBuilder()
+          .include(".*" + SamplerBenchmarks.class.getSimpleName() + ".*")
+          .threads(threads)
+          .build();
 
-    new Runner(opt).run();
+      new Runner(opt).run();
+    }
   }
 }
@@ -0,0 +1,93 @@
+package com.github.kristofa.brave;
+
+import com.twitter.zipkin.gen.Endpoint;
+import com.twitter.zipkin.gen.Span;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import zipkin.TraceKeys;
+
+/**
+ * Measures threads annotating the same span, as happens when a span is passed to callbacks or
+ * executor tasks. {@link #main} runs each benchmark at 1, 4, 16 and 64 threads to expose
+ * contention. When running the benchmarks jar directly, pass {@code -t}.
+ *
+ * <p>The shared span is replaced every so often, so that it doesn't grow without bound.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(1)
+public class SharedSpanBenchmarks {
+  static final Endpoint ENDPOINT = Endpoint.create("backend", 192 << 24 | 168 << 16 | 2, 9000);
+  static final int ANNOTATIONS_PER_SPAN = 1024;
+
+  @State(Scope.Benchmark)
+  public static class SharedSpan {
+    volatile Span span = newSpan();
+  }
+
+  @State(Scope.Thread)
+  public static class Annotations {
+    int count;
+  }
+
+  @Benchmark
+  public Span annotate(SharedSpan shared, Annotations annotations) {
+    Span span = span(shared, annotations);
+    span.addAnnotation(1L, "retry", ENDPOINT);
+    span.addBinaryAnnotation(TraceKeys.HTTP_STATUS_CODE, "200", ENDPOINT);
+    return span;
+  }
+
+  /** How each annotation was recorded before the span recorder became lock-free. */
+  @Benchmark
+  public Span compare_annotate_synchronized(SharedSpan shared, Annotations annotations) {
+    Span span = span(shared, annotations);
+    synchronized (span) {
+      span.addAnnotation(1L, "retry", ENDPOINT);
+    }
+    synchronized (span) {
+      span.addBinaryAnnotation(TraceKeys.HTTP_STATUS_CODE, "200", ENDPOINT);
+    }
+    return span;
+  }
+
+  static Span span(SharedSpan shared, Annotations annotations) {
+    if (++annotations.count == ANNOTATIONS_PER_SPAN) {
+      annotations.count = 0;
+      return shared.span = newSpan();
+    }
+    return shared.span;
+  }
+
+  static Span newSpan() {
+    return new Span().setTrace_id(1L).setId(1L).setName("get");
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    for (int threads : new int[] {1, 4, 16, 64}) {
+      Options opt = new OptionsBuilder()
+          .include(".*" + SharedSpanBenchmarks.class.getSimpleName() + ".*")
+          .threads(threads)
+          .build();
+
+      new Runner(opt).run();
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.internal.DefaultSpanCodec;
+import com.github.kristofa.brave.internal.StreamingSpanCodec;
+import com.twitter.zipkin.gen.Annotation;
+import com.twitter.zipkin.gen.BinaryAnnotation;
+import com.twitter.zipkin.gen.Endpoint;
+import com.twitter.zipkin.gen.Span;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import zipkin.Constants;
+
+/**
+ * Compares encoding a batch of spans via {@link zipkin.Span} with encoding them directly. Run with
+ * {@code -prof gc} to see the difference in gc.alloc.rate.norm.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(1)
+public class SpanCodecBenchmarks {
+  static final Endpoint CLIENT = Endpoint.create("frontend", 192 << 24 | 168 << 16 | 1, 8080);
+  static final Endpoint SERVER = Endpoint.create("backend", 192 << 24 | 168 << 16 | 2, 9000);
+  static final List<Span> BATCH = new ArrayList<Span>();
+
+  static {
+    for (long i = 1; i <= 100; i++) {
+      BATCH.add(new Span()
+          .setTrace_id(i * 31L)
+          .setParent_id(i * 31L)
+          .setId(i * 37L)
+          .setName("get /api/users")
+          .setTimestamp(1472470996199000L + i)
+          .setDuration(207000L)
+          .addToAnnotations(Annotation.create(1472470996199000L + i, Constants.CLIENT_SEND, CLIENT))
+          .addToAnnotations(Annotation.create(1472470996238000L + i, Constants.SERVER_RECV, SERVER))
+          .addToAnnotations(Annotation.create(1472470996403000L + i, Constants.SERVER_SEND, SERVER))
+          .addToAnnotations(Annotation.create(1472470996406000L + i, Constants.CLIENT_RECV, CLIENT))
+          .addToBinary_annotations(BinaryAnnotation.create("http.path", "/api/users", CLIENT))
+          .addToBinary_annotations(BinaryAnnotation.create("http.status_code", "200", SERVER)));
+    }
+  }
+
+  @Benchmark
+  public byte[] writeSpans_json_default() {
+    return DefaultSpanCodec.JSON.writeSpans(BATCH);
+  }
+
+  @Benchmark
+  public byte[] writeSpans_json_streaming() {
+    return StreamingSpanCodec.JSON.writeSpans(BATCH);
+  }
+
+  @Benchmark
+  public byte[] writeSpans_thrift_default() {
+    return DefaultSpanCodec.THRIFT.writeSpans(BATCH);
+  }
+
+  @Benchmark
+  public byte[] writeSpans_thrift_streaming() {
+    return StreamingSpanCodec.THRIFT.writeSpans(BATCH);
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(".*" + SpanCodecBenchmarks.class.getSimpleName() + ".*")
+        .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -28,6 +28,8 @@ public class SpanIdBenchmarks {
   static final byte[] sampledRootSpanBytes = sampledRootSpan.bytes();
   static final TraceId sampledRootSpanFinagle =
       TraceId$.MODULE$.deserialize(sampledRootSpanBytes).get();
+  static final String lowerHex64 = "48485a3953bb6124";
+  static final String lowerHex128 = "463ac35c9f6413ad48485a3953bb6124";
 
   @Benchmark
   public SpanId fromBytes_brave() {
@@ -59,10 +61,42 @@ public class SpanIdBenchmarks {
     return sampledRootSpanFinagle.toString();
   }
 
+  @Benchmark
+  public long convertToLong_brave() {
+    return IdConversion.convertToLong(lowerHex64);
+  }
+
+  /** How header values were parsed before, copying the string into a char array */
+  @Benchmark
+  public long convertToLong_toCharArray() {
+    long result = 0;
+    for (char c : lowerHex64.toCharArray()) {
+      result = (result << 4) | Character.digit(c, 16);
+    }
+    return result;
+  }
+
+  @Benchmark
+  public long convertToTraceId_128() {
+    return IdConversion.convertToTraceIdHigh(lowerHex128)
+        ^ IdConversion.convertToTraceId(lowerHex128);
+  }
+
+  @Benchmark
+  public String convertToString_64() {
+    return IdConversion.convertToString(0x48485a3953bb6124L);
+  }
+
+  @Benchmark
+  public String convertToString_128() {
+    return IdConversion.convertToString(0x463ac35c9f6413adL, 0x48485a3953bb6124L);
+  }
+
   // Convenience main entry-point
   public static void main(String[] args) throws RunnerException {
     Options opt = new OptionsBuilder()
         .include(".*" + SpanIdBenchmarks.class.getSimpleName() + ".*")
+        .addProfiler("gc")
         .build();
 
     new Runner(opt).run();
@@ -0,0 +1,81 @@
+package com.github.kristofa.brave;
+
+import com.twitter.zipkin.gen.SpanCodec;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import zipkin.TraceKeys;
+
+/**
+ * Measures a traced server request, from accepting the request until its span is encoded by the
+ * collector. Run with {@code -prof gc} to compare gc.alloc.rate.norm with and without a {@link
+ * SpanPool}.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(1)
+public class SpanPoolBenchmarks {
+
+  static final class EncodingSpanCollector extends AbstractSpanCollector {
+    EncodingSpanCollector() {
+      super(SpanCodec.THRIFT, new EmptySpanCollectorMetricsHandler(), 0);
+    }
+
+    @Override protected void sendSpans(ByteBuffer encoded) {
+      encoded.position(encoded.limit()); // consumed
+    }
+
+    @Override protected void sendSpans(byte[] encoded) {
+    }
+  }
+
+  static final EncodingSpanCollector COLLECTOR = new EncodingSpanCollector();
+  static final Brave POOLED = new Brave.Builder(192 << 24 | 168 << 16 | 2, 9000, "backend")
+      .spanCollector(COLLECTOR)
+      .spanPool(SpanPool.create(16)).build();
+  static final Brave UNPOOLED = new Brave.Builder(192 << 24 | 168 << 16 | 2, 9000, "backend")
+      .spanCollector(COLLECTOR).build();
+
+  @Benchmark
+  public void tracedRequest_pooled() {
+    tracedRequest(POOLED);
+  }
+
+  @Benchmark
+  public void tracedRequest_unpooled() {
+    tracedRequest(UNPOOLED);
+  }
+
+  static void tracedRequest(Brave brave) {
+    ServerTracer tracer = brave.serverTracer();
+    tracer.setStateCurrentTrace(1L, 2L, 3L, "get");
+    tracer.setServerReceived();
+    tracer.submitBinaryAnnotation(TraceKeys.HTTP_URL, "/api/users");
+    tracer.setServerSend();
+    COLLECTOR.flush();
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(".*" + SpanPoolBenchmarks.class.getSimpleName() + ".*")
+        .addProfiler("gc")
+        .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,130 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.internal.SpanSizer;
+import com.twitter.zipkin.gen.Span;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares {@link SpanQueue} strategies used by {@link FlushingSpanCollector}.
+ *
+ * <p>Each group has 1, 8 or 32 producer threads, which model request threads calling {@link
+ * FlushingSpanCollector#collect(Span)}, and a single thread that drains, which models the flusher.
+ * Look at the "offer" score of each group, along with gc.alloc.rate.norm when run with {@code -prof
+ * gc}.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SpanQueueBenchmarks {
+  static final Span SPAN = new Span().setTrace_id(1L).setId(1L).setName("get");
+  static final int SPAN_SIZE = SpanSizer.estimate(SPAN);
+
+  @State(Scope.Group)
+  public static class RingBuffer {
+    final SpanQueue queue = SpanQueue.create(SpanQueue.DEFAULT_MAX_SPANS);
+  }
+
+  @State(Scope.Group)
+  public static class Blocking {
+    final SpanQueue queue = SpanQueue.blocking(SpanQueue.DEFAULT_MAX_SPANS);
+  }
+
+  @State(Scope.Thread)
+  public static class Sink {
+    final List<Span> drained = new ArrayList<Span>(SpanQueue.DEFAULT_MAX_SPANS);
+  }
+
+  @Benchmark @Group("ringBuffer_1producer") @GroupThreads(1)
+  public boolean offer_ringBuffer_1producer(RingBuffer state) {
+    return state.queue.offer(SPAN, SPAN_SIZE);
+  }
+
+  @Benchmark @Group("ringBuffer_1producer") @GroupThreads(1)
+  public int drain_ringBuffer_1producer(RingBuffer state, Sink sink) {
+    return drain(state.queue, sink);
+  }
+
+  @Benchmark @Group("ringBuffer_8producers") @GroupThreads(8)
+  public boolean offer_ringBuffer_8producers(RingBuffer state) {
+    return state.queue.offer(SPAN, SPAN_SIZE);
+  }
+
+  @Benchmark @Group("ringBuffer_8producers") @GroupThreads(1)
+  public int drain_ringBuffer_8producers(RingBuffer state, Sink sink) {
+    return drain(state.queue, sink);
+  }
+
+  @Benchmark @Group("ringBuffer_32producers") @GroupThreads(32)
+  public boolean offer_ringBuffer_32producers(RingBuffer state) {
+    return state.queue.offer(SPAN, SPAN_SIZE);
+  }
+
+  @Benchmark @Group("ringBuffer_32producers") @GroupThreads(1)
+  public int drain_ringBuffer_32producers(RingBuffer state, Sink sink) {
+    return drain(state.queue, sink);
+  }
+
+  @Benchmark @Group("blocking_1producer") @GroupThreads(1)
+  public boolean offer_blocking_1producer(Blocking state) {
+    return state.queue.offer(SPAN, SPAN_SIZE);
+  }
+
+  @Benchmark @Group("blocking_1producer") @GroupThreads(1)
+  public int drain_blocking_1producer(Blocking state, Sink sink) {
+    return drain(state.queue, sink);
+  }
+
+  @Benchmark @Group("blocking_8producers") @GroupThreads(8)
+  public boolean offer_blocking_8producers(Blocking state) {
+    return state.queue.offer(SPAN, SPAN_SIZE);
+  }
+
+  @Benchmark @Group("blocking_8producers") @GroupThreads(1)
+  public int drain_blocking_8producers(Blocking state, Sink sink) {
+    return drain(state.queue, sink);
+  }
+
+  @Benchmark @Group("blocking_32producers") @GroupThreads(32)
+  public boolean offer_blocking_32producers(Blocking state) {
+    return state.queue.offer(SPAN, SPAN_SIZE);
+  }
+
+  @Benchmark @Group("blocking_32producers") @GroupThreads(1)
+  public int drain_blocking_32producers(Blocking state, Sink sink) {
+    return drain(state.queue, sink);
+  }
+
+  static int drain(SpanQueue queue, Sink sink) {
+    int result = queue.drainTo(sink.drained);
+    sink.drained.clear();
+    return result;
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(".*" + SpanQueueBenchmarks.class.getSimpleName() + ".*")
+        .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,109 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.ScopedServerClientAndLocalSpanState.Context;
+import com.twitter.zipkin.gen.Span;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares {@link ThreadLocalServerClientAndLocalSpanState}, which keeps each span in its own
+ * ThreadLocal, with {@link ScopedServerClientAndLocalSpanState}, which keeps them in one context.
+ */
+@Measurement(iterations = 5, time = 1)
+@Warmup(iterations = 10, time = 1)
+@Fork(3)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(1)
+public class SpanStateBenchmarks {
+  static final ServerClientAndLocalSpanState THREAD_LOCAL =
+      new ThreadLocalServerClientAndLocalSpanState(192 << 24 | 168 << 16 | 2, 9000, "backend");
+  static final ServerClientAndLocalSpanState SCOPED =
+      new ScopedServerClientAndLocalSpanState(192 << 24 | 168 << 16 | 2, 9000, "backend");
+
+  static final ServerSpan SERVER_SPAN = ServerSpan.create(1L, 1L, null, "get");
+  static final Span CLIENT_SPAN = new Span().setTrace_id(1L).setId(2L).setName("query");
+  static final Span LOCAL_SPAN = new Span().setTrace_id(1L).setId(3L).setName("encode");
+  static final Runnable TASK = new Runnable() {
+    @Override public void run() {
+    }
+  };
+
+  @Benchmark
+  public Span requestLifecycle_threadLocal() {
+    return requestLifecycle(THREAD_LOCAL);
+  }
+
+  @Benchmark
+  public Span requestLifecycle_scoped() {
+    return requestLifecycle(SCOPED);
+  }
+
+  /** How {@link BraveRunnable} hands the server span to another thread */
+  @Benchmark
+  public void handOff_threadLocal() {
+    THREAD_LOCAL.setCurrentServerSpan(SERVER_SPAN);
+    final ServerSpan serverSpan = THREAD_LOCAL.getCurrentServerSpan();
+    final Span localSpan = THREAD_LOCAL.getCurrentLocalSpan();
+    final Span clientSpan = THREAD_LOCAL.getCurrentClientSpan();
+    // on the other thread
+    THREAD_LOCAL.setCurrentServerSpan(serverSpan);
+    THREAD_LOCAL.setCurrentLocalSpan(localSpan);
+    THREAD_LOCAL.setCurrentClientSpan(clientSpan);
+    TASK.run();
+    THREAD_LOCAL.setCurrentServerSpan(null);
+    THREAD_LOCAL.setCurrentLocalSpan(null);
+    THREAD_LOCAL.setCurrentClientSpan(null);
+  }
+
+  @Benchmark
+  public void handOff_scoped() {
+    SCOPED.setCurrentServerSpan(SERVER_SPAN);
+    Context context = ScopedServerClientAndLocalSpanState.current();
+    // on the other thread
+    Context previous = context.attach();
+    try {
+      TASK.run();
+    } finally {
+      previous.attach();
+    }
+    SCOPED.setCurrentServerSpan(null);
+  }
+
+  /** The state changes a server request goes through when it calls a local and a remote span. */
+  static Span requestLifecycle(ServerClientAndLocalSpanState state) {
+    state.setCurrentServerSpan(SERVER_SPAN);
+    state.getCurrentServerSpan();
+    state.setCurrentLocalSpan(LOCAL_SPAN);
+    state.getCurrentLocalSpan();
+    state.setCurrentLocalSpan(null);
+    state.getCurrentServerSpan();
+    state.setCurrentClientSpan(CLIENT_SPAN);
+    Span result = state.getCurrentClientSpan();
+    state.setCurrentClientSpan(null);
+    state.getCurrentServerSpan();
+    state.setCurrentServerSpan(null);
+    return result;
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(".*" + SpanStateBenchmarks.class.getSimpleName() + ".*")
+        .addProfiler("gc")
+        .build();
+
+    new Runner(opt).run();
+  }
+}
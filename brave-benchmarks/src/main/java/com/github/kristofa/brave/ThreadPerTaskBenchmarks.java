@@ -0,0 +1,113 @@
+package com.github.kristofa.brave;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Starts {@link #tasks} concurrent tasks, each on its own thread, and waits for them to finish.
+ * Each task records a local span under the caller's server span.
+ *
+ * <p>Tasks run on virtual threads when the JDK supports them, otherwise on platform threads, which
+ * are much more expensive to start. Compare states on the same JDK only.
+ */
+@Measurement(iterations = 5)
+@Warmup(iterations = 3)
+@Fork(3)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ThreadPerTaskBenchmarks {
+  static final int IP = 192 << 24 | 168 << 16 | 2;
+  static final ThreadFactory THREAD_FACTORY = virtualThreadFactory();
+
+  @Param("100000")
+  public int tasks;
+
+  static final ServerClientAndLocalSpanState THREAD_LOCAL =
+      new ThreadLocalServerClientAndLocalSpanState(IP, 9000, "backend");
+  static final ServerClientAndLocalSpanState SCOPED =
+      new ScopedServerClientAndLocalSpanState(IP, 9000, "backend");
+  static final ServerClientAndLocalSpanState INHERITABLE =
+      new InheritableServerClientAndLocalSpanState(IP, 9000, "backend");
+
+  /** Tasks are wrapped to copy each span of the caller */
+  @Benchmark
+  public void threadLocal() throws InterruptedException {
+    run(THREAD_LOCAL);
+  }
+
+  /** Tasks are wrapped to copy the caller's context */
+  @Benchmark
+  public void scoped() throws InterruptedException {
+    run(SCOPED);
+  }
+
+  /** Tasks aren't wrapped: threads inherit the caller's context when created */
+  @Benchmark
+  public void inheritable() throws InterruptedException {
+    run(INHERITABLE);
+  }
+
+  void run(ServerClientAndLocalSpanState state) throws InterruptedException {
+    final Brave brave = new Brave.Builder(state).spanCollector(new EmptySpanCollector()).build();
+    Executor executor = BraveExecutors.threadPerTaskExecutor(THREAD_FACTORY, state);
+    final CountDownLatch done = new CountDownLatch(tasks);
+    Runnable task = new Runnable() {
+      @Override public void run() {
+        try {
+          brave.localTracer().startNewSpan("benchmark", "task");
+          brave.localTracer().finishSpan();
+        } finally {
+          done.countDown();
+        }
+      }
+    };
+    brave.serverTracer().setStateCurrentTrace(1L, 1L, null, "get");
+    try {
+      for (int i = 0; i < tasks; i++) {
+        executor.execute(task);
+      }
+      done.await();
+    } finally {
+      brave.serverTracer().clearCurrentSpan();
+    }
+  }
+
+  /** Returns {@code Thread.ofVirtual().factory()} if available, or else a platform thread factory */
+  static ThreadFactory virtualThreadFactory() {
+    try {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      return (ThreadFactory) Class.forName("java.lang.Thread$Builder")
+          .getMethod("factory").invoke(builder);
+    } catch (Exception e) {
+      return Executors.defaultThreadFactory();
+    }
+  }
+
+  // Convenience main entry-point
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(".*" + ThreadPerTaskBenchmarks.class.getSimpleName() + ".*")
+        .addProfiler("gc")
+        .build();
+
+    new Runner(opt).run();
+  }
+}
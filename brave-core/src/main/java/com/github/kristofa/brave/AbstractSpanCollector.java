@@ -1,12 +1,16 @@
 package com.github.kristofa.brave;
 
+import com.github.kristofa.brave.internal.Buffer;
+import com.github.kristofa.brave.internal.StreamingSpanCodec;
 import com.twitter.zipkin.gen.Span;
 import com.twitter.zipkin.gen.SpanCodec;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
 
 /**
- * Implemented {@link #sendSpans} to transport a encoded list of spans to Zipkin.
+ * Implement {@link #sendSpans(byte[])} to transport a encoded list of spans to Zipkin. Override
+ * {@link #sendSpans(ByteBuffer)} as well to avoid copying the encoded spans.
  */
 public abstract class AbstractSpanCollector extends FlushingSpanCollector {
 
@@ -21,10 +25,52 @@ public abstract class AbstractSpanCollector extends FlushingSpanCollector {
     this.codec = codec;
   }
 
+  /**
+   * @param flushInterval in seconds. 0 implies spans are {@link #flush() flushed} externally.
+   * @param pending holds spans until they are flushed. Defaults to {@link SpanQueue#create(int, long)}
+   */
+  public AbstractSpanCollector(SpanCodec codec, SpanCollectorMetricsHandler metrics,
+      int flushInterval, SpanQueue pending) {
+    super(metrics, flushInterval, pending);
+    this.codec = codec;
+  }
+
+  /**
+   * @param flushPolicy when and on how many threads to flush. When more than one thread, {@link
+   * #sendSpans(ByteBuffer)} must be thread-safe.
+   * @param pending holds spans until they are flushed. Defaults to {@link SpanQueue#create(int, long)}
+   */
+  public AbstractSpanCollector(SpanCodec codec, SpanCollectorMetricsHandler metrics,
+      FlushPolicy flushPolicy, SpanQueue pending) {
+    super(metrics, flushPolicy, pending);
+    this.codec = codec;
+  }
+
   @Override
   protected void reportSpans(List<Span> drained) throws IOException {
-    byte[] encoded = codec.writeSpans(drained);
-    sendSpans(encoded);
+    if (codec instanceof StreamingSpanCodec) {
+      Buffer buffer = Buffer.pooled();
+      ((StreamingSpanCodec) codec).writeSpans(drained, buffer);
+      sendSpans(buffer.asByteBuffer());
+    } else {
+      sendSpans(ByteBuffer.wrap(codec.writeSpans(drained)));
+    }
+  }
+
+  /**
+   * Sends a encoded list of spans over the current transport.
+   *
+   * <p>The encoded spans are between the buffer's position and limit. The buffer may be a view of
+   * one reused for the next flush, so implementations must consume or copy it before returning.
+   *
+   * <p>The default implementation copies the buffer and calls {@link #sendSpans(byte[])}.
+   *
+   * @throws IOException when thrown, drop metrics will increment accordingly
+   */
+  protected void sendSpans(ByteBuffer encoded) throws IOException {
+    byte[] copy = new byte[encoded.remaining()];
+    encoded.get(copy);
+    sendSpans(copy);
   }
 
   /**
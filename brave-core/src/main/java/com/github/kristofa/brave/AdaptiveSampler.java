@@ -0,0 +1,149 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.internal.Nullable;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.kristofa.brave.internal.Util.checkNotNull;
+import static zipkin.internal.Util.checkArgument;
+
+/**
+ * This sampler lowers its rate when the span collector is under pressure, and raises it again when
+ * pressure eases. When a {@link FlushingSpanCollector} can't keep up, it drops spans at random,
+ * leaving partial traces. Refusing to start traces instead is cheaper, and what's reported is
+ * complete.
+ *
+ * <p>Pressure is read from the collector's metrics: pass {@link #metricsHandler} to the collector
+ * in place of the handler you'd otherwise use. A span dropped because the collector's queue was full,
+ * or a flush that finds at least {@code maxQueuedBytes} pending, counts as pressure. Spans dropped
+ * because the transport failed don't: sampling less won't bring a collector back.
+ *
+ * <pre>{@code
+ * AdaptiveSampler sampler = AdaptiveSampler.create(1.0f, 0.01f, SpanQueue.DEFAULT_MAX_BYTES / 2);
+ * SpanCollector collector = HttpSpanCollector.create(url, sampler.metricsHandler(metrics));
+ * Brave brave = new Brave.Builder("serviceName")
+ *     .traceSampler(sampler)
+ *     .spanCollector(collector).build();
+ * }</pre>
+ *
+ * <h3>Implementation</h3>
+ *
+ * <p>Once a second, the rate is halved if there was pressure, and otherwise raised by a tenth of
+ * the maximum rate. Decisions are made like {@link BoundarySampler}, using modulo 10000 arithmetic
+ * on the salted trace id, so are lock-free. Only the thread that wins the once-a-second
+ * compare-and-set adjusts the rate.
+ */
+public final class AdaptiveSampler extends Sampler {
+
+  /**
+   * @param maxRate the rate used when there's no pressure, between 0.0001 and 1
+   * @param minRate the rate is never lowered below this, between 0.0001 and {@code maxRate}
+   * @param maxQueuedBytes a flush that finds this many bytes pending counts as pressure. 0 means
+   * only spans dropped by a full queue count.
+   */
+  public static AdaptiveSampler create(float maxRate, float minRate, long maxQueuedBytes) {
+    checkArgument(maxRate >= 0.0001f && maxRate <= 1, "maxRate should be between 0.0001 and 1: was %s", maxRate);
+    checkArgument(minRate >= 0.0001f && minRate <= maxRate, "minRate should be between 0.0001 and maxRate: was %s", minRate);
+    checkArgument(maxQueuedBytes >= 0, "maxQueuedBytes < 0: %s", maxQueuedBytes);
+    return new AdaptiveSampler((int) (maxRate * 10000), (int) (minRate * 10000), maxQueuedBytes,
+        System.nanoTime());
+  }
+
+  static final long ADJUST_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final long salt = new Random().nextLong();
+  private final int maxBoundary;
+  private final int minBoundary;
+  private final int increment;
+  private final long maxQueuedBytes;
+  private final AtomicLong lastAdjusted;
+  /** Sampled when {@code abs(traceId) % 10000 < boundary}. Only written by the adjusting thread. */
+  private volatile int boundary;
+  /** Set by the collector's metrics, and cleared when the rate is adjusted. */
+  private final AtomicBoolean pressure = new AtomicBoolean();
+
+  AdaptiveSampler(int maxBoundary, int minBoundary, long maxQueuedBytes, long nanoTime) {
+    this.maxBoundary = maxBoundary;
+    this.minBoundary = minBoundary;
+    this.increment = Math.max(1, maxBoundary / 10);
+    this.maxQueuedBytes = maxQueuedBytes;
+    this.lastAdjusted = new AtomicLong(nanoTime);
+    this.boundary = maxBoundary;
+  }
+
+  /**
+   * Returns a handler to pass to the span collector, which forwards to {@code delegate} and notes
+   * pressure. Byte metrics are forwarded when {@code delegate} implements {@link
+   * SpanCollectorByteMetrics}.
+   */
+  public SpanCollectorMetricsHandler metricsHandler(SpanCollectorMetricsHandler delegate) {
+    return new PressureMetricsHandler(checkNotNull(delegate, "delegate"));
+  }
+
+  final class PressureMetricsHandler implements SpanCollectorMetricsHandler, SpanCollectorByteMetrics {
+    final SpanCollectorMetricsHandler delegate;
+    @Nullable // when delegate doesn't implement SpanCollectorByteMetrics
+    final SpanCollectorByteMetrics byteDelegate;
+
+    PressureMetricsHandler(SpanCollectorMetricsHandler delegate) {
+      this.delegate = delegate;
+      this.byteDelegate =
+          delegate instanceof SpanCollectorByteMetrics ? (SpanCollectorByteMetrics) delegate : null;
+    }
+
+    @Override public void incrementAcceptedSpans(int quantity) {
+      delegate.incrementAcceptedSpans(quantity);
+    }
+
+    @Override public void incrementDroppedSpans(int quantity) {
+      delegate.incrementDroppedSpans(quantity);
+    }
+
+    /** Only called when the queue was full, unlike {@link #incrementDroppedSpans(int)}. */
+    @Override public void incrementDroppedBytes(int quantity) {
+      pressure.set(true);
+      if (byteDelegate != null) byteDelegate.incrementDroppedBytes(quantity);
+    }
+
+    @Override public void updateQueuedBytes(long quantity) {
+      if (maxQueuedBytes > 0 && quantity >= maxQueuedBytes) pressure.set(true);
+      if (byteDelegate != null) byteDelegate.updateQueuedBytes(quantity);
+    }
+  }
+
+  @Override
+  public boolean isSampled(long traceId) {
+    return isSampledAt(traceId, System.nanoTime());
+  }
+
+  boolean isSampledAt(long traceId, long nanoTime) {
+    long last = lastAdjusted.get();
+    if (nanoTime - last >= ADJUST_INTERVAL_NANOS && lastAdjusted.compareAndSet(last, nanoTime)) {
+      adjust();
+    }
+    long t = Math.abs(traceId ^ salt);
+    return t % 10000 < boundary;
+  }
+
+  /** Multiplicative decrease under pressure, additive increase otherwise. */
+  void adjust() {
+    int current = boundary;
+    if (pressure.getAndSet(false)) {
+      boundary = Math.max(minBoundary, current / 2);
+    } else if (current < maxBoundary) {
+      boundary = Math.min(maxBoundary, current + increment);
+    }
+  }
+
+  /** The current sample rate. */
+  public float rate() {
+    return boundary / 10000.0f;
+  }
+
+  @Override
+  public String toString() {
+    return "AdaptiveSampler(" + rate() + ")";
+  }
+}
@@ -1,11 +1,11 @@
 package com.github.kristofa.brave;
 
 import com.github.kristofa.brave.internal.Nullable;
-import com.twitter.zipkin.gen.Annotation;
 import com.twitter.zipkin.gen.BinaryAnnotation;
 import com.twitter.zipkin.gen.Endpoint;
 import com.twitter.zipkin.gen.Span;
 
+import static com.github.kristofa.brave.internal.Util.checkNotBlank;
 import static com.github.kristofa.brave.internal.Util.checkNotNull;
 
 /**
@@ -16,11 +16,53 @@ import static com.github.kristofa.brave.internal.Util.checkNotNull;
 public abstract class AnnotationSubmitter {
 
     public static AnnotationSubmitter create(SpanAndEndpoint spanAndEndpoint) {
-        return new AnnotationSubmitterImpl(spanAndEndpoint);
+        return create(spanAndEndpoint, DefaultClock.INSTANCE);
+    }
+
+    public static AnnotationSubmitter create(SpanAndEndpoint spanAndEndpoint, Clock clock) {
+        return new AnnotationSubmitterImpl(spanAndEndpoint, clock);
+    }
+
+    /**
+     * Source of time for spans. A span's start is anchored to {@link #currentTimeMicroseconds()},
+     * and all later annotations and its duration are derived from {@link #nanoTime()} ticks
+     * relative to that start. This gives microsecond precision, and avoids reading the wall clock
+     * for each annotation.
+     */
+    public interface Clock {
+        /** Epoch microseconds, used to anchor the start of a span. */
+        long currentTimeMicroseconds();
+
+        /** Monotonic nanoseconds, only meaningful relative to another value from this clock. */
+        long nanoTime();
+    }
+
+    /** Uses {@link System#currentTimeMillis()} and {@link System#nanoTime()}. */
+    static final class DefaultClock implements Clock {
+        static final Clock INSTANCE = new DefaultClock();
+
+        @Override
+        public long currentTimeMicroseconds() {
+            return System.currentTimeMillis() * 1000;
+        }
+
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public String toString() {
+            return "DefaultClock";
+        }
     }
 
     abstract SpanAndEndpoint spanAndEndpoint();
 
+    Clock clock() {
+        return DefaultClock.INSTANCE;
+    }
+
     /**
      * Associates an event that explains latency with the current system time.
      *
@@ -29,12 +71,7 @@ public abstract class AnnotationSubmitter {
     public void submitAnnotation(String value) {
         Span span = spanAndEndpoint().span();
         if (span != null) {
-            Annotation annotation = Annotation.create(
-                currentTimeMicroseconds(),
-                value,
-                spanAndEndpoint().endpoint()
-            );
-            addAnnotation(span, annotation);
+            span.addAnnotation(currentTimeMicroseconds(span), value, spanAndEndpoint().endpoint());
         }
     }
 
@@ -42,7 +79,7 @@ public abstract class AnnotationSubmitter {
      * Associates an event that explains latency with a timestamp.
      *
      * <p/> This is an alternative to {@link #submitAnnotation(String)}, when
-     * you have a timestamp more precise or accurate than {@link System#currentTimeMillis()}.
+     * you have a timestamp more precise or accurate than the {@link Clock}.
      *
      * @param value     A short tag indicating the event, like "finagle.retry"
      * @param timestamp microseconds from epoch
@@ -50,12 +87,7 @@ public abstract class AnnotationSubmitter {
     public void submitAnnotation(String value, long timestamp) {
         Span span = spanAndEndpoint().span();
         if (span != null) {
-            Annotation annotation = Annotation.create(
-                timestamp,
-                value,
-                spanAndEndpoint().endpoint()
-            );
-            addAnnotation(span, annotation);
+            span.addAnnotation(timestamp, value, spanAndEndpoint().endpoint());
         }
     }
 
@@ -63,15 +95,13 @@ public abstract class AnnotationSubmitter {
     void submitStartAnnotation(String annotationName) {
         Span span = spanAndEndpoint().span();
         if (span != null) {
-            Annotation annotation = Annotation.create(
-                currentTimeMicroseconds(),
-                annotationName,
-                spanAndEndpoint().endpoint()
-            );
-            synchronized (span) {
-                span.setTimestamp(annotation.timestamp);
-                span.addToAnnotations(annotation);
-            }
+            long timestamp = currentTimeMicroseconds();
+            long tick = clock().nanoTime();
+            span.setTimestamp(timestamp);
+            // anchors later annotations and the duration. Written after the timestamp, so that
+            // readers who see the tick also see the timestamp.
+            span.startTick = tick;
+            span.addAnnotation(timestamp, annotationName, spanAndEndpoint().endpoint());
         }
     }
 
@@ -86,14 +116,13 @@ public abstract class AnnotationSubmitter {
         if (span == null) {
           return false;
         }
-        Annotation annotation = Annotation.create(
-            currentTimeMicroseconds(),
-            annotationName,
-            spanAndEndpoint().endpoint()
-        );
-        span.addToAnnotations(annotation);
-        if (span.getTimestamp() != null) {
-            span.setDuration(annotation.timestamp - span.getTimestamp());
+        long timestamp = currentTimeMicroseconds(span);
+        span.addAnnotation(timestamp, annotationName, spanAndEndpoint().endpoint());
+        Long startTimestamp = span.getTimestamp();
+        if (startTimestamp != null) {
+            long duration = timestamp - startTimestamp;
+            // a sub-microsecond duration would otherwise look like it wasn't recorded
+            span.setDuration(span.startTick != null ? Math.max(1L, duration) : duration);
         }
         spanCollector.collect(span);
         return true;
@@ -112,8 +141,7 @@ public abstract class AnnotationSubmitter {
         if (span != null) {
             serviceName = serviceName != null ? serviceName : "unknown";
             Endpoint endpoint = Endpoint.create(serviceName, ipv4, port);
-            BinaryAnnotation ba = BinaryAnnotation.address(key, endpoint);
-            addBinaryAnnotation(span, ba);
+            span.addToBinary_annotations(BinaryAnnotation.address(key, endpoint));
         }
     }
 
@@ -125,10 +153,11 @@ public abstract class AnnotationSubmitter {
      * @param value String value, should not be <code>null</code>.
      */
     public void submitBinaryAnnotation(String key, String value) {
+        checkNotBlank(key, "Null or blank key");
+        checkNotNull(value, "Null value");
         Span span = spanAndEndpoint().span();
         if (span != null) {
-            BinaryAnnotation ba = BinaryAnnotation.create(key, value, spanAndEndpoint().endpoint());
-            addBinaryAnnotation(span, ba);
+            span.addBinaryAnnotation(key, value, spanAndEndpoint().endpoint());
         }
     }
 
@@ -144,19 +173,19 @@ public abstract class AnnotationSubmitter {
     }
 
     long currentTimeMicroseconds() {
-        return System.currentTimeMillis() * 1000;
-    }
-
-    private void addAnnotation(Span span, Annotation annotation) {
-        synchronized (span) {
-            span.addToAnnotations(annotation);
-        }
+        return clock().currentTimeMicroseconds();
     }
 
-    private void addBinaryAnnotation(Span span, BinaryAnnotation ba) {
-        synchronized (span) {
-            span.addToBinary_annotations(ba);
-        }
+    /**
+     * Returns the current time for an annotation on the span. When the span's start was anchored
+     * to a tick, this is derived from the elapsed ticks, otherwise it reads the clock.
+     */
+    long currentTimeMicroseconds(Span span) {
+        Long startTick = span.startTick;
+        if (startTick == null) return currentTimeMicroseconds();
+        Long startTimestamp = span.getTimestamp();
+        if (startTimestamp == null) return currentTimeMicroseconds();
+        return startTimestamp + (clock().nanoTime() - startTick) / 1000L;
     }
 
     AnnotationSubmitter() {
@@ -165,14 +194,21 @@ public abstract class AnnotationSubmitter {
     private static final class AnnotationSubmitterImpl extends AnnotationSubmitter {
 
         private final SpanAndEndpoint spanAndEndpoint;
+        private final Clock clock;
 
-        private AnnotationSubmitterImpl(SpanAndEndpoint spanAndEndpoint) {
+        private AnnotationSubmitterImpl(SpanAndEndpoint spanAndEndpoint, Clock clock) {
             this.spanAndEndpoint = checkNotNull(spanAndEndpoint, "Null spanAndEndpoint");
+            this.clock = checkNotNull(clock, "Null clock");
         }
 
         @Override
         SpanAndEndpoint spanAndEndpoint() {
             return spanAndEndpoint;
         }
+
+        @Override
+        Clock clock() {
+            return clock;
+        }
     }
 }
@@ -38,6 +38,9 @@ public class Brave {
         private Random random = new Random();
         // default added so callers don't need to check null.
         private Sampler sampler = Sampler.create(1.0f);
+        private ServerRequestSampler serverRequestSampler;
+        private AnnotationSubmitter.Clock clock = AnnotationSubmitter.DefaultClock.INSTANCE;
+        private SpanPool spanPool = SpanPool.NONE;
 
         /**
          * Builder which initializes with serviceName = "unknown".
@@ -101,6 +104,34 @@ public class Brave {
             return this;
         }
 
+        /**
+         * Chooses the sampler per incoming request, for example by endpoint, falling back to the
+         * {@link #traceSampler(Sampler) trace sampler}. Default is to always use the trace sampler.
+         *
+         * @see ServerRequestInterceptor
+         */
+        public Builder serverRequestSampler(ServerRequestSampler serverRequestSampler) {
+            this.serverRequestSampler = serverRequestSampler;
+            return this;
+        }
+
+        /**
+         * Source of span timestamps and durations. Defaults to the system clock.
+         */
+        public Builder clock(AnnotationSubmitter.Clock clock) {
+            this.clock = Util.checkNotNull(clock, "clock");
+            return this;
+        }
+
+        /**
+         * Recycles spans once they are reported, to reduce garbage. Defaults to {@link
+         * SpanPool#NONE}. Read {@link SpanPool} before enabling this.
+         */
+        public Builder spanPool(SpanPool spanPool) {
+            this.spanPool = Util.checkNotNull(spanPool, "spanPool");
+            return this;
+        }
+
         /**
          * @param spanCollector
          */
@@ -211,25 +242,32 @@ public class Brave {
                 .randomGenerator(builder.random)
                 .spanCollector(builder.spanCollector)
                 .state(builder.state)
-                .traceSampler(builder.sampler).build();
+                .traceSampler(builder.sampler)
+                .clock(builder.clock)
+                .spanPool(builder.spanPool).build();
 
         clientTracer = ClientTracer.builder()
                 .randomGenerator(builder.random)
                 .spanCollector(builder.spanCollector)
                 .state(builder.state)
-                .traceSampler(builder.sampler).build();
+                .traceSampler(builder.sampler)
+                .clock(builder.clock)
+                .spanPool(builder.spanPool).build();
 
         localTracer = LocalTracer.builder()
                 .randomGenerator(builder.random)
                 .spanCollector(builder.spanCollector)
                 .spanAndEndpoint(SpanAndEndpoint.LocalSpanAndEndpoint.create(builder.state))
-                .traceSampler(builder.sampler).build();
+                .traceSampler(builder.sampler)
+                .clock(builder.clock)
+                .spanPool(builder.spanPool).build();
         
-        serverRequestInterceptor = new ServerRequestInterceptor(serverTracer);
+        serverRequestInterceptor = new ServerRequestInterceptor(serverTracer, builder.serverRequestSampler);
         serverResponseInterceptor = new ServerResponseInterceptor(serverTracer);
         clientRequestInterceptor = new ClientRequestInterceptor(clientTracer);
         clientResponseInterceptor = new ClientResponseInterceptor(clientTracer);
-        serverSpanAnnotationSubmitter = AnnotationSubmitter.create(SpanAndEndpoint.ServerSpanAndEndpoint.create(builder.state));
+        serverSpanAnnotationSubmitter = AnnotationSubmitter.create(
+            SpanAndEndpoint.ServerSpanAndEndpoint.create(builder.state), builder.clock);
         serverSpanThreadBinder = new ServerSpanThreadBinder(builder.state);
         clientSpanThreadBinder = new ClientSpanThreadBinder(builder.state);
         localSpanThreadBinder = new LocalSpanThreadBinder(builder.state);
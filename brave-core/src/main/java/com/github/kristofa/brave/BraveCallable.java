@@ -2,6 +2,7 @@ package com.github.kristofa.brave;
 
 import java.util.concurrent.Callable;
 
+import com.github.kristofa.brave.ScopedServerClientAndLocalSpanState.Context;
 import com.github.kristofa.brave.internal.Nullable;
 import com.google.auto.value.AutoValue;
 
@@ -9,6 +10,9 @@ import com.google.auto.value.AutoValue;
  * Callable implementation that wraps another Callable and makes sure the wrapped Callable will be executed in the same
  * Span/Trace context as the thread from which the Callable was executed.
  * <p/>
+ * Like {@link BraveRunnable}, this propagates client and local spans too when the state holds them, and restores the
+ * executing thread's spans afterwards.
+ * <p/>
  * Is used by {@link BraveExecutorService}.
  * 
  * @author kristof
@@ -25,21 +29,44 @@ public abstract class BraveCallable<T> implements Callable<T> {
      * @param serverSpanThreadBinder ServerSpan thread binder.
      */
     public static <T> BraveCallable<T> create(Callable<T> wrappedCallable, ServerSpanThreadBinder serverSpanThreadBinder) {
-        return new AutoValue_BraveCallable<T>(wrappedCallable, serverSpanThreadBinder, serverSpanThreadBinder.getCurrentServerSpan());
+        ServerSpanState state = serverSpanThreadBinder.state();
+        if (state instanceof ServerClientAndLocalSpanState) {
+            Context context = ScopedServerClientAndLocalSpanState.capture((ServerClientAndLocalSpanState) state);
+            return new AutoValue_BraveCallable<T>(wrappedCallable, serverSpanThreadBinder, context.serverSpan, context);
+        }
+        ServerSpan currentServerSpan = serverSpanThreadBinder.getCurrentServerSpan(); // pins the span
+        return new AutoValue_BraveCallable<T>(wrappedCallable, serverSpanThreadBinder, currentServerSpan, null);
     }
 
     abstract Callable<T> wrappedCallable();
     abstract ServerSpanThreadBinder serverSpanThreadBinder();
     @Nullable
     abstract ServerSpan currentServerSpan();
+    /** All spans of the submitting thread, or null if the state only holds a server span. */
+    @Nullable
+    abstract Context context();
 
     /**
      * {@inheritDoc}
      */
     @Override
     public T call() throws Exception {
+        if (context() != null) {
+            ServerClientAndLocalSpanState state = (ServerClientAndLocalSpanState) serverSpanThreadBinder().state();
+            Context previous = ScopedServerClientAndLocalSpanState.attach(state, context());
+            try {
+                return wrappedCallable().call();
+            } finally {
+                ScopedServerClientAndLocalSpanState.attach(state, previous);
+            }
+        }
+        ServerSpan previous = serverSpanThreadBinder().getCurrentServerSpan();
         serverSpanThreadBinder().setCurrentSpan(currentServerSpan());
-        return wrappedCallable().call();
+        try {
+            return wrappedCallable().call();
+        } finally {
+            serverSpanThreadBinder().setCurrentSpan(previous);
+        }
     }
 
     BraveCallable() {
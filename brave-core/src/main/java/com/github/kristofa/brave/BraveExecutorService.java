@@ -18,6 +18,8 @@ import static com.github.kristofa.brave.internal.Util.checkNotNull;
  * in the same Span/Trace context as the the thread that invoked execution of the threads.
  * <p/>
  * It uses {@link ServerTracer} and {@link ServerSpanThreadBinder} to accomplish this in a transparent way for the user.
+ * When the thread binder was created by {@link Brave}, client and local spans are propagated along with the server span,
+ * and each pooled thread gets its own spans back once the task finished.
  * <p/>
  * It also implements {@link Closeable}, calling {@link BraveExecutorService#shutdown()}, so the executor service is
  * shut down properly when for example using Spring.
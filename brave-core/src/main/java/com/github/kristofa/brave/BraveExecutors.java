@@ -0,0 +1,282 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.ScopedServerClientAndLocalSpanState.Context;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.github.kristofa.brave.internal.Util.checkNotNull;
+
+/**
+ * Decorates executors, so that tasks run with the server, client and local span of the thread that
+ * submitted them. Once a task completes, the worker thread's previous spans are restored, so
+ * pooled threads don't retain spans.
+ *
+ * <p>Each task is wrapped in a single object. With {@link ScopedServerClientAndLocalSpanState},
+ * capturing and restoring spans are reference copies. Other state implementations copy each span.
+ *
+ * <p>For example, to propagate spans into a {@code ForkJoinPool} and
+ * {@code CompletableFuture} stages:
+ * <pre>{@code
+ * ExecutorService executor = BraveExecutors.executorService(new ForkJoinPool(), state);
+ * CompletableFuture.supplyAsync(supplier, executor)
+ *     .thenApplyAsync(function, executor);
+ * }</pre>
+ *
+ * <p>Tasks that aren't submitted through a decorated executor, such as parallel streams or subtasks
+ * forked inside a {@code ForkJoinTask}, run without the caller's spans.
+ */
+public final class BraveExecutors {
+
+  /** Returns an executor that runs each task with the spans of the thread that submitted it. */
+  public static Executor executor(Executor delegate, ServerClientAndLocalSpanState state) {
+    return new TracingExecutor<Executor>(delegate, state);
+  }
+
+  /**
+   * Returns an executor service that runs each task with the spans of the thread that submitted
+   * it. Shutdown and termination are delegated.
+   */
+  public static ExecutorService executorService(ExecutorService delegate,
+      ServerClientAndLocalSpanState state) {
+    return new TracingExecutorService<ExecutorService>(delegate, state);
+  }
+
+  /**
+   * Returns a scheduled executor service that runs each task with the spans of the thread that
+   * scheduled it. Periodic tasks run with those spans on each execution.
+   */
+  public static ScheduledExecutorService scheduledExecutorService(
+      ScheduledExecutorService delegate, ServerClientAndLocalSpanState state) {
+    return new TracingScheduledExecutorService(delegate, state);
+  }
+
+  /**
+   * Returns an executor that starts a new thread for each task, from the given factory. Tasks run
+   * with the spans of the thread that submitted them.
+   *
+   * <p>This is intended for virtual threads, for example with the factory {@code
+   * Thread.ofVirtual().factory()}. With {@link InheritableServerClientAndLocalSpanState}, the new
+   * thread inherits the spans when it is created, so tasks aren't wrapped at all. When the task
+   * ends, its thread and span state are discarded, so nothing is left on carrier threads.
+   */
+  public static Executor threadPerTaskExecutor(ThreadFactory threadFactory,
+      ServerClientAndLocalSpanState state) {
+    return new ThreadPerTaskExecutor(threadFactory, state);
+  }
+
+  /** Returns a runnable that runs the input with the spans of the current thread. */
+  public static Runnable wrap(Runnable runnable, ServerClientAndLocalSpanState state) {
+    return new TracingRunnable(checkNotNull(runnable, "runnable"), state,
+        ScopedServerClientAndLocalSpanState.capture(state));
+  }
+
+  /** Returns a callable that calls the input with the spans of the current thread. */
+  public static <V> Callable<V> wrap(Callable<V> callable, ServerClientAndLocalSpanState state) {
+    return new TracingCallable<V>(checkNotNull(callable, "callable"), state,
+        ScopedServerClientAndLocalSpanState.capture(state));
+  }
+
+  static final class TracingRunnable implements Runnable {
+    final Runnable delegate;
+    final ServerClientAndLocalSpanState state;
+    final Context context;
+
+    TracingRunnable(Runnable delegate, ServerClientAndLocalSpanState state, Context context) {
+      this.delegate = delegate;
+      this.state = state;
+      this.context = context;
+    }
+
+    @Override public void run() {
+      Context previous = ScopedServerClientAndLocalSpanState.attach(state, context);
+      try {
+        delegate.run();
+      } finally {
+        ScopedServerClientAndLocalSpanState.attach(state, previous);
+      }
+    }
+
+    @Override public String toString() {
+      return delegate.toString();
+    }
+  }
+
+  static final class TracingCallable<V> implements Callable<V> {
+    final Callable<V> delegate;
+    final ServerClientAndLocalSpanState state;
+    final Context context;
+
+    TracingCallable(Callable<V> delegate, ServerClientAndLocalSpanState state, Context context) {
+      this.delegate = delegate;
+      this.state = state;
+      this.context = context;
+    }
+
+    @Override public V call() throws Exception {
+      Context previous = ScopedServerClientAndLocalSpanState.attach(state, context);
+      try {
+        return delegate.call();
+      } finally {
+        ScopedServerClientAndLocalSpanState.attach(state, previous);
+      }
+    }
+
+    @Override public String toString() {
+      return delegate.toString();
+    }
+  }
+
+  static final class ThreadPerTaskExecutor implements Executor {
+    final ThreadFactory threadFactory;
+    final ServerClientAndLocalSpanState state;
+    final boolean inherits;
+
+    ThreadPerTaskExecutor(ThreadFactory threadFactory, ServerClientAndLocalSpanState state) {
+      this.threadFactory = checkNotNull(threadFactory, "threadFactory");
+      this.state = checkNotNull(state, "state");
+      this.inherits = state instanceof InheritableServerClientAndLocalSpanState;
+    }
+
+    @Override public void execute(Runnable command) {
+      Runnable task = inherits ? checkNotNull(command, "command") : wrap(command, state);
+      Thread thread = threadFactory.newThread(task);
+      if (thread == null) throw new RejectedExecutionException("threadFactory returned null");
+      thread.start();
+    }
+
+    @Override public String toString() {
+      return "ThreadPerTaskExecutor(" + threadFactory + ")";
+    }
+  }
+
+  static class TracingExecutor<E extends Executor> implements Executor {
+    final E delegate;
+    final ServerClientAndLocalSpanState state;
+
+    TracingExecutor(E delegate, ServerClientAndLocalSpanState state) {
+      this.delegate = checkNotNull(delegate, "delegate");
+      this.state = checkNotNull(state, "state");
+    }
+
+    @Override public void execute(Runnable command) {
+      delegate.execute(wrap(command, state));
+    }
+
+    <T> List<Callable<T>> wrapAll(Collection<? extends Callable<T>> tasks) {
+      Context context = ScopedServerClientAndLocalSpanState.capture(state);
+      List<Callable<T>> result = new ArrayList<Callable<T>>(tasks.size());
+      for (Callable<T> task : tasks) {
+        result.add(new TracingCallable<T>(checkNotNull(task, "task"), state, context));
+      }
+      return result;
+    }
+
+    @Override public String toString() {
+      return delegate.toString();
+    }
+  }
+
+  static class TracingExecutorService<E extends ExecutorService> extends TracingExecutor<E>
+      implements ExecutorService {
+
+    TracingExecutorService(E delegate, ServerClientAndLocalSpanState state) {
+      super(delegate, state);
+    }
+
+    @Override public void shutdown() {
+      delegate.shutdown();
+    }
+
+    @Override public List<Runnable> shutdownNow() {
+      return delegate.shutdownNow();
+    }
+
+    @Override public boolean isShutdown() {
+      return delegate.isShutdown();
+    }
+
+    @Override public boolean isTerminated() {
+      return delegate.isTerminated();
+    }
+
+    @Override public boolean awaitTermination(long timeout, TimeUnit unit)
+        throws InterruptedException {
+      return delegate.awaitTermination(timeout, unit);
+    }
+
+    @Override public <T> Future<T> submit(Callable<T> task) {
+      return delegate.submit(wrap(task, state));
+    }
+
+    @Override public <T> Future<T> submit(Runnable task, T result) {
+      return delegate.submit(wrap(task, state), result);
+    }
+
+    @Override public Future<?> submit(Runnable task) {
+      return delegate.submit(wrap(task, state));
+    }
+
+    @Override public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks)
+        throws InterruptedException {
+      return delegate.invokeAll(wrapAll(tasks));
+    }
+
+    @Override public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks,
+        long timeout, TimeUnit unit) throws InterruptedException {
+      return delegate.invokeAll(wrapAll(tasks), timeout, unit);
+    }
+
+    @Override public <T> T invokeAny(Collection<? extends Callable<T>> tasks)
+        throws InterruptedException, ExecutionException {
+      return delegate.invokeAny(wrapAll(tasks));
+    }
+
+    @Override public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout,
+        TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+      return delegate.invokeAny(wrapAll(tasks), timeout, unit);
+    }
+  }
+
+  static final class TracingScheduledExecutorService
+      extends TracingExecutorService<ScheduledExecutorService> implements ScheduledExecutorService {
+
+    TracingScheduledExecutorService(ScheduledExecutorService delegate,
+        ServerClientAndLocalSpanState state) {
+      super(delegate, state);
+    }
+
+    @Override public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+      return delegate.schedule(wrap(command, state), delay, unit);
+    }
+
+    @Override public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay,
+        TimeUnit unit) {
+      return delegate.schedule(wrap(callable, state), delay, unit);
+    }
+
+    @Override public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay,
+        long period, TimeUnit unit) {
+      return delegate.scheduleAtFixedRate(wrap(command, state), initialDelay, period, unit);
+    }
+
+    @Override public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command,
+        long initialDelay, long delay, TimeUnit unit) {
+      return delegate.scheduleWithFixedDelay(wrap(command, state), initialDelay, delay, unit);
+    }
+  }
+
+  private BraveExecutors() {
+  }
+}
@@ -1,5 +1,6 @@
 package com.github.kristofa.brave;
 
+import com.github.kristofa.brave.ScopedServerClientAndLocalSpanState.Context;
 import com.github.kristofa.brave.internal.Nullable;
 import com.google.auto.value.AutoValue;
 
@@ -7,6 +8,10 @@ import com.google.auto.value.AutoValue;
  * {@link Runnable} implementation that wraps another Runnable and makes sure the wrapped Runnable will be executed in the
  * same Span/Trace context as the thread from which the Runnable was executed.
  * <p/>
+ * When the thread binder's state is a {@link ServerClientAndLocalSpanState}, the client and local span are propagated
+ * along with the server span. Afterwards, the spans the executing thread had before are restored, so pooled threads
+ * don't keep spans of finished tasks.
+ * <p/>
  * Is used by {@link BraveExecutorService}.
  * 
  * @author kristof
@@ -22,20 +27,44 @@ public abstract class BraveRunnable implements Runnable {
      * @param serverSpanThreadBinder ServerSpan thread binder.
      */
     public static BraveRunnable create(Runnable runnable, ServerSpanThreadBinder serverSpanThreadBinder) {
-        return new AutoValue_BraveRunnable(runnable, serverSpanThreadBinder, serverSpanThreadBinder.getCurrentServerSpan());
+        ServerSpanState state = serverSpanThreadBinder.state();
+        if (state instanceof ServerClientAndLocalSpanState) {
+            Context context = ScopedServerClientAndLocalSpanState.capture((ServerClientAndLocalSpanState) state);
+            return new AutoValue_BraveRunnable(runnable, serverSpanThreadBinder, context.serverSpan, context);
+        }
+        ServerSpan currentServerSpan = serverSpanThreadBinder.getCurrentServerSpan(); // pins the span
+        return new AutoValue_BraveRunnable(runnable, serverSpanThreadBinder, currentServerSpan, null);
     }
 
     abstract Runnable wrappedRunnable();
     abstract ServerSpanThreadBinder serverSpanThreadBinder();
     @Nullable
     abstract ServerSpan currentServerSpan();
+    /** All spans of the submitting thread, or null if the state only holds a server span. */
+    @Nullable
+    abstract Context context();
 
     /**
      * {@inheritDoc}
      */
     @Override
     public void run() {
+        if (context() != null) {
+            ServerClientAndLocalSpanState state = (ServerClientAndLocalSpanState) serverSpanThreadBinder().state();
+            Context previous = ScopedServerClientAndLocalSpanState.attach(state, context());
+            try {
+                wrappedRunnable().run();
+            } finally {
+                ScopedServerClientAndLocalSpanState.attach(state, previous);
+            }
+            return;
+        }
+        ServerSpan previous = serverSpanThreadBinder().getCurrentServerSpan();
         serverSpanThreadBinder().setCurrentSpan(currentServerSpan());
-        wrappedRunnable().run();
+        try {
+            wrappedRunnable().run();
+        } finally {
+            serverSpanThreadBinder().setCurrentSpan(previous);
+        }
     }
 }
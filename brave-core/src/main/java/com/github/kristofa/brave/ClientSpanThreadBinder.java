@@ -29,13 +29,16 @@ public final class ClientSpanThreadBinder {
     /**
      * This should be called in the thread in which the client request made after starting new client span.
      * <p>
-     * It returns the current client span which you can keep and bind to the callback thread
+     * It returns the current client span which you can keep and bind to the callback thread. The span is never recycled
+     * by a {@link SpanPool}, as the callback may use it after it is reported.
      * @see #setCurrentSpan(Span)
      * @return Returned Span can be bound to different callback thread.
      */
     public Span getCurrentClientSpan()
     {
-        return state.getCurrentClientSpan();
+        Span result = state.getCurrentClientSpan();
+        SpanPool.pin(result);
+        return result;
     }
 
     /**
@@ -29,7 +29,9 @@ import java.util.Random;
 public abstract class ClientTracer extends AnnotationSubmitter {
 
     public static Builder builder() {
-        return new AutoValue_ClientTracer.Builder();
+        return new AutoValue_ClientTracer.Builder()
+            .clock(DefaultClock.INSTANCE)
+            .spanPool(SpanPool.NONE);
     }
 
     @Override
@@ -37,6 +39,9 @@ public abstract class ClientTracer extends AnnotationSubmitter {
     abstract Random randomGenerator();
     abstract SpanCollector spanCollector();
     abstract Sampler traceSampler();
+    @Override
+    abstract Clock clock();
+    abstract SpanPool spanPool();
 
     @AutoValue.Builder
     public abstract static class Builder {
@@ -56,6 +61,16 @@ public abstract class ClientTracer extends AnnotationSubmitter {
 
         public abstract Builder traceSampler(Sampler sampler);
 
+        /**
+         * Source of span timestamps and durations. Defaults to the system clock.
+         */
+        public abstract Builder clock(Clock clock);
+
+        /**
+         * Where new spans come from. Defaults to {@link SpanPool#NONE}, which allocates each span.
+         */
+        public abstract Builder spanPool(SpanPool spanPool);
+
         public abstract ClientTracer build();
     }
 
@@ -113,7 +128,7 @@ public abstract class ClientTracer extends AnnotationSubmitter {
             }
         }
 
-        Span newSpan = newSpanId.toSpan();
+        Span newSpan = newSpanId.toSpan(spanPool().acquire());
         newSpan.setName(requestName);
         spanAndEndpoint().state().setCurrentClientSpan(newSpan);
         return newSpanId;
@@ -131,7 +146,8 @@ public abstract class ClientTracer extends AnnotationSubmitter {
         long newSpanId = randomGenerator().nextLong();
         SpanId.Builder builder = SpanId.builder().spanId(newSpanId);
         if (parentSpan == null) return builder.build(); // new trace
-        return builder.traceId(parentSpan.getTrace_id()).parentId(parentSpan.getId()).build();
+        return builder.traceIdHigh(parentSpan.getTrace_id_high()).traceId(parentSpan.getTrace_id())
+            .parentId(parentSpan.getId()).build();
     }
 
     ClientTracer() {
@@ -2,6 +2,7 @@ package com.github.kristofa.brave;
 
 import java.util.BitSet;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static zipkin.internal.Util.checkArgument;
 
@@ -15,6 +16,9 @@ import static zipkin.internal.Util.checkArgument;
  * <p>This initializes a random bitset of size 100 (corresponding to 1% granularity). This means
  * that it is accurate in units of 100 traces. At runtime, this loops through the bitset, returning
  * the value according to a counter.
+ *
+ * <p>The counter is advanced with compare-and-set instead of a lock. Each position is handed to
+ * exactly one caller, so any 100 consecutive decisions, across all threads, keep the sample rate.
  */
 public final class CountingSampler extends Sampler {
 
@@ -29,21 +33,29 @@ public final class CountingSampler extends Sampler {
     return new CountingSampler(rate);
   }
 
-  private int i; // guarded by this
-  private final BitSet sampleDecisions;
+  private final AtomicInteger counter = new AtomicInteger();
+  private final boolean[] sampleDecisions;
 
-  /** Fills a bitset with decisions according to the supplied rate. */
+  /** Fills an array with decisions according to the supplied rate. */
   CountingSampler(float rate) {
     int outOf100 = (int) (rate * 100.0f);
-    this.sampleDecisions = randomBitSet(100, outOf100, new Random());
+    BitSet bitSet = randomBitSet(100, outOf100, new Random());
+    // a plain array avoids BitSet's bounds checks and word arithmetic on the hot path
+    this.sampleDecisions = new boolean[100];
+    for (int i = 0; i < 100; i++) {
+      sampleDecisions[i] = bitSet.get(i);
+    }
   }
 
   /** loops over the pre-canned decisions, resetting to zero when it gets to the end. */
   @Override
-  public synchronized boolean isSampled(long traceIdIgnored) {
-    boolean result = sampleDecisions.get(i++);
-    if (i == 100) i = 0;
-    return result;
+  public boolean isSampled(long traceIdIgnored) {
+    int i, next;
+    do {
+      i = counter.get();
+      next = i == 99 ? 0 : i + 1;
+    } while (!counter.compareAndSet(i, next));
+    return sampleDecisions[i];
   }
 
   @Override
@@ -3,7 +3,8 @@ package com.github.kristofa.brave;
 import com.twitter.zipkin.gen.Span;
 
 /**
- * A {@link SpanCollector} implementation that does nothing with collected spans.
+ * A {@link SpanCollector} implementation that does nothing with collected spans, except {@link
+ * SpanPool#release(Span) release} them.
  * 
  * @author adriaens
  */
@@ -14,8 +15,7 @@ public class EmptySpanCollector implements SpanCollector {
      */
     @Override
     public void collect(final Span span) {
-        // Nothing
-
+        SpanPool.release(span);
     }
 
     /**
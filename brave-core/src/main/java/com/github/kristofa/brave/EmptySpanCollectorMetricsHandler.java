@@ -4,7 +4,8 @@ package com.github.kristofa.brave;
 /**
  * Empty implementation ignoring all events.
  */
-public class EmptySpanCollectorMetricsHandler implements SpanCollectorMetricsHandler {
+public class EmptySpanCollectorMetricsHandler
+    implements SpanCollectorMetricsHandler, SpanCollectorByteMetrics {
 
     @Override
     public void incrementAcceptedSpans(int quantity) {
@@ -15,4 +16,14 @@ public class EmptySpanCollectorMetricsHandler implements SpanCollectorMetricsHan
     public void incrementDroppedSpans(int quantity) {
 
     }
+
+    @Override
+    public void incrementDroppedBytes(int quantity) {
+
+    }
+
+    @Override
+    public void updateQueuedBytes(long quantity) {
+
+    }
 }
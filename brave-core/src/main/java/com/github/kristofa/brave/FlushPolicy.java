@@ -0,0 +1,84 @@
+package com.github.kristofa.brave;
+
+import com.google.auto.value.AutoValue;
+import java.util.concurrent.TimeUnit;
+
+import static zipkin.internal.Util.checkArgument;
+
+/**
+ * Controls when, and on how many threads, a {@link FlushingSpanCollector} reports pending spans.
+ *
+ * <p>By default, one thread flushes every second. When one report per interval can't keep up with
+ * collected spans, add threads and size triggers, so that spans are reported as soon as enough are
+ * pending, in parallel.
+ */
+@AutoValue
+public abstract class FlushPolicy {
+
+  public static Builder builder() {
+    return new AutoValue_FlushPolicy.Builder()
+        .interval(1)
+        .intervalUnit(TimeUnit.SECONDS)
+        .threads(1)
+        .maxSpans(0)
+        .maxBytes(0);
+  }
+
+  /** Equivalent to the default policy, except flushing every {@code flushInterval} seconds. */
+  public static FlushPolicy create(int flushInterval) {
+    return builder().interval(flushInterval).build();
+  }
+
+  abstract long interval();
+
+  abstract TimeUnit intervalUnit();
+
+  abstract int threads();
+
+  abstract int maxSpans();
+
+  abstract long maxBytes();
+
+  /** True if spans are only flushed by explicit calls to {@link FlushingSpanCollector#flush()} */
+  boolean flushesExternally() {
+    return interval() == 0 && maxSpans() == 0 && maxBytes() == 0;
+  }
+
+  @AutoValue.Builder
+  public interface Builder {
+    /**
+     * Default 1. Interval between flushes, in {@link #intervalUnit(TimeUnit)}. 0 implies there's no
+     * periodic flush.
+     */
+    Builder interval(long interval);
+
+    /** Default seconds. Use milliseconds for sub-second intervals. */
+    Builder intervalUnit(TimeUnit intervalUnit);
+
+    /**
+     * Default 1. Count of threads that report spans. When more than one, transports must be
+     * thread-safe, as multiple reports can be in flight at the same time.
+     */
+    Builder threads(int threads);
+
+    /** Default 0. When positive, flush as soon as this many spans are pending. */
+    Builder maxSpans(int maxSpans);
+
+    /**
+     * Default 0. When positive, flush as soon as the estimated encoded size of pending spans
+     * reaches this value.
+     */
+    Builder maxBytes(long maxBytes);
+
+    FlushPolicy build();
+  }
+
+  /** Called on use, as AutoValue 1.1 builders can't validate. */
+  FlushPolicy validate() {
+    checkArgument(interval() >= 0, "interval < 0: %s", interval());
+    checkArgument(threads() > 0, "threads <= 0: %s", threads());
+    checkArgument(maxSpans() >= 0, "maxSpans < 0: %s", maxSpans());
+    checkArgument(maxBytes() >= 0, "maxBytes < 0: %s", maxBytes());
+    return this;
+  }
+}
@@ -1,20 +1,20 @@
 package com.github.kristofa.brave;
 
 import com.github.kristofa.brave.internal.Nullable;
+import com.github.kristofa.brave.internal.SpanSizer;
 import com.twitter.zipkin.gen.Span;
 import java.io.Closeable;
 import java.io.Flushable;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import static java.util.concurrent.TimeUnit.SECONDS;
+import static com.github.kristofa.brave.internal.Util.checkNotNull;
 
 /**
  * Extend this class to offload the task of reporting spans to separate thread. By doing so, callers
@@ -23,7 +23,11 @@ import static java.util.concurrent.TimeUnit.SECONDS;
 public abstract class FlushingSpanCollector implements SpanCollector, Flushable, Closeable {
 
   private final SpanCollectorMetricsHandler metrics;
-  private final BlockingQueue<Span> pending = new LinkedBlockingQueue<Span>(1000);
+  @Nullable // when metrics doesn't implement SpanCollectorByteMetrics
+  private final SpanCollectorByteMetrics byteMetrics;
+  private final SpanQueue pending;
+  private final int flushMaxSpans;
+  private final long flushMaxBytes;
   @Nullable // for testing
   private final Flusher flusher;
 
@@ -31,29 +35,68 @@ public abstract class FlushingSpanCollector implements SpanCollector, Flushable,
    * @param flushInterval in seconds. 0 implies spans are {@link #flush() flushed externally.
    */
   protected FlushingSpanCollector(SpanCollectorMetricsHandler metrics, int flushInterval) {
+    this(metrics, flushInterval,
+        SpanQueue.create(SpanQueue.DEFAULT_MAX_SPANS, SpanQueue.DEFAULT_MAX_BYTES));
+  }
+
+  /**
+   * @param flushInterval in seconds. 0 implies spans are {@link #flush() flushed} externally.
+   * @param pending holds spans until they are flushed. Defaults to {@link SpanQueue#create(int, long)}
+   */
+  protected FlushingSpanCollector(SpanCollectorMetricsHandler metrics, int flushInterval,
+      SpanQueue pending) {
+    this(metrics, FlushPolicy.create(flushInterval), pending);
+  }
+
+  /**
+   * @param flushPolicy when and on how many threads to flush.
+   * @param pending holds spans until they are flushed. Defaults to {@link SpanQueue#create(int, long)}
+   */
+  protected FlushingSpanCollector(SpanCollectorMetricsHandler metrics, FlushPolicy flushPolicy,
+      SpanQueue pending) {
     this.metrics = metrics;
-    this.flusher = flushInterval > 0 ? new Flusher(this, flushInterval, getClass().getSimpleName()) : null;
+    this.byteMetrics =
+        metrics instanceof SpanCollectorByteMetrics ? (SpanCollectorByteMetrics) metrics : null;
+    this.pending = checkNotNull(pending, "pending");
+    checkNotNull(flushPolicy, "flushPolicy").validate();
+    this.flushMaxSpans = flushPolicy.maxSpans();
+    this.flushMaxBytes = flushPolicy.maxBytes();
+    this.flusher = flushPolicy.flushesExternally()
+        ? null : new Flusher(this, flushPolicy, getClass().getSimpleName());
   }
 
   /**
-   * Queues the span for collection, or drops it if the queue is full.
+   * Queues the span for collection, or drops it if the queue is full, either by count or by bytes.
    *
    * @param span Span, should not be <code>null</code>.
    */
   @Override
   public void collect(Span span) {
     metrics.incrementAcceptedSpans(1);
-    if (!pending.offer(span)) {
+    int sizeInBytes = SpanSizer.estimate(span);
+    if (!pending.offer(span, sizeInBytes)) {
       metrics.incrementDroppedSpans(1);
+      if (byteMetrics != null) byteMetrics.incrementDroppedBytes(sizeInBytes);
+      SpanPool.release(span);
     }
+    if (flusher != null && flushThresholdReached()) flusher.trigger();
+  }
+
+  boolean flushThresholdReached() {
+    return flushMaxSpans > 0 && pending.size() >= flushMaxSpans
+        || flushMaxBytes > 0 && pending.sizeInBytes() >= flushMaxBytes;
   }
 
   /**
    * Calling this will flush any pending spans to the transport on the current thread.
+   *
+   * <p>This can be called concurrently, for example when a {@link FlushPolicy} has multiple
+   * threads, in which case each call reports a different batch of spans.
    */
   @Override
   public void flush() {
     if (pending.isEmpty()) return;
+    if (byteMetrics != null) byteMetrics.updateQueuedBytes(pending.sizeInBytes());
     List<Span> drained = new ArrayList<Span>(pending.size());
     pending.drainTo(drained);
     if (drained.isEmpty()) return;
@@ -65,23 +108,63 @@ public abstract class FlushingSpanCollector implements SpanCollector, Flushable,
       metrics.incrementDroppedSpans(spanCount);
     } catch (RuntimeException e) {
       metrics.incrementDroppedSpans(spanCount);
+    } finally {
+      release(drained);
+    }
+  }
+
+  static void release(List<Span> spans) {
+    for (int i = 0, length = spans.size(); i < length; i++) {
+      SpanPool.release(spans.get(i));
     }
   }
 
-  /** Calls flush on a fixed interval */
+  /** Calls flush on a fixed interval, and on demand when enough spans are pending. */
   static final class Flusher implements Runnable {
     final Flushable flushable;
     final ScheduledExecutorService scheduler;
+    final int threads;
+    /** Count of triggered flushes scheduled or in progress, bounded by {@link #threads}. */
+    final AtomicInteger triggered = new AtomicInteger();
+    final Runnable triggeredFlush = new Runnable() {
+      @Override public void run() {
+        try {
+          Flusher.this.run();
+        } finally {
+          triggered.decrementAndGet();
+        }
+      }
+    };
 
-    Flusher(Flushable flushable, int flushInterval, final String threadPoolName) {
+    Flusher(Flushable flushable, FlushPolicy policy, final String threadPoolName) {
       this.flushable = flushable;
-      this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      this.threads = policy.threads();
+      this.scheduler = Executors.newScheduledThreadPool(threads, new ThreadFactory() {
+        final AtomicInteger count = new AtomicInteger();
+
         @Override
         public Thread newThread(final Runnable r) {
-          return new Thread(r, threadPoolName);
+          int n = count.incrementAndGet();
+          return new Thread(r, threads == 1 ? threadPoolName : threadPoolName + "-" + n);
         }
       });
-      this.scheduler.scheduleWithFixedDelay(this, 0, flushInterval, SECONDS);
+      if (policy.interval() > 0) {
+        this.scheduler.scheduleWithFixedDelay(this, 0, policy.interval(), policy.intervalUnit());
+      }
+    }
+
+    /** Flushes on another thread, unless all threads are already busy with triggered flushes. */
+    void trigger() {
+      int current;
+      do {
+        current = triggered.get();
+        if (current >= threads) return;
+      } while (!triggered.compareAndSet(current, current + 1));
+      try {
+        scheduler.execute(triggeredFlush);
+      } catch (RejectedExecutionException e) { // closed
+        triggered.decrementAndGet();
+      }
     }
 
     @Override
@@ -96,6 +179,8 @@ public abstract class FlushingSpanCollector implements SpanCollector, Flushable,
   /**
    * Reports a list of spans over the current transport.
    *
+   * <p>Don't retain the spans after this returns, as they may be {@link SpanPool recycled}.
+   *
    * @throws IOException (or RuntimeException) when thrown, drop metrics will increment accordingly
    */
   protected abstract void reportSpans(List<Span> drained) throws IOException;
@@ -106,13 +191,16 @@ public abstract class FlushingSpanCollector implements SpanCollector, Flushable,
   }
 
   /**
-   * Requests a cease of delivery. There will be at most one in-flight send after this call.
+   * Requests a cease of delivery. There will be at most one in-flight send per {@link
+   * FlushPolicy.Builder#threads(int) flush thread} after this call.
    */
   @Override
   public void close() {
     if (flusher != null) flusher.scheduler.shutdown();
     // throw any outstanding spans on the floor
-    int dropped = pending.drainTo(new LinkedList<Span>());
+    List<Span> drained = new ArrayList<Span>(pending.size());
+    int dropped = pending.drainTo(drained);
     metrics.incrementDroppedSpans(dropped);
+    release(drained);
   }
 }
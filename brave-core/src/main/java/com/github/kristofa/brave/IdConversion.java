@@ -15,6 +15,9 @@ package com.github.kristofa.brave;
  * For example instead of generating String 
  * "0" for long id 0 it generates "0000000000000000". But zipkin will properly convert String
  * representations in case they are not prepended with 0's. 
+ * <p/>
+ * Trace ids can also be 128-bit, represented as 32 lower-hex characters. Ids are parsed from any
+ * {@link CharSequence} without allocating.
  * 
  * @author kristof
  */
@@ -29,7 +32,33 @@ public class IdConversion {
 	public static String convertToString(final long id) {
             return Long.toHexString(id);
 	}
-	
+
+	/**
+	 * Converts a trace id to String. When {@code traceIdHigh} is zero, this is the same as {@link
+	 * #convertToString(long)}. Otherwise, the result is a 32 character lower-hex string, formatted
+	 * in a thread-local buffer so that only the String is allocated.
+	 *
+	 * @param traceIdHigh upper 64 bits of a 128-bit trace id, or zero.
+	 * @param traceId lower 64 bits of the trace id.
+	 * @return String representation.
+	 */
+	public static String convertToString(final long traceIdHigh, final long traceId) {
+	  if (traceIdHigh == 0) return convertToString(traceId);
+	  char[] data = BUFFER.get();
+	  writeLowerHex(data, 0, traceIdHigh);
+	  writeLowerHex(data, 16, traceId);
+	  return new String(data);
+	}
+
+	/**
+	 * Writes 16 lower-hex characters, zero-padded, starting at {@code pos}.
+	 */
+	public static void writeLowerHex(char[] data, int pos, long v) {
+	  for (int shift = 60; shift >= 0; shift -= 4) {
+	    data[pos++] = SpanId.HEX_DIGITS[(int) ((v >>> shift) & 0xf)];
+	  }
+	}
+
 	/**
 	 * Converts String trace or span id to long.
 	 * 
@@ -37,14 +66,48 @@ public class IdConversion {
 	 * @return Long representation.
 	 */
 	public static long convertToLong(final String id) {
-	  if (id.length() == 0 || id.length() > 16) {
+	  return convertToLong((CharSequence) id);
+	}
+
+	/**
+	 * Like {@link #convertToLong(String)}, except it reads any character sequence, such as a header
+	 * value that wasn't copied into a String.
+	 */
+	public static long convertToLong(final CharSequence id) {
+	  int length = id.length();
+	  if (length == 0 || length > 16) {
 	    throw new NumberFormatException(
 		id + " should be a <=16 character lower-hex string with no prefix");
 	  }
+	  return lowerHexToLong(id, 0, length);
+	}
 
+	/**
+	 * Returns the upper 64 bits of a trace id, or zero if it isn't 128-bit.
+	 *
+	 * @param traceId 1-16 or 32 character lower-hex trace id.
+	 * @see #convertToTraceId(CharSequence)
+	 */
+	public static long convertToTraceIdHigh(final CharSequence traceId) {
+	  return traceId.length() == 32 ? lowerHexToLong(traceId, 0, 16) : 0L;
+	}
+
+	/**
+	 * Like {@link #convertToLong(CharSequence)}, except it also accepts 32 character, 128-bit trace
+	 * ids. In that case, the lower 64 bits are returned.
+	 *
+	 * @param traceId 1-16 or 32 character lower-hex trace id.
+	 * @see #convertToTraceIdHigh(CharSequence)
+	 */
+	public static long convertToTraceId(final CharSequence traceId) {
+	  return traceId.length() == 32 ? lowerHexToLong(traceId, 16, 32) : convertToLong(traceId);
+	}
+
+	static long lowerHexToLong(CharSequence id, int beginIndex, int endIndex) {
 	  long result = 0;
 
-	  for (char c : id.toCharArray()) {
+	  for (int i = beginIndex; i < endIndex; i++) {
+	    char c = id.charAt(i);
 	    result <<= 4;
 
 	    if (c >= '0' && c <= '9') {
@@ -59,4 +122,10 @@ public class IdConversion {
 	  return result;
 	}
 
+	/** Scratch space for formatting ids, so that only the resulting string is allocated. */
+	static final ThreadLocal<char[]> BUFFER = new ThreadLocal<char[]>() {
+	  @Override protected char[] initialValue() {
+	    return new char[32];
+	  }
+	};
 }
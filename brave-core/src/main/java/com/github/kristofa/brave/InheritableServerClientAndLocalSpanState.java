@@ -0,0 +1,54 @@
+package com.github.kristofa.brave;
+
+/**
+ * Like {@link ScopedServerClientAndLocalSpanState}, except a new thread starts with the context of
+ * the thread that created it.
+ *
+ * <p>This suits thread-per-task execution, such as virtual threads or {@code
+ * Executors.newThreadPerTaskExecutor}. These executors create each thread on the submitting
+ * thread, so tasks see the caller's spans without wrapping. Creating the thread copies one
+ * reference, as the context is immutable. Changes a task makes to its spans only affect its own
+ * thread.
+ *
+ * <p>A virtual thread's state belongs to the virtual thread, not the carrier thread running it. So
+ * when the task ends, its spans are released with it.
+ *
+ * <p>Don't rely on inheritance with thread pools. A pooled thread inherits the context of whichever
+ * request happened to create it, and keeps it across tasks. Decorate pools with {@link
+ * BraveExecutors} instead, which replaces that context while each task runs.
+ */
+public final class InheritableServerClientAndLocalSpanState extends ScopedServerClientAndLocalSpanState {
+
+    static final InheritableThreadLocal<Context> INHERITABLE = new InheritableThreadLocal<Context>() {
+        @Override
+        protected Context initialValue() {
+            return EMPTY;
+        }
+
+        @Override
+        protected Context childValue(Context parentValue) {
+            return parentValue.pin();
+        }
+    };
+
+    static final Context EMPTY = new Context(INHERITABLE, ServerSpan.EMPTY, null, null);
+
+    /**
+     * Returns the span state of the current thread. Its {@link Context#attach()} and {@code wrap}
+     * apply to this state.
+     */
+    public static Context current() {
+        return INHERITABLE.get();
+    }
+
+    /**
+     * Constructor
+     *
+     * @param ip Int representation of ipv4 address.
+     * @param port port on which current process is listening.
+     * @param serviceName Name of the local service being traced. Should be lowercase and not <code>null</code> or empty.
+     */
+    public InheritableServerClientAndLocalSpanState(int ip, int port, String serviceName) {
+        super(EMPTY, ip, port, serviceName);
+    }
+}
@@ -4,13 +4,17 @@ import com.github.kristofa.brave.internal.Nullable;
 import com.twitter.zipkin.gen.Span;
 
 /**
- * Maintains state for a single local span. This means nesting is not supported.
+ * Maintains state for the current local span.
  *
  * <p/>Local spans can be at the following locations in the span tree.
  * <ul>
  *     <li>The root-span of a trace originated by Brave</li>
  *     <li>A child of a server span originated by Brave</li>
+ *     <li>A child of another local span</li>
  * </ul>
+ *
+ * <p/>Only the innermost local span is held here. {@link LocalTracer} links each local span to the
+ * one it encloses, so nesting doesn't need more state.
  */
 public interface LocalSpanState extends CommonSpanState {
 
@@ -29,13 +29,17 @@ public final class LocalSpanThreadBinder {
 
   /**
    * This should be called in the thread in which the local request made after starting new local
-   * span. <p> It returns the current local span which you can keep and bind to the callback thread
+   * span. <p> It returns the current local span which you can keep and bind to the callback thread.
+   * The span is never recycled by a {@link SpanPool}, as the callback may use it after it is
+   * reported.
    *
    * @return Returned Span can be bound to different callback thread.
    * @see #setCurrentSpan(Span)
    */
   public Span getCurrentLocalSpan() {
-    return state.getCurrentLocalSpan();
+    Span result = state.getCurrentLocalSpan();
+    SpanPool.pin(result);
+    return result;
   }
 
   /**
@@ -1,8 +1,8 @@
 package com.github.kristofa.brave;
 
 import com.github.kristofa.brave.SpanAndEndpoint.LocalSpanAndEndpoint;
+import com.github.kristofa.brave.internal.Nullable;
 import com.google.auto.value.AutoValue;
-import com.twitter.zipkin.gen.BinaryAnnotation;
 import com.twitter.zipkin.gen.Span;
 import zipkin.Constants;
 
@@ -30,13 +30,19 @@ import static zipkin.Constants.LOCAL_COMPONENT;
  * }
  * </pre>
  *
+ * <p/>Local spans nest. A span started while another local span is current becomes its child, and
+ * finishing it makes the enclosing span current again. Finish spans in the reverse order they were
+ * started, as with the try/finally above.
+ *
  * @see Constants#LOCAL_COMPONENT
  */
 @AutoValue
 public abstract class LocalTracer extends AnnotationSubmitter {
 
     static Builder builder() {
-        return new AutoValue_LocalTracer.Builder();
+        return new AutoValue_LocalTracer.Builder()
+            .clock(DefaultClock.INSTANCE)
+            .spanPool(SpanPool.NONE);
     }
 
     // visible for testing
@@ -53,6 +59,11 @@ public abstract class LocalTracer extends AnnotationSubmitter {
 
     abstract Sampler traceSampler();
 
+    @Override
+    abstract Clock clock();
+
+    abstract SpanPool spanPool();
+
     @AutoValue.Builder
     abstract static class Builder {
 
@@ -64,6 +75,10 @@ public abstract class LocalTracer extends AnnotationSubmitter {
 
         abstract Builder traceSampler(Sampler sampler);
 
+        abstract Builder clock(Clock clock);
+
+        abstract Builder spanPool(SpanPool spanPool);
+
         abstract LocalTracer build();
     }
 
@@ -76,18 +91,20 @@ public abstract class LocalTracer extends AnnotationSubmitter {
      * @see Constants#LOCAL_COMPONENT
      */
     public SpanId startNewSpan(String component, String operation) {
-        SpanId spanId = startNewSpan(component, operation, currentTimeMicroseconds());
+        long timestamp = currentTimeMicroseconds();
+        long tick = clock().nanoTime();
+        SpanId spanId = startNewSpan(component, operation, timestamp);
         if (spanId == null) return null;
-        spanAndEndpoint().span().startTick = System.nanoTime(); // embezzle start tick into an internal field.
+        spanAndEndpoint().span().startTick = tick; // embezzle start tick into an internal field.
         return spanId;
     }
 
-    private SpanId getNewSpanId() {
-        Span parentSpan = spanAndEndpoint().state().getCurrentServerSpan().getSpan();
+    private SpanId getNewSpanId(@Nullable Span parentSpan) {
         long newSpanId = randomGenerator().nextLong();
         SpanId.Builder builder = SpanId.builder().spanId(newSpanId);
         if (parentSpan == null) return builder.build(); // new trace
-        return builder.traceId(parentSpan.getTrace_id()).parentId(parentSpan.getId()).build();
+        return builder.traceIdHigh(parentSpan.getTrace_id_high()).traceId(parentSpan.getTrace_id())
+            .parentId(parentSpan.getId()).build();
     }
 
     /**
@@ -101,26 +118,33 @@ public abstract class LocalTracer extends AnnotationSubmitter {
      */
     public SpanId startNewSpan(String component, String operation, long timestamp) {
 
-        Boolean sample = spanAndEndpoint().state().sample();
-        if (Boolean.FALSE.equals(sample)) {
-            spanAndEndpoint().state().setCurrentLocalSpan(null);
-            return null;
-        }
-
-        SpanId newSpanId = getNewSpanId();
-        if (sample == null) {
-            // No sample indication is present.
-            if (!traceSampler().isSampled(newSpanId.traceId)) {
+        Span enclosingSpan = spanAndEndpoint().state().getCurrentLocalSpan();
+        final SpanId newSpanId;
+        if (enclosingSpan != null) {
+            // The enclosing span was sampled, so its children are too.
+            newSpanId = getNewSpanId(enclosingSpan);
+        } else {
+            Boolean sample = spanAndEndpoint().state().sample();
+            if (Boolean.FALSE.equals(sample)) {
                 spanAndEndpoint().state().setCurrentLocalSpan(null);
                 return null;
             }
+
+            newSpanId = getNewSpanId(spanAndEndpoint().state().getCurrentServerSpan().getSpan());
+            if (sample == null) {
+                // No sample indication is present.
+                if (!traceSampler().isSampled(newSpanId.traceId)) {
+                    spanAndEndpoint().state().setCurrentLocalSpan(null);
+                    return null;
+                }
+            }
         }
 
-        Span newSpan = newSpanId.toSpan();
+        Span newSpan = newSpanId.toSpan(spanPool().acquire());
         newSpan.setName(operation);
         newSpan.setTimestamp(timestamp);
-        newSpan.addToBinary_annotations(
-            BinaryAnnotation.create(LOCAL_COMPONENT, component, spanAndEndpoint().endpoint()));
+        newSpan.addBinaryAnnotation(LOCAL_COMPONENT, component, spanAndEndpoint().endpoint());
+        newSpan.enclosingLocalSpan = enclosingSpan;
         spanAndEndpoint().state().setCurrentLocalSpan(newSpan);
         return newSpanId;
     }
@@ -129,7 +153,7 @@ public abstract class LocalTracer extends AnnotationSubmitter {
      * Completes the span, assigning the most precise duration possible.
      */
     public void finishSpan() {
-        long endTick = System.nanoTime();
+        long endTick = clock().nanoTime();
 
         Span span = spanAndEndpoint().span();
         if (span == null) return;
@@ -145,18 +169,37 @@ public abstract class LocalTracer extends AnnotationSubmitter {
     }
 
     /**
-     * Completes the span, which took {@code duration} microseconds.
+     * Completes the span, which took {@code duration} microseconds. The enclosing local span, if
+     * any, becomes current again, unless it already finished. In that case, the next local span
+     * nests under the server span.
      */
     public void finishSpan(long duration) {
         Span span = spanAndEndpoint().span();
         if (span == null) return;
 
-        synchronized (span) {
-            span.setDuration(duration);
-            spanCollector().collect(span);
+        Span enclosingSpan = span.enclosingLocalSpan;
+        span.enclosingLocalSpan = null; // don't retain the enclosing span once this is reported
+        // read before collecting, as a pooled span may be cleared once reported
+        long traceId = span.getTrace_id();
+        Long parentId = span.getParent_id();
+        span.setDuration(duration);
+        spanCollector().collect(span);
+
+        if (enclosingSpan != null && !isOpenParent(enclosingSpan, traceId, parentId)) {
+            enclosingSpan = null;
         }
+        spanAndEndpoint().state().setCurrentLocalSpan(enclosingSpan);
+    }
 
-        spanAndEndpoint().state().setCurrentLocalSpan(null);
+    /**
+     * Returns false if the enclosing span finished out of order. When spans are pooled, it may even
+     * have been recycled into another trace, so its ids are checked as well.
+     */
+    static boolean isOpenParent(Span enclosing, long traceId, @Nullable Long parentId) {
+        return enclosing.getDuration() == null
+            && !SpanPool.isReleased(enclosing)
+            && enclosing.getTrace_id() == traceId
+            && parentId != null && enclosing.getId() == parentId;
     }
 
     LocalTracer() {
@@ -47,6 +47,7 @@ public class LoggingSpanCollector implements SpanCollector {
         if (getLogger().isLoggable(Level.INFO)) {
             getLogger().info(span.toString());
         }
+        SpanPool.release(span);
     }
 
     /**
@@ -0,0 +1,65 @@
+package com.github.kristofa.brave;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static zipkin.internal.Util.checkArgument;
+
+/**
+ * This sampler is appropriate for nodes whose traffic is bursty, where a percentage would let span
+ * volume grow with load. It starts at most {@code tracesPerSecond} new traces each second, no
+ * matter how many requests arrive. Like {@link CountingSampler}, the decision isn't idempotent
+ * (consistent based on trace id), so it is only appropriate for instrumented entry-points.
+ *
+ * <h3>Implementation</h3>
+ *
+ * <p>This is a token bucket holding one second of traces, refilled continuously. Instead of a
+ * token count, it tracks the time the bucket would next be full (the generic cell rate algorithm).
+ * Taking a token advances that time by one interval with compare-and-set, so there's no lock.
+ */
+public final class RateLimitingSampler extends Sampler {
+
+  /**
+   * @param tracesPerSecond 0 means never sample. Otherwise, the maximum count of traces to start
+   * per second
+   */
+  public static Sampler create(int tracesPerSecond) {
+    checkArgument(tracesPerSecond >= 0, "tracesPerSecond < 0: %s", tracesPerSecond);
+    if (tracesPerSecond == 0) return NEVER_SAMPLE;
+    return new RateLimitingSampler(tracesPerSecond, System.nanoTime());
+  }
+
+  static final long CAPACITY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final int tracesPerSecond;
+  private final long intervalNanos;
+  /** The time the bucket will be full, if no tokens are taken before then. */
+  private final AtomicLong fullAt;
+
+  RateLimitingSampler(int tracesPerSecond, long nanoTime) {
+    this.tracesPerSecond = tracesPerSecond;
+    this.intervalNanos = CAPACITY_NANOS / tracesPerSecond;
+    this.fullAt = new AtomicLong(nanoTime);
+  }
+
+  @Override
+  public boolean isSampled(long traceIdIgnored) {
+    return isSampledAt(System.nanoTime());
+  }
+
+  boolean isSampledAt(long nanoTime) {
+    long current, next;
+    do {
+      current = fullAt.get();
+      // compare by subtraction, as nanoTime can overflow
+      next = (nanoTime - current > 0 ? nanoTime : current) + intervalNanos;
+      if (next - nanoTime > CAPACITY_NANOS) return false; // bucket is empty
+    } while (!fullAt.compareAndSet(current, next));
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return "RateLimitingSampler(" + tracesPerSecond + ")";
+  }
+}
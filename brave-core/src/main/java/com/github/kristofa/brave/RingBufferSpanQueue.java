@@ -0,0 +1,151 @@
+package com.github.kristofa.brave;
+
+import com.twitter.zipkin.gen.Span;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free queue of spans, backed by a ring buffer allocated up front.
+ *
+ * <h3>Implementation</h3>
+ *
+ * <p>This is Dmitry Vyukov's bounded queue. Each slot has a sequence number, which says whether the
+ * slot is ready to be written at a given producer position, or ready to be read at a given consumer
+ * position. Producers claim a position with a compare-and-set on {@link #tail}, write the span, then
+ * publish it by advancing the slot's sequence. The consumer does the same against {@link #head}.
+ *
+ * <p>The byte bound is enforced by adding the span's size to {@link #sizeInBytes} before claiming a
+ * slot, and backing it out if that exceeded the bound. The size is kept in a slot of its own, so
+ * that it can be subtracted once the span is drained.
+ *
+ * <p>Nothing is allocated per span, and producers only contend on a single counter, never a lock.
+ * Consumers also use compare-and-set, so concurrent calls to {@link #drainTo(List)}, for example an
+ * explicit {@link FlushingSpanCollector#flush()} during a scheduled one, are safe.
+ *
+ * <p>See http://www.1024cores.net/home/lock-free-algorithms/queues/bounded-mpmc-queue
+ */
+final class RingBufferSpanQueue extends SpanQueue {
+
+  final int capacity;
+  final long maxBytes;
+  final AtomicReferenceArray<Span> elements;
+  final int[] sizes; // published along with elements by sequences
+  final AtomicLongArray sequences;
+  final AtomicLong sizeInBytes = new AtomicLong();
+  final AtomicLong tail = new AtomicLong(); // next position to write
+  final AtomicLong head = new AtomicLong(); // next position to read
+
+  RingBufferSpanQueue(int capacity, long maxBytes) {
+    this.capacity = capacity;
+    this.maxBytes = maxBytes;
+    this.elements = new AtomicReferenceArray<Span>(capacity);
+    this.sizes = new int[capacity];
+    this.sequences = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  @Override
+  public boolean offer(Span span, int sizeInBytes) {
+    if (this.sizeInBytes.addAndGet(sizeInBytes) > maxBytes) {
+      this.sizeInBytes.addAndGet(-sizeInBytes);
+      return false;
+    }
+    if (!claimAndPublish(span, sizeInBytes)) {
+      this.sizeInBytes.addAndGet(-sizeInBytes);
+      return false;
+    }
+    return true;
+  }
+
+  boolean claimAndPublish(Span span, int sizeInBytes) {
+    long position = tail.get();
+    while (true) {
+      int index = (int) (position % capacity);
+      long difference = sequences.get(index) - position;
+      if (difference == 0) { // the slot is free for this position
+        if (tail.compareAndSet(position, position + 1)) {
+          sizes[index] = sizeInBytes;
+          elements.lazySet(index, span);
+          sequences.lazySet(index, position + 1); // publishes the span to the consumer
+          return true;
+        }
+        position = tail.get();
+      } else if (difference < 0) { // the slot still holds a span from the previous lap
+        return false;
+      } else { // another producer claimed this position
+        position = tail.get();
+      }
+    }
+  }
+
+  @Override
+  public int drainTo(List<Span> sink) {
+    int drained = 0;
+    long drainedBytes = 0;
+    long position = head.get();
+    while (true) {
+      int index = (int) (position % capacity);
+      long difference = sequences.get(index) - (position + 1);
+      if (difference == 0) { // the slot was published for this position
+        if (head.compareAndSet(position, position + 1)) {
+          sink.add(elements.get(index));
+          drainedBytes += sizes[index];
+          elements.lazySet(index, null); // don't retain the span until the next lap
+          sequences.lazySet(index, position + capacity); // frees the slot for the next lap
+          drained++;
+          position++;
+        } else {
+          position = head.get();
+        }
+      } else if (difference < 0) { // empty, or the producer hasn't yet published
+        sizeInBytes.addAndGet(-drainedBytes);
+        return drained;
+      } else { // another consumer claimed this position
+        position = head.get();
+      }
+    }
+  }
+
+  /** Removes and returns the next span, or null if there is none. Used as the free list of a pool. */
+  Span poll() {
+    long position = head.get();
+    while (true) {
+      int index = (int) (position % capacity);
+      long difference = sequences.get(index) - (position + 1);
+      if (difference == 0) { // the slot was published for this position
+        if (head.compareAndSet(position, position + 1)) {
+          Span result = elements.get(index);
+          if (sizes[index] != 0) sizeInBytes.addAndGet(-sizes[index]);
+          elements.lazySet(index, null);
+          sequences.lazySet(index, position + capacity); // frees the slot for the next lap
+          return result;
+        }
+        position = head.get();
+      } else if (difference < 0) { // empty, or the producer hasn't yet published
+        return null;
+      } else { // another consumer claimed this position
+        position = head.get();
+      }
+    }
+  }
+
+  @Override
+  public int size() {
+    long size = tail.get() - head.get();
+    return (int) Math.max(0, Math.min(size, capacity));
+  }
+
+  @Override
+  public long sizeInBytes() {
+    return Math.max(0, sizeInBytes.get());
+  }
+
+  @Override
+  public String toString() {
+    return "RingBufferSpanQueue(" + capacity + ")";
+  }
+}
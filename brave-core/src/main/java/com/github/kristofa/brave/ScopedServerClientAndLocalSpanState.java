@@ -0,0 +1,261 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.internal.Nullable;
+import com.github.kristofa.brave.internal.Util;
+import com.twitter.zipkin.gen.Endpoint;
+import com.twitter.zipkin.gen.Span;
+import java.util.concurrent.Callable;
+
+/**
+ * {@link ServerClientAndLocalSpanState} implementation that keeps the server, client and local span
+ * in a single immutable {@link Context}, held by one ThreadLocal.
+ *
+ * <p>Compared to {@link ThreadLocalServerClientAndLocalSpanState}, reading all three spans is one
+ * ThreadLocal lookup, and handing them to another thread is one reference copy:
+ *
+ * <pre>{@code
+ * final Context context = ScopedServerClientAndLocalSpanState.current();
+ * executor.execute(context.wrap(runnable));
+ * }</pre>
+ *
+ * <p>Changing a span replaces the current context, so contexts captured earlier aren't affected.
+ */
+public class ScopedServerClientAndLocalSpanState implements ServerClientAndLocalSpanState {
+
+    /**
+     * Span state of the current scope. Instances are immutable, so they are safe to share.
+     *
+     * <p>A context belongs to the state it was read from: {@link #attach()} and {@code wrap} make it
+     * current for that state, for example {@link InheritableServerClientAndLocalSpanState}.
+     */
+    public static final class Context {
+
+        /** No server, client or local span, in {@link ScopedServerClientAndLocalSpanState}. */
+        public static final Context EMPTY = new Context(CURRENT, ServerSpan.EMPTY, null, null);
+
+        /** Where this context is attached, or null if it was copied from another state implementation. */
+        @Nullable final ThreadLocal<Context> local;
+        final ServerSpan serverSpan;
+        @Nullable final Span clientSpan;
+        @Nullable final Span localSpan;
+
+        Context(@Nullable ThreadLocal<Context> local, ServerSpan serverSpan, @Nullable Span clientSpan,
+            @Nullable Span localSpan) {
+            this.local = local;
+            this.serverSpan = serverSpan;
+            this.clientSpan = clientSpan;
+            this.localSpan = localSpan;
+        }
+
+        /**
+         * Makes this the current context of the state it was read from, returning the one it
+         * replaces. Restore the previous context when leaving scope:
+         *
+         * <pre>{@code
+         * Context previous = context.attach();
+         * try {
+         *   ...
+         * } finally {
+         *   previous.attach();
+         * }
+         * }</pre>
+         */
+        public Context attach() {
+            if (local == null) throw new IllegalStateException("context isn't from a scoped state");
+            Context previous = local.get();
+            local.set(this);
+            return previous;
+        }
+
+        /** Returns a runnable that runs the input in this context, restoring the caller's after. */
+        public Runnable wrap(final Runnable runnable) {
+            Util.checkNotNull(runnable, "runnable");
+            pin();
+            return new Runnable() {
+                @Override
+                public void run() {
+                    Context previous = attach();
+                    try {
+                        runnable.run();
+                    } finally {
+                        previous.attach();
+                    }
+                }
+            };
+        }
+
+        /** Returns a callable that calls the input in this context, restoring the caller's after. */
+        public <V> Callable<V> wrap(final Callable<V> callable) {
+            Util.checkNotNull(callable, "callable");
+            pin();
+            return new Callable<V>() {
+                @Override
+                public V call() throws Exception {
+                    Context previous = attach();
+                    try {
+                        return callable.call();
+                    } finally {
+                        previous.attach();
+                    }
+                }
+            };
+        }
+
+        /** Keeps pooled spans from being recycled, as another thread will use this context. */
+        Context pin() {
+            if (serverSpan != null) SpanPool.pin(serverSpan.getSpan());
+            SpanPool.pin(clientSpan);
+            for (Span span = localSpan; span != null; span = span.enclosingLocalSpan) {
+                SpanPool.pin(span);
+            }
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return "Context{serverSpan=" + serverSpan + ", clientSpan=" + clientSpan
+                + ", localSpan=" + localSpan + "}";
+        }
+    }
+
+    static final ThreadLocal<Context> CURRENT = new ThreadLocal<Context>() {
+        @Override
+        protected Context initialValue() {
+            return Context.EMPTY;
+        }
+    };
+
+    /** Returns the span state of the current thread, to pass to another one. */
+    public static Context current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Like {@link #current()}, except it also works for other state implementations, by copying
+     * their spans into a new context. The result is {@link Context#pin() pinned}, as it's for
+     * another thread.
+     */
+    static Context capture(ServerClientAndLocalSpanState state) {
+        if (state instanceof ScopedServerClientAndLocalSpanState) {
+            return ((ScopedServerClientAndLocalSpanState) state).local.get().pin();
+        }
+        return new Context(null, state.getCurrentServerSpan(), state.getCurrentClientSpan(),
+            state.getCurrentLocalSpan()).pin();
+    }
+
+    /**
+     * Like {@link Context#attach()}, except it also works for other state implementations, by
+     * setting each of their spans.
+     */
+    static Context attach(ServerClientAndLocalSpanState state, Context context) {
+        if (state instanceof ScopedServerClientAndLocalSpanState) {
+            return ((ScopedServerClientAndLocalSpanState) state).attach(context);
+        }
+        Context previous = capture(state);
+        // skip unchanged spans, as clearing a span can remove a ThreadLocal entry that's then re-added
+        if (previous.serverSpan != context.serverSpan) state.setCurrentServerSpan(context.serverSpan);
+        if (previous.clientSpan != context.clientSpan) state.setCurrentClientSpan(context.clientSpan);
+        if (previous.localSpan != context.localSpan) state.setCurrentLocalSpan(context.localSpan);
+        return previous;
+    }
+
+    final ThreadLocal<Context> local;
+    final Context empty;
+    private final Endpoint endpoint;
+
+    /**
+     * Constructor
+     *
+     * @param ip Int representation of ipv4 address.
+     * @param port port on which current process is listening.
+     * @param serviceName Name of the local service being traced. Should be lowercase and not <code>null</code> or empty.
+     */
+    public ScopedServerClientAndLocalSpanState(int ip, int port, String serviceName) {
+        this(Context.EMPTY, ip, port, serviceName);
+    }
+
+    /** @param empty the empty context of the thread local this state uses */
+    ScopedServerClientAndLocalSpanState(Context empty, int ip, int port, String serviceName) {
+        Util.checkNotBlank(serviceName, "Service name must be specified.");
+        this.local = empty.local;
+        this.empty = empty;
+        endpoint = Endpoint.create(serviceName, ip, port);
+    }
+
+    /**
+     * Makes the context current for this state, returning the one it replaces. A context read from
+     * another state is copied, so that it belongs to this one.
+     *
+     * @see Context#attach()
+     */
+    public Context attach(Context context) {
+        Util.checkNotNull(context, "context");
+        Context previous = local.get();
+        if (context.local == local) {
+            local.set(context);
+        } else {
+            update(context.serverSpan, context.clientSpan, context.localSpan);
+        }
+        return previous;
+    }
+
+    @Override
+    public ServerSpan getCurrentServerSpan() {
+        return local.get().serverSpan;
+    }
+
+    @Override
+    public void setCurrentServerSpan(final ServerSpan span) {
+        Context current = local.get();
+        ServerSpan serverSpan = span != null ? span : ServerSpan.EMPTY;
+        if (current.serverSpan == serverSpan) return;
+        update(serverSpan, current.clientSpan, current.localSpan);
+    }
+
+    @Override
+    public Endpoint endpoint() {
+        return endpoint;
+    }
+
+    @Override
+    public Span getCurrentClientSpan() {
+        return local.get().clientSpan;
+    }
+
+    @Override
+    public void setCurrentClientSpan(final Span span) {
+        Context current = local.get();
+        if (current.clientSpan == span) return;
+        update(current.serverSpan, span, current.localSpan);
+    }
+
+    @Override
+    public Boolean sample() {
+        return local.get().serverSpan.getSample();
+    }
+
+    @Override
+    public Span getCurrentLocalSpan() {
+        return local.get().localSpan;
+    }
+
+    @Override
+    public void setCurrentLocalSpan(Span span) {
+        Context current = local.get();
+        if (current.localSpan == span) return;
+        update(current.serverSpan, current.clientSpan, span);
+    }
+
+    /**
+     * Replaces the current context. Once all spans are cleared, the thread holds the shared empty
+     * context, so it doesn't retain spans. That's cheaper than removing the thread's entry, which
+     * would be allocated again by the next request.
+     */
+    void update(ServerSpan serverSpan, @Nullable Span clientSpan, @Nullable Span localSpan) {
+        if (serverSpan == ServerSpan.EMPTY && clientSpan == null && localSpan == null) {
+            local.set(empty);
+        } else {
+            local.set(new Context(local, serverSpan, clientSpan, localSpan));
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.github.kristofa.brave;
 
+import com.github.kristofa.brave.internal.Nullable;
 import java.util.logging.Logger;
 
 import static com.github.kristofa.brave.internal.Util.checkNotNull;
@@ -18,9 +19,19 @@ public class ServerRequestInterceptor {
     private final static Logger LOGGER = Logger.getLogger(ServerRequestInterceptor.class.getName());
 
     private final ServerTracer serverTracer;
+    @Nullable
+    private final ServerRequestSampler requestSampler;
 
     public ServerRequestInterceptor(ServerTracer serverTracer) {
+        this(serverTracer, null);
+    }
+
+    /**
+     * @param requestSampler when not null, chooses the sampler for requests that aren't yet part of a trace.
+     */
+    public ServerRequestInterceptor(ServerTracer serverTracer, @Nullable ServerRequestSampler requestSampler) {
         this.serverTracer = checkNotNull(serverTracer, "Null serverTracer");
+        this.requestSampler = requestSampler;
     }
 
     /**
@@ -40,11 +51,16 @@ public class ServerRequestInterceptor {
             if (traceData.getSpanId() != null) {
                 LOGGER.fine("Received span information as part of request.");
                 SpanId spanId = traceData.getSpanId();
-                serverTracer.setStateCurrentTrace(spanId.traceId, spanId.spanId,
-                        spanId.nullableParentId(), adapter.getSpanName());
+                serverTracer.setStateCurrentTrace(spanId, adapter.getSpanName());
             } else {
                 LOGGER.fine("Received no span state.");
-                serverTracer.setStateUnknown(adapter.getSpanName());
+                String spanName = adapter.getSpanName();
+                Sampler sampler = requestSampler != null ? requestSampler.sampler(spanName, adapter) : null;
+                if (sampler != null) {
+                    serverTracer.setStateUnknown(spanName, sampler);
+                } else {
+                    serverTracer.setStateUnknown(spanName);
+                }
             }
             serverTracer.setServerReceived();
             for(KeyValueAnnotation annotation : adapter.requestAnnotations())
@@ -0,0 +1,24 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.internal.Nullable;
+
+/**
+ * Chooses the sampler for an incoming request that isn't yet part of a trace. This allows sample
+ * rates to differ by endpoint, for example to trace fewer health checks and more of a rare, slow
+ * request.
+ *
+ * <p>This is invoked on every such request, so implementations should decide without allocating or
+ * scanning rules linearly.
+ *
+ * @see Brave.Builder#serverRequestSampler(ServerRequestSampler)
+ */
+public interface ServerRequestSampler {
+
+    /**
+     * @param spanName name of the span that would be started, from {@link ServerRequestAdapter#getSpanName()}
+     * @param adapter the incoming request
+     * @return the sampler to decide with, or null to use the {@link Brave.Builder#traceSampler(Sampler) trace sampler}.
+     */
+    @Nullable
+    Sampler sampler(String spanName, ServerRequestAdapter adapter);
+}
@@ -47,7 +47,14 @@ public abstract class ServerSpan {
      * @param name Span name. Should be lowercase and not <code>null</code> or empty.
      */
      static ServerSpan create(long traceId, long spanId, @Nullable Long parentSpanId, String name) {
-        Span span = new Span();
+        return create(new Span(), traceId, spanId, parentSpanId, name);
+    }
+
+    /**
+     * Like {@link #create(long, long, Long, String)}, except populates an empty span, such as one
+     * from a {@link SpanPool}.
+     */
+    static ServerSpan create(Span span, long traceId, long spanId, @Nullable Long parentSpanId, String name) {
         span.setTrace_id(traceId);
         span.setId(spanId);
         if (parentSpanId != null) {
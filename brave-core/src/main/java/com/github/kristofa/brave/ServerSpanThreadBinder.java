@@ -31,14 +31,17 @@ public class ServerSpanThreadBinder {
      * This should be called in the thread in which the request was received before executing code in new threads.
      * <p>
      * It returns the current server span which you can keep and bind to a new thread using
-     * {@link ServerSpanThreadBinder#setCurrentSpan(ServerSpan)}.
+     * {@link ServerSpanThreadBinder#setCurrentSpan(ServerSpan)}. The span is never recycled by a {@link SpanPool}, as
+     * another thread may use it after it is reported.
      *
      * @see ServerSpanThreadBinder#setCurrentSpan(ServerSpan)
      * @return Returned Span can be bound to different executing threads.
      */
     @Nullable
     public ServerSpan getCurrentServerSpan() {
-        return state.getCurrentServerSpan();
+        ServerSpan result = state.getCurrentServerSpan();
+        if (result != null) SpanPool.pin(result.getSpan());
+        return result;
     }
 
     /**
@@ -50,4 +53,9 @@ public class ServerSpanThreadBinder {
     public void setCurrentSpan(final ServerSpan span) {
         state.setCurrentServerSpan(span);
     }
+
+    /** The state this binds, which also holds client and local spans when it is a {@link ServerClientAndLocalSpanState}. */
+    ServerSpanState state() {
+        return state;
+    }
 }
@@ -5,6 +5,7 @@ import com.google.auto.value.AutoValue;
 import com.github.kristofa.brave.SpanAndEndpoint.ServerSpanAndEndpoint;
 import com.github.kristofa.brave.internal.Nullable;
 import com.twitter.zipkin.gen.Endpoint;
+import com.twitter.zipkin.gen.Span;
 import zipkin.Constants;
 
 import java.util.Random;
@@ -30,7 +31,9 @@ import static com.github.kristofa.brave.internal.Util.checkNotBlank;
 public abstract class ServerTracer extends AnnotationSubmitter {
 
     public static Builder builder() {
-        return new AutoValue_ServerTracer.Builder();
+        return new AutoValue_ServerTracer.Builder()
+            .clock(DefaultClock.INSTANCE)
+            .spanPool(SpanPool.NONE);
     }
 
     @Override
@@ -38,6 +41,9 @@ public abstract class ServerTracer extends AnnotationSubmitter {
     abstract Random randomGenerator();
     abstract SpanCollector spanCollector();
     abstract Sampler traceSampler();
+    @Override
+    abstract Clock clock();
+    abstract SpanPool spanPool();
 
     @AutoValue.Builder
     public abstract static class Builder {
@@ -57,6 +63,16 @@ public abstract class ServerTracer extends AnnotationSubmitter {
 
         public abstract Builder traceSampler(Sampler sampler);
 
+        /**
+         * Source of span timestamps and durations. Defaults to the system clock.
+         */
+        public abstract Builder clock(Clock clock);
+
+        /**
+         * Where new spans come from. Defaults to {@link SpanPool#NONE}, which allocates each span.
+         */
+        public abstract Builder spanPool(SpanPool spanPool);
+
         public abstract ServerTracer build();
     }
 
@@ -80,7 +96,21 @@ public abstract class ServerTracer extends AnnotationSubmitter {
     public void setStateCurrentTrace(long traceId, long spanId, @Nullable Long parentSpanId, @Nullable String name) {
         checkNotBlank(name, "Null or blank span name");
         spanAndEndpoint().state().setCurrentServerSpan(
-            ServerSpan.create(traceId, spanId, parentSpanId, name));
+            ServerSpan.create(spanPool().acquire(), traceId, spanId, parentSpanId, name));
+    }
+
+    /**
+     * Like {@link #setStateCurrentTrace(long, long, Long, String)}, except it also keeps the upper
+     * 64 bits of a 128-bit trace id.
+     *
+     * @param spanId Trace and span ids propagated with the request.
+     * @param name Name should not be empty or <code>null</code>.
+     */
+    public void setStateCurrentTrace(SpanId spanId, @Nullable String name) {
+        checkNotBlank(name, "Null or blank span name");
+        Span span = spanPool().acquire().setTrace_id_high(spanId.traceIdHigh);
+        spanAndEndpoint().state().setCurrentServerSpan(ServerSpan.create(
+            span, spanId.traceId, spanId.spanId, spanId.nullableParentId(), name));
     }
 
     /**
@@ -102,14 +132,26 @@ public abstract class ServerTracer extends AnnotationSubmitter {
      * @param spanName The name of our current request/span.
      */
     public void setStateUnknown(String spanName) {
+        setStateUnknown(spanName, traceSampler());
+    }
+
+    /**
+     * Like {@link #setStateUnknown(String)}, except the decision to trace is made by the supplied
+     * sampler instead of the {@link Brave.Builder#traceSampler(Sampler) trace sampler}.
+     *
+     * @param spanName The name of our current request/span.
+     * @param sampler Decides if the new trace is sampled.
+     * @see ServerRequestSampler
+     */
+    public void setStateUnknown(String spanName, Sampler sampler) {
         checkNotBlank(spanName, "Null or blank span name");
         long newTraceId = randomGenerator().nextLong();
-        if (!traceSampler().isSampled(newTraceId)) {
+        if (!sampler.isSampled(newTraceId)) {
             spanAndEndpoint().state().setCurrentServerSpan(ServerSpan.NOT_SAMPLED);
             return;
         }
         spanAndEndpoint().state().setCurrentServerSpan(
-            ServerSpan.create(newTraceId, newTraceId, null, spanName));
+            ServerSpan.create(spanPool().acquire(), newTraceId, newTraceId, null, spanName));
     }
 
     /**
@@ -0,0 +1,26 @@
+package com.github.kristofa.brave;
+
+/**
+ * Optional byte metrics of a {@link FlushingSpanCollector}. Implement this along with {@linkplain
+ * SpanCollectorMetricsHandler} to be notified of these events, e.g. to watch how close the pending
+ * queue is to its limit.
+ *
+ * @see EmptySpanCollectorMetricsHandler
+ */
+public interface SpanCollectorByteMetrics {
+
+    /**
+     * Called along with {@link SpanCollectorMetricsHandler#incrementDroppedSpans(int)} when spans are
+     * dropped because the pending queue was full, either by count or by bytes.
+     *
+     * @param quantity the estimated encoded size of the spans dropped, in bytes.
+     */
+    void incrementDroppedBytes(int quantity);
+
+    /**
+     * Called each time pending spans are flushed, before they are sent.
+     *
+     * @param quantity the estimated encoded size of the spans pending, in bytes.
+     */
+    void updateQueuedBytes(long quantity);
+}
@@ -49,6 +49,11 @@ public final class SpanId {
    */
   @Deprecated
   public SpanId(long traceId, long parentId, long spanId, long flags) {
+    this(0L, traceId, parentId, spanId, flags);
+  }
+
+  SpanId(long traceIdHigh, long traceId, long parentId, long spanId, long flags) {
+    this.traceIdHigh = traceIdHigh;
     this.traceId = (parentId == traceId) ? parentId : traceId;
     this.parentId = (parentId == spanId) ? traceId : parentId;
     this.spanId = spanId;
@@ -110,7 +115,15 @@ public final class SpanId {
   }
 
   /**
-   * Unique 8-byte identifier for a trace, set on all spans within it.
+   * When non-zero, the trace id is 128-bit and this holds its upper 64 bits.
+   *
+   * <p>This isn't included in {@link #bytes()}, which only has room for 64-bit trace ids.
+   */
+  public final long traceIdHigh;
+
+  /**
+   * Unique 8-byte identifier for a trace, set on all spans within it. When {@link #traceIdHigh} is
+   * set, this holds the lower 64 bits of the trace id.
    */
   public final long traceId;
 
@@ -175,16 +188,18 @@ public final class SpanId {
     return new Builder(this);
   }
 
-  /** Returns {@code $traceId.$spanId<:$parentId} */
+  /** Returns {@code $traceId.$spanId<:$parentId}, where the trace id is 32 characters if 128-bit */
   @Override
   public String toString() {
-    char[] result = new char[(3 * 16) + 3]; // 3 ids and the constant delimiters
-    writeHexLong(result, 0, traceId);
-    result[16] = '.';
-    writeHexLong(result, 17, spanId);
-    result[33] = '<';
-    result[34] = ':';
-    writeHexLong(result, 35, parentId);
+    int pos = traceIdHigh != 0 ? 16 : 0;
+    char[] result = new char[pos + (3 * 16) + 3]; // 3 ids and the constant delimiters
+    if (pos != 0) writeHexLong(result, 0, traceIdHigh);
+    writeHexLong(result, pos, traceId);
+    result[pos + 16] = '.';
+    writeHexLong(result, pos + 17, spanId);
+    result[pos + 33] = '<';
+    result[pos + 34] = ':';
+    writeHexLong(result, pos + 35, parentId);
     return new String(result);
   }
 
@@ -195,7 +210,8 @@ public final class SpanId {
     }
     if (o instanceof SpanId) {
       SpanId that = (SpanId) o;
-      return (this.traceId == that.traceId)
+      return (this.traceIdHigh == that.traceIdHigh)
+          && (this.traceId == that.traceId)
           && (this.parentId == that.parentId)
           && (this.spanId == that.spanId);
     }
@@ -206,6 +222,8 @@ public final class SpanId {
   public int hashCode() {
     int h = 1;
     h *= 1000003;
+    h ^= (traceIdHigh >>> 32) ^ traceIdHigh;
+    h *= 1000003;
     h ^= (traceId >>> 32) ^ traceId;
     h *= 1000003;
     h ^= (parentId >>> 32) ^ parentId;
@@ -216,9 +234,14 @@ public final class SpanId {
 
   /** Preferred way to create spans, as it properly deals with the parent id */
   public Span toSpan() {
-    Span result = new Span();
+    return toSpan(new Span());
+  }
+
+  /** Like {@link #toSpan()}, except populates an empty span, such as one from a {@link SpanPool}. */
+  Span toSpan(Span result) {
     result.setId(spanId);
     result.setTrace_id(traceId);
+    result.setTrace_id_high(traceIdHigh);
     result.setParent_id(nullableParentId());
     result.setName(""); // avoid NPE on equals
     if (debug()) result.setDebug(debug());
@@ -226,6 +249,7 @@ public final class SpanId {
   }
 
   public static final class Builder {
+    long traceIdHigh;
     Long traceId;
     Long parentId;
     Long spanId;
@@ -235,12 +259,19 @@ public final class SpanId {
     }
 
     Builder(SpanId source) {
+      this.traceIdHigh = source.traceIdHigh;
       this.traceId = source.traceId;
       this.parentId = source.nullableParentId();
       this.spanId = source.spanId;
       this.flags = source.flags;
     }
 
+    /** @see SpanId#traceIdHigh */
+    public Builder traceIdHigh(long traceIdHigh) {
+      this.traceIdHigh = traceIdHigh;
+      return this;
+    }
+
     /** @see SpanId#traceId */
     public Builder traceId(long traceId) {
       this.traceId = traceId;
@@ -302,7 +333,7 @@ public final class SpanId {
     public SpanId build() {
       long traceId = this.traceId != null ? this.traceId : checkNotNull(spanId, "spanId");
       long parentId = this.parentId != null ? this.parentId : traceId;
-      return new SpanId(traceId, parentId, checkNotNull(spanId, "spanId"), flags);
+      return new SpanId(traceIdHigh, traceId, parentId, checkNotNull(spanId, "spanId"), flags);
     }
   }
 
@@ -0,0 +1,287 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.internal.Nullable;
+import com.twitter.zipkin.gen.Annotation;
+import com.twitter.zipkin.gen.BinaryAnnotation;
+import com.twitter.zipkin.gen.Endpoint;
+import com.twitter.zipkin.gen.Span;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static zipkin.internal.Util.checkArgument;
+
+/**
+ * Recycles spans once they are reported, so that tracing a request doesn't leave a span and its
+ * annotation storage behind for the garbage collector.
+ *
+ * <p>Pooling is opt-in, via {@link Brave.Builder#spanPool(SpanPool)}. Spans are returned to their
+ * pool by {@link #release(Span)}, which {@link FlushingSpanCollector} calls once it has reported
+ * or dropped a span. {@link EmptySpanCollector} and {@link LoggingSpanCollector} do too. Spans
+ * passed to other collectors aren't recycled, and are garbage collected as usual.
+ *
+ * <p>Spans handed to other threads by {@link BraveExecutors}, {@link BraveExecutorService}, {@link
+ * ScopedServerClientAndLocalSpanState.Context#wrap(Runnable)} or {@link
+ * InheritableServerClientAndLocalSpanState}, or read from a {@link ServerSpanThreadBinder}, {@link
+ * ClientSpanThreadBinder} or {@link LocalSpanThreadBinder}, are never recycled, as a task may
+ * outlive the request. Once such a span is released, changes to it are ignored.
+ *
+ * <p>Otherwise, only enable pooling when nothing uses a span after it is finished. For example,
+ * don't use a collector that holds onto spans after {@link FlushingSpanCollector#reportSpans}
+ * returns. Otherwise, the span may already be reused by another request. {@link #debug(int)}
+ * helps find such problems.
+ */
+// abstract for factory-method support on Java language level 6
+public abstract class SpanPool {
+
+  /** Allocates a new span each time, and ignores released spans. This is the default. */
+  public static final SpanPool NONE = new SpanPool() {
+    @Override Span acquire() {
+      return new Span();
+    }
+
+    @Override public String toString() {
+      return "SpanPool.NONE";
+    }
+  };
+
+  /**
+   * Returns a pool which holds at most {@code maxSpans} released spans. When the pool is full,
+   * further released spans are left for the garbage collector.
+   *
+   * @param maxSpans maximum count of spans held for reuse, typically the peak count of concurrently
+   * traced requests.
+   */
+  public static SpanPool create(int maxSpans) {
+    checkArgument(maxSpans > 0, "maxSpans should be positive: was %s", maxSpans);
+    return new BoundedSpanPool(maxSpans);
+  }
+
+  /**
+   * Like {@link #create(int)}, except it detects misuse, logging at WARNING level:
+   *
+   * <ul>
+   *   <li>A leak, when a span is garbage collected without being released. The log includes the
+   *   stack trace where the span was acquired.</li>
+   *   <li>A span released more than once, which would otherwise be ignored.</li>
+   * </ul>
+   *
+   * <p>This records a stack trace per span, so is only intended for tests and debugging.
+   */
+  public static SpanPool debug(int maxSpans) {
+    checkArgument(maxSpans > 0, "maxSpans should be positive: was %s", maxSpans);
+    return new LeakDetectingSpanPool(maxSpans);
+  }
+
+  /**
+   * Returns the span to the pool it was acquired from, if any. Only call this once nothing will
+   * read or modify the span, as it may be reused immediately.
+   */
+  public static void release(@Nullable Span span) {
+    if (!(span instanceof PooledSpan)) return;
+    PooledSpan pooled = (PooledSpan) span;
+    BoundedSpanPool pool = pooled.pool;
+    if (pool == null) return; // deserialized
+    if (PooledSpan.RELEASED.compareAndSet(pooled, 0, 1)) {
+      pooled.enclosingLocalSpan = null; // even if pinned, don't retain or point into other traces
+      pool.recycle(pooled);
+    } else {
+      pool.releasedTwice(pooled);
+    }
+  }
+
+  /**
+   * Keeps the span from being recycled, as another thread may use it after it is released. Call
+   * this before handing a span to another thread.
+   */
+  static void pin(@Nullable Span span) {
+    if (!(span instanceof PooledSpan)) return;
+    PooledSpan pooled = (PooledSpan) span;
+    if (!pooled.pinned) pooled.pinned = true;
+  }
+
+  /** Returns true if the span was released, and not yet acquired again. */
+  static boolean isReleased(Span span) {
+    return span instanceof PooledSpan && ((PooledSpan) span).released != 0;
+  }
+
+  /** Returns an empty span, which may have been used before. */
+  abstract Span acquire();
+
+  SpanPool() {
+  }
+
+  /**
+   * A span that knows its pool, so that it can be released by collectors. Changes made after it is
+   * released are ignored, as it is no longer part of its trace.
+   *
+   * <p>The check isn't atomic with release, so a change racing release may still land. That's only
+   * harmless when the span isn't reused, which is why spans used by other threads are pinned.
+   */
+  static final class PooledSpan extends Span {
+    static final long serialVersionUID = 1L;
+    static final AtomicIntegerFieldUpdater<PooledSpan> RELEASED =
+        AtomicIntegerFieldUpdater.newUpdater(PooledSpan.class, "released");
+
+    final transient BoundedSpanPool pool;
+    /** 1 when in the pool, 0 when acquired. */
+    transient volatile int released;
+    /** True once passed to another thread, which may use it after it is released. */
+    transient volatile boolean pinned;
+    /** Only set in debug mode, to detect when this is garbage collected while acquired. */
+    transient LeakDetectingSpanPool.Tracked tracked;
+
+    PooledSpan(BoundedSpanPool pool) {
+      this.pool = pool;
+    }
+
+    @Override public Span setTrace_id(long trace_id) {
+      return released != 0 ? this : super.setTrace_id(trace_id);
+    }
+
+    @Override public Span setTrace_id_high(long trace_id_high) {
+      return released != 0 ? this : super.setTrace_id_high(trace_id_high);
+    }
+
+    @Override public Span setName(String name) {
+      return released != 0 ? this : super.setName(name);
+    }
+
+    @Override public Span setId(long id) {
+      return released != 0 ? this : super.setId(id);
+    }
+
+    @Override public Span setParent_id(Long parent_id) {
+      return released != 0 ? this : super.setParent_id(parent_id);
+    }
+
+    @Override public Span addAnnotation(long timestamp, String value, @Nullable Endpoint host) {
+      return released != 0 ? this : super.addAnnotation(timestamp, value, host);
+    }
+
+    @Override public Span setAnnotations(List<Annotation> annotations) {
+      return released != 0 ? this : super.setAnnotations(annotations);
+    }
+
+    @Override public Span addToBinary_annotations(BinaryAnnotation elem) {
+      return released != 0 ? this : super.addToBinary_annotations(elem);
+    }
+
+    @Override public Span addBinaryAnnotation(String key, String value, @Nullable Endpoint host) {
+      return released != 0 ? this : super.addBinaryAnnotation(key, value, host);
+    }
+
+    @Override public Span setBinaryAnnotations(List<BinaryAnnotation> binary_annotations) {
+      return released != 0 ? this : super.setBinaryAnnotations(binary_annotations);
+    }
+
+    @Override public Span setDebug(Boolean debug) {
+      return released != 0 ? this : super.setDebug(debug);
+    }
+
+    @Override public Span setTimestamp(Long timestamp) {
+      return released != 0 ? this : super.setTimestamp(timestamp);
+    }
+
+    @Override public Span setDuration(Long duration) {
+      return released != 0 ? this : super.setDuration(duration);
+    }
+  }
+
+  static class BoundedSpanPool extends SpanPool {
+    final RingBufferSpanQueue free;
+
+    BoundedSpanPool(int maxSpans) {
+      this.free = new RingBufferSpanQueue(maxSpans, Long.MAX_VALUE);
+    }
+
+    @Override Span acquire() {
+      PooledSpan result = (PooledSpan) free.poll();
+      if (result == null) return new PooledSpan(this);
+      result.released = 0;
+      return result;
+    }
+
+    void recycle(PooledSpan span) {
+      if (span.pinned) return; // another thread may still use it, so leave it for the collector
+      free.claimAndPublish(span.clear(), 0); // if the pool is full, the span is garbage
+    }
+
+    void releasedTwice(PooledSpan span) {
+    }
+
+    /** Returns the count of spans available for reuse. */
+    int size() {
+      return free.size();
+    }
+
+    @Override public String toString() {
+      return "SpanPool(" + free.capacity + ")";
+    }
+  }
+
+  static final class LeakDetectingSpanPool extends BoundedSpanPool {
+    static final Logger LOGGER = Logger.getLogger(SpanPool.class.getName());
+
+    final ReferenceQueue<PooledSpan> collected = new ReferenceQueue<PooledSpan>();
+    /** Strongly references trackers, so that they are enqueued when their span is collected. */
+    final Set<Tracked> acquired = Collections.newSetFromMap(new ConcurrentHashMap<Tracked, Boolean>());
+    final AtomicInteger leaks = new AtomicInteger();
+
+    LeakDetectingSpanPool(int maxSpans) {
+      super(maxSpans);
+    }
+
+    @Override Span acquire() {
+      reportLeaks();
+      PooledSpan result = (PooledSpan) super.acquire();
+      result.tracked = new Tracked(result, collected);
+      acquired.add(result.tracked);
+      return result;
+    }
+
+    @Override void recycle(PooledSpan span) {
+      Tracked tracked = span.tracked;
+      if (tracked != null) {
+        span.tracked = null;
+        acquired.remove(tracked);
+        tracked.clear(); // released, so not a leak
+      }
+      super.recycle(span);
+    }
+
+    @Override void releasedTwice(PooledSpan span) {
+      LOGGER.log(Level.WARNING, "Span released more than once: " + span,
+          new IllegalStateException("released again here"));
+    }
+
+    /** Logs spans that were garbage collected without being released. */
+    void reportLeaks() {
+      for (Tracked leaked; (leaked = (Tracked) collected.poll()) != null; ) {
+        if (!acquired.remove(leaked)) continue;
+        leaks.incrementAndGet();
+        LOGGER.log(Level.WARNING, "Span was garbage collected without being released. Pass it to "
+            + "a collector which releases spans, or call SpanPool.release()", leaked.acquiredAt);
+      }
+    }
+
+    static final class Tracked extends WeakReference<PooledSpan> {
+      final Throwable acquiredAt = new Throwable("span acquired here");
+
+      Tracked(PooledSpan span, ReferenceQueue<PooledSpan> queue) {
+        super(span, queue);
+      }
+    }
+
+    @Override public String toString() {
+      return "SpanPool.debug(" + free.capacity + ")";
+    }
+  }
+}
@@ -0,0 +1,154 @@
+package com.github.kristofa.brave;
+
+import com.twitter.zipkin.gen.Span;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static zipkin.internal.Util.checkArgument;
+
+/**
+ * Holds spans between {@link FlushingSpanCollector#collect(Span)} and the next flush.
+ *
+ * <p>Many request threads offer spans concurrently, while the flushing thread drains them. The
+ * queue is bounded by span count, and optionally by the estimated encoded size of the spans it
+ * holds: when either bound would be exceeded, {@link #offer(Span, int)} returns false and the span
+ * is dropped.
+ */
+// abstract for factory-method support on Java language level 6
+public abstract class SpanQueue {
+
+  /** Number of spans held pending report unless otherwise configured. */
+  public static final int DEFAULT_MAX_SPANS = 1000;
+
+  /**
+   * Estimated encoded bytes held pending report unless otherwise configured: 1% of the maximum
+   * heap size.
+   */
+  public static final long DEFAULT_MAX_BYTES = Runtime.getRuntime().maxMemory() / 100;
+
+  /**
+   * Returns a lock-free queue backed by a preallocated ring buffer. This is the default, as it
+   * neither allocates per span nor serializes producers on a lock.
+   *
+   * @param maxSpans maximum count of spans pending report
+   */
+  public static SpanQueue create(int maxSpans) {
+    return create(maxSpans, Long.MAX_VALUE);
+  }
+
+  /**
+   * Like {@link #create(int)}, except also bounded by estimated encoded size.
+   *
+   * @param maxSpans maximum count of spans pending report
+   * @param maxBytes maximum estimated encoded size of spans pending report
+   */
+  public static SpanQueue create(int maxSpans, long maxBytes) {
+    checkArgument(maxSpans > 0, "maxSpans should be positive: was %s", maxSpans);
+    checkArgument(maxBytes > 0, "maxBytes should be positive: was %s", maxBytes);
+    return new RingBufferSpanQueue(maxSpans, maxBytes);
+  }
+
+  /**
+   * Returns a queue backed by a {@link LinkedBlockingQueue}, which was the only strategy prior to
+   * the introduction of this type.
+   *
+   * @param maxSpans maximum count of spans pending report
+   */
+  public static SpanQueue blocking(int maxSpans) {
+    return blocking(maxSpans, Long.MAX_VALUE);
+  }
+
+  /**
+   * Like {@link #blocking(int)}, except also bounded by estimated encoded size.
+   *
+   * @param maxSpans maximum count of spans pending report
+   * @param maxBytes maximum estimated encoded size of spans pending report
+   */
+  public static SpanQueue blocking(int maxSpans, long maxBytes) {
+    checkArgument(maxSpans > 0, "maxSpans should be positive: was %s", maxSpans);
+    checkArgument(maxBytes > 0, "maxBytes should be positive: was %s", maxBytes);
+    return new BlockingSpanQueue(maxSpans, maxBytes);
+  }
+
+  /**
+   * Adds the span unless the queue is full, either by count or by bytes.
+   *
+   * @param sizeInBytes estimated encoded size of the span, accounted until it is drained
+   * @return false if the span was not added
+   */
+  public abstract boolean offer(Span span, int sizeInBytes);
+
+  /**
+   * Removes all available spans, adding them to the sink in insertion order.
+   *
+   * @return the count of spans added to the sink
+   */
+  public abstract int drainTo(List<Span> sink);
+
+  /** Returns an estimate of the count of spans pending report. */
+  public abstract int size();
+
+  /** Returns the sum of estimated encoded sizes of spans pending report. */
+  public abstract long sizeInBytes();
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  static final class BlockingSpanQueue extends SpanQueue {
+    final int maxSpans;
+    final long maxBytes;
+    final BlockingQueue<SizedSpan> delegate;
+    final AtomicLong sizeInBytes = new AtomicLong();
+
+    BlockingSpanQueue(int maxSpans, long maxBytes) {
+      this.maxSpans = maxSpans;
+      this.maxBytes = maxBytes;
+      this.delegate = new LinkedBlockingQueue<SizedSpan>(maxSpans);
+    }
+
+    @Override public boolean offer(Span span, int sizeInBytes) {
+      if (this.sizeInBytes.addAndGet(sizeInBytes) > maxBytes
+          || !delegate.offer(new SizedSpan(span, sizeInBytes))) {
+        this.sizeInBytes.addAndGet(-sizeInBytes);
+        return false;
+      }
+      return true;
+    }
+
+    @Override public int drainTo(List<Span> sink) {
+      int drained = 0;
+      long drainedBytes = 0;
+      for (SizedSpan next; (next = delegate.poll()) != null; drained++) {
+        sink.add(next.span);
+        drainedBytes += next.sizeInBytes;
+      }
+      sizeInBytes.addAndGet(-drainedBytes);
+      return drained;
+    }
+
+    @Override public int size() {
+      return delegate.size();
+    }
+
+    @Override public long sizeInBytes() {
+      return sizeInBytes.get();
+    }
+
+    @Override public String toString() {
+      return "BlockingSpanQueue(" + maxSpans + ", " + maxBytes + ")";
+    }
+  }
+
+  static final class SizedSpan {
+    final Span span;
+    final int sizeInBytes;
+
+    SizedSpan(Span span, int sizeInBytes) {
+      this.span = span;
+      this.sizeInBytes = sizeInBytes;
+    }
+  }
+}
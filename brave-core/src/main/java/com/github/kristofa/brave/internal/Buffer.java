@@ -0,0 +1,236 @@
+package com.github.kristofa.brave.internal;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Growable byte array which span encoders write into directly. Span collectors reuse one per flush
+ * thread via {@link #pooled()}, so that a flush doesn't allocate a buffer of the batch size each
+ * time.
+ *
+ * <p>This isn't thread-safe.
+ */
+public final class Buffer {
+  static final int INITIAL_CAPACITY = 8 * 1024;
+  /** Larger arrays aren't kept by {@link #pooled()}, so an unusually large flush isn't retained. */
+  static final int MAX_POOLED_CAPACITY = 1024 * 1024;
+
+  static final ThreadLocal<Buffer> POOL = new ThreadLocal<Buffer>() {
+    @Override protected Buffer initialValue() {
+      return new Buffer(INITIAL_CAPACITY);
+    }
+  };
+
+  /**
+   * Returns an empty buffer owned by the current thread. The buffer keeps the capacity it grew to,
+   * up to {@link #MAX_POOLED_CAPACITY}, so must not be used after the current thread calls this
+   * method again.
+   *
+   * <p>This isn't reentrant, so only use it on flush threads, in code that doesn't call back into
+   * user code. Elsewhere, allocate a buffer.
+   */
+  public static Buffer pooled() {
+    Buffer buffer = POOL.get();
+    if (buffer.array.length > MAX_POOLED_CAPACITY) buffer.array = new byte[INITIAL_CAPACITY];
+    return buffer.reset();
+  }
+
+  byte[] array;
+  int size;
+
+  public Buffer(int initialCapacity) {
+    this.array = new byte[initialCapacity];
+  }
+
+  /** Discards written bytes, retaining capacity. */
+  public Buffer reset() {
+    size = 0;
+    return this;
+  }
+
+  /** Count of bytes written since the last reset. */
+  public int size() {
+    return size;
+  }
+
+  /** Returns a copy of the written bytes. */
+  public byte[] toByteArray() {
+    return Arrays.copyOf(array, size);
+  }
+
+  /**
+   * Returns a view of the written bytes, without copying. The result is invalid after the buffer is
+   * reset.
+   */
+  public ByteBuffer asByteBuffer() {
+    return ByteBuffer.wrap(array, 0, size);
+  }
+
+  public Buffer writeByte(int b) {
+    require(1);
+    array[size++] = (byte) b;
+    return this;
+  }
+
+  public Buffer write(byte[] bytes) {
+    require(bytes.length);
+    System.arraycopy(bytes, 0, array, size, bytes.length);
+    size += bytes.length;
+    return this;
+  }
+
+  public Buffer writeShort(int v) {
+    require(2);
+    array[size++] = (byte) ((v >>> 8) & 0xff);
+    array[size++] = (byte) (v & 0xff);
+    return this;
+  }
+
+  public Buffer writeInt(int v) {
+    require(4);
+    array[size++] = (byte) ((v >>> 24) & 0xff);
+    array[size++] = (byte) ((v >>> 16) & 0xff);
+    array[size++] = (byte) ((v >>> 8) & 0xff);
+    array[size++] = (byte) (v & 0xff);
+    return this;
+  }
+
+  public Buffer writeLong(long v) {
+    require(8);
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      array[size++] = (byte) ((v >>> shift) & 0xff);
+    }
+    return this;
+  }
+
+  /** Writes a string known to only contain ASCII characters, such as a JSON field name. */
+  public Buffer writeAscii(String v) {
+    int length = v.length();
+    require(length);
+    for (int i = 0; i < length; i++) {
+      array[size++] = (byte) v.charAt(i);
+    }
+    return this;
+  }
+
+  /** Writes the string encoded as UTF-8, without allocating an intermediate array. */
+  public Buffer writeUtf8(String v) {
+    for (int i = 0, length = v.length(); i < length; i++) {
+      char c = v.charAt(i);
+      if (c < 0x80) {
+        writeByte(c);
+      } else {
+        i = writeUtf8(v, i, c);
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Writes a non-ASCII character at the given index, returning the index of its last char, which
+   * is different when the character is a surrogate pair.
+   */
+  int writeUtf8(String v, int i, char c) {
+    if (c < 0x800) {
+      require(2);
+      array[size++] = (byte) (0xc0 | (c >> 6));
+      array[size++] = (byte) (0x80 | (c & 0x3f));
+    } else if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+      require(3);
+      array[size++] = (byte) (0xe0 | (c >> 12));
+      array[size++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+      array[size++] = (byte) (0x80 | (c & 0x3f));
+    } else {
+      char low = i + 1 < v.length() ? v.charAt(i + 1) : 0;
+      if (c > Character.MAX_HIGH_SURROGATE || !Character.isLowSurrogate(low)) {
+        writeByte('?'); // malformed surrogate, as String.getBytes(UTF_8) would write
+        return i;
+      }
+      int codePoint = Character.toCodePoint(c, low);
+      require(4);
+      array[size++] = (byte) (0xf0 | (codePoint >> 18));
+      array[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+      array[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+      array[size++] = (byte) (0x80 | (codePoint & 0x3f));
+      return i + 1;
+    }
+    return i;
+  }
+
+  /** Writes 16 lower-hex characters, zero-padded, as used for zipkin ids. */
+  public Buffer writeLowerHex(long v) {
+    require(16);
+    for (int shift = 60; shift >= 0; shift -= 4) {
+      array[size++] = HEX_DIGITS[(int) ((v >>> shift) & 0xf)];
+    }
+    return this;
+  }
+
+  /** Writes the decimal representation of the value, without allocating a string. */
+  public Buffer writeDecimal(long v) {
+    if (v == Long.MIN_VALUE) return writeAscii("-9223372036854775808");
+    if (v == 0) return writeByte('0');
+    boolean negative = v < 0;
+    if (negative) v = -v;
+    int width = 0;
+    for (long i = v; i != 0; i /= 10) width++;
+    if (negative) width++;
+    require(width);
+    int pos = size + width;
+    for (; v != 0; v /= 10) {
+      array[--pos] = (byte) ('0' + (v % 10));
+    }
+    if (negative) array[--pos] = '-';
+    size += width;
+    return this;
+  }
+
+  /** Writes the bytes as padded base64, as used for binary annotations of type BYTES in JSON. */
+  public Buffer writeBase64(byte[] bytes) {
+    int length = bytes.length;
+    require((length + 2) / 3 * 4);
+    int i = 0;
+    for (int end = length - length % 3; i < end; i += 3) {
+      int chunk = (bytes[i] & 0xff) << 16 | (bytes[i + 1] & 0xff) << 8 | (bytes[i + 2] & 0xff);
+      array[size++] = BASE64[(chunk >> 18) & 0x3f];
+      array[size++] = BASE64[(chunk >> 12) & 0x3f];
+      array[size++] = BASE64[(chunk >> 6) & 0x3f];
+      array[size++] = BASE64[chunk & 0x3f];
+    }
+    if (length - i == 1) {
+      int chunk = (bytes[i] & 0xff) << 16;
+      array[size++] = BASE64[(chunk >> 18) & 0x3f];
+      array[size++] = BASE64[(chunk >> 12) & 0x3f];
+      array[size++] = '=';
+      array[size++] = '=';
+    } else if (length - i == 2) {
+      int chunk = (bytes[i] & 0xff) << 16 | (bytes[i + 1] & 0xff) << 8;
+      array[size++] = BASE64[(chunk >> 18) & 0x3f];
+      array[size++] = BASE64[(chunk >> 12) & 0x3f];
+      array[size++] = BASE64[(chunk >> 6) & 0x3f];
+      array[size++] = '=';
+    }
+    return this;
+  }
+
+  /** Overwrites 4 bytes at the given position, such as a length prefix not known in advance. */
+  void setInt(int pos, int v) {
+    array[pos] = (byte) ((v >>> 24) & 0xff);
+    array[pos + 1] = (byte) ((v >>> 16) & 0xff);
+    array[pos + 2] = (byte) ((v >>> 8) & 0xff);
+    array[pos + 3] = (byte) (v & 0xff);
+  }
+
+  void require(int count) {
+    int needed = size + count;
+    if (needed <= array.length) return;
+    int newCapacity = Math.max(needed, array.length * 2);
+    array = Arrays.copyOf(array, newCapacity);
+  }
+
+  static final byte[] HEX_DIGITS =
+      {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+
+  static final byte[] BASE64 =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(Util.UTF_8);
+}
@@ -0,0 +1,52 @@
+package com.github.kristofa.brave.internal;
+
+import com.twitter.zipkin.gen.Endpoint;
+import com.twitter.zipkin.gen.Span;
+
+/**
+ * Estimates the encoded size of a span without encoding it, so that pending spans can be bounded by
+ * memory as well as by count.
+ *
+ * <p>Estimates are based on the JSON encoding, which is larger than thrift. Strings are counted in
+ * chars, which is exact for ASCII.
+ */
+public final class SpanSizer {
+
+  // {"traceId":"","id":"","name":"","parentId":"","timestamp":,"duration":,"annotations":[],"binaryAnnotations":[],"debug":false}
+  static final int SPAN_OVERHEAD = 120 + 3 * 16 /* hex ids */ + 2 * 16 /* timestamp and duration */;
+  // {"timestamp":,"value":"","endpoint":}
+  static final int ANNOTATION_OVERHEAD = 40 + 16 /* timestamp */;
+  // {"key":"","value":"","endpoint":}
+  static final int BINARY_ANNOTATION_OVERHEAD = 35;
+  // {"serviceName":"","ipv4":"255.255.255.255","port":65535}
+  static final int ENDPOINT_OVERHEAD = 55;
+
+  /** Returns the estimated size in bytes of the span, when encoded. */
+  public static int estimate(Span span) {
+    int result = SPAN_OVERHEAD + length(span.getName());
+    for (int i = 0, length = span.annotationCount(); i < length; i++) {
+      result += ANNOTATION_OVERHEAD + length(span.annotationValue(i))
+          + estimate(span.annotationHost(i));
+    }
+    for (int i = 0, length = span.binaryAnnotationCount(); i < length; i++) {
+      String stringValue = span.binaryAnnotationStringValue(i);
+      int valueLength = stringValue != null
+          ? stringValue.length() : span.binaryAnnotationValue(i).length;
+      result += BINARY_ANNOTATION_OVERHEAD + length(span.binaryAnnotationKey(i)) + valueLength
+          + estimate(span.binaryAnnotationHost(i));
+    }
+    return result;
+  }
+
+  static int estimate(@Nullable Endpoint endpoint) {
+    if (endpoint == null) return 0;
+    return ENDPOINT_OVERHEAD + endpoint.service_name.length();
+  }
+
+  static int length(@Nullable String string) {
+    return string != null ? string.length() : 0;
+  }
+
+  private SpanSizer() { // no instances
+  }
+}
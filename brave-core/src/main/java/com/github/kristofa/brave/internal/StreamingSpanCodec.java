@@ -0,0 +1,406 @@
+package com.github.kristofa.brave.internal;
+
+import com.twitter.zipkin.gen.AnnotationType;
+import com.twitter.zipkin.gen.Endpoint;
+import com.twitter.zipkin.gen.Span;
+import com.twitter.zipkin.gen.SpanCodec;
+import java.util.List;
+
+/**
+ * Encodes brave spans directly into a {@link Buffer}, in the same formats as {@link
+ * DefaultSpanCodec}.
+ *
+ * <p>{@link DefaultSpanCodec} converts each span to a {@link zipkin.Span} and then encodes that
+ * into a new array, which allocates several objects per span on the flushing thread. This skips the
+ * conversion and writes into a buffer reused per thread, so that encoding a batch allocates only
+ * the resulting array.
+ *
+ * <p>Annotations are written in the order they were recorded. Zipkin sorts them on decode, so this
+ * doesn't affect the decoded span.
+ */
+// abstract for factory-method support on Java language level 6
+public abstract class StreamingSpanCodec implements SpanCodec {
+  public static final StreamingSpanCodec JSON = new Json();
+  public static final StreamingSpanCodec THRIFT = new Thrift();
+
+  /** Appends the encoded span to the buffer. */
+  public abstract void writeSpan(Span span, Buffer buffer);
+
+  /** Appends the encoded list of spans to the buffer. */
+  public void writeSpans(List<Span> spans, Buffer buffer) {
+    writeSpans(spans, 0, Integer.MAX_VALUE, buffer);
+  }
+
+  /**
+   * Appends an encoded list of as many spans as fit in {@code maxBytes}, starting at {@code
+   * fromIndex}. This allows a batch to be split into messages of bounded size.
+   *
+   * <p>At least one span is written, even if it alone exceeds {@code maxBytes}.
+   *
+   * @return the index of the first span not written, or {@code spans.size()} if all were.
+   */
+  public int writeSpans(List<Span> spans, int fromIndex, int maxBytes, Buffer buffer) {
+    int listStart = buffer.size();
+    writeListBegin(buffer);
+    int i = fromIndex, length = spans.size();
+    for (; i < length; i++) {
+      int spanStart = buffer.size();
+      if (i > fromIndex) writeListSeparator(buffer);
+      writeSpan(spans.get(i), buffer);
+      if (i > fromIndex && buffer.size() - listStart + listEndSize() > maxBytes) {
+        buffer.size = spanStart; // discard the span that doesn't fit
+        break;
+      }
+    }
+    writeListEnd(buffer, listStart, i - fromIndex);
+    return i;
+  }
+
+  /** Size of {@link #writeListEnd}, so that it can be accounted for in advance. */
+  abstract int listEndSize();
+
+  abstract void writeListBegin(Buffer b);
+
+  abstract void writeListSeparator(Buffer b);
+
+  abstract void writeListEnd(Buffer b, int listStart, int count);
+
+  abstract SpanCodec delegate();
+
+  @Override
+  public byte[] writeSpan(Span span) {
+    // not pooled, as this is called on request threads, for example by Span.toString()
+    Buffer buffer = new Buffer(SpanSizer.estimate(span));
+    writeSpan(span, buffer);
+    return buffer.toByteArray();
+  }
+
+  @Override
+  public byte[] writeSpans(List<Span> spans) {
+    Buffer buffer = new Buffer(Buffer.INITIAL_CAPACITY);
+    writeSpans(spans, buffer);
+    return buffer.toByteArray();
+  }
+
+  @Override
+  public Span readSpan(byte[] bytes) {
+    return delegate().readSpan(bytes);
+  }
+
+  static final class Json extends StreamingSpanCodec {
+
+    @Override SpanCodec delegate() {
+      return DefaultSpanCodec.JSON;
+    }
+
+    @Override void writeListBegin(Buffer b) {
+      b.writeByte('[');
+    }
+
+    @Override void writeListSeparator(Buffer b) {
+      b.writeByte(',');
+    }
+
+    @Override void writeListEnd(Buffer b, int listStart, int count) {
+      b.writeByte(']');
+    }
+
+    @Override int listEndSize() {
+      return 1;
+    }
+
+    @Override
+    public void writeSpan(Span span, Buffer b) {
+      // the high bits of a 128-bit trace id aren't written, as zipkin's JSON decoder rejects them
+      b.writeAscii("{\"traceId\":\"");
+      b.writeLowerHex(span.getTrace_id());
+      b.writeAscii("\",\"name\":");
+      writeString(span.getName(), b);
+      b.writeAscii(",\"id\":\"").writeLowerHex(span.getId()).writeByte('"');
+      Long parentId = span.getParent_id();
+      if (parentId != null) {
+        b.writeAscii(",\"parentId\":\"").writeLowerHex(parentId).writeByte('"');
+      }
+      Long timestamp = span.getTimestamp();
+      if (timestamp != null) b.writeAscii(",\"timestamp\":").writeDecimal(timestamp);
+      Long duration = span.getDuration();
+      if (duration != null) b.writeAscii(",\"duration\":").writeDecimal(duration);
+
+      b.writeAscii(",\"annotations\":[");
+      for (int i = 0, length = span.annotationCount(); i < length; i++) {
+        if (i > 0) b.writeByte(',');
+        b.writeByte('{');
+        Endpoint host = span.annotationHost(i);
+        if (host != null) {
+          b.writeAscii("\"endpoint\":");
+          writeEndpoint(host, b);
+          b.writeByte(',');
+        }
+        b.writeAscii("\"timestamp\":").writeDecimal(span.annotationTimestamp(i));
+        b.writeAscii(",\"value\":");
+        writeString(span.annotationValue(i), b);
+        b.writeByte('}');
+      }
+
+      b.writeAscii("],\"binaryAnnotations\":[");
+      for (int i = 0, length = span.binaryAnnotationCount(); i < length; i++) {
+        if (i > 0) b.writeByte(',');
+        writeBinaryAnnotation(span, i, b);
+      }
+      b.writeByte(']');
+
+      Boolean debug = span.isDebug();
+      if (debug != null) b.writeAscii(debug ? ",\"debug\":true" : ",\"debug\":false");
+      b.writeByte('}');
+    }
+
+    static void writeBinaryAnnotation(Span span, int i, Buffer b) {
+      b.writeAscii("{\"key\":");
+      writeString(span.binaryAnnotationKey(i), b);
+      b.writeAscii(",\"value\":");
+      AnnotationType type = span.binaryAnnotationType(i);
+      String stringValue = span.binaryAnnotationStringValue(i);
+      byte[] value = stringValue != null ? null : span.binaryAnnotationValue(i);
+      switch (type) {
+        case BOOL:
+          b.writeAscii(value[0] == 1 ? "true" : "false");
+          break;
+        case STRING:
+          if (stringValue != null) { // not yet encoded
+            writeString(stringValue, b);
+            break;
+          }
+          b.writeByte('"');
+          writeEscapedUtf8(value, b);
+          b.writeByte('"');
+          break;
+        case BYTES:
+          b.writeByte('"').writeBase64(value).writeByte('"');
+          break;
+        case I16:
+          b.writeDecimal((short) ((value[0] & 0xff) << 8 | (value[1] & 0xff)));
+          break;
+        case I32:
+          b.writeDecimal(readInt(value, 0));
+          break;
+        case I64:
+          b.writeDecimal(readLong(value));
+          break;
+        case DOUBLE:
+          // Double.toString allocates, but this type is rare and formatting doubles is subtle.
+          b.writeAscii(Double.toString(Double.longBitsToDouble(readLong(value))));
+          break;
+        default:
+          throw new AssertionError("unknown type " + type);
+      }
+      if (type != AnnotationType.STRING && type != AnnotationType.BOOL) {
+        b.writeAscii(",\"type\":\"").writeAscii(type.name()).writeByte('"');
+      }
+      Endpoint host = span.binaryAnnotationHost(i);
+      if (host != null) {
+        b.writeAscii(",\"endpoint\":");
+        writeEndpoint(host, b);
+      }
+      b.writeByte('}');
+    }
+
+    static void writeEndpoint(Endpoint host, Buffer b) {
+      b.writeAscii("{\"serviceName\":");
+      writeString(host.service_name, b);
+      b.writeAscii(",\"ipv4\":\"");
+      int ipv4 = host.ipv4;
+      b.writeDecimal(ipv4 >> 24 & 0xff).writeByte('.');
+      b.writeDecimal(ipv4 >> 16 & 0xff).writeByte('.');
+      b.writeDecimal(ipv4 >> 8 & 0xff).writeByte('.');
+      b.writeDecimal(ipv4 & 0xff).writeByte('"');
+      if (host.port != null && host.port != 0) {
+        b.writeAscii(",\"port\":").writeDecimal(host.port & 0xffff);
+      }
+      b.writeByte('}');
+    }
+
+    /** Writes a quoted JSON string, escaping the same characters as zipkin's JSON codec. */
+    static void writeString(@Nullable String v, Buffer b) {
+      b.writeByte('"');
+      if (v != null) {
+        for (int i = 0, length = v.length(); i < length; i++) {
+          char c = v.charAt(i);
+          if (c < 0x80) {
+            writeAsciiChar(c, b);
+          } else if (c == '\u2028' || c == '\u2029') {
+            b.writeAscii(c == '\u2028' ? "\\u2028" : "\\u2029");
+          } else {
+            i = b.writeUtf8(v, i, c);
+          }
+        }
+      }
+      b.writeByte('"');
+    }
+
+    /** Like {@link #writeString}, except the input is already UTF-8 encoded. */
+    static void writeEscapedUtf8(byte[] v, Buffer b) {
+      for (int i = 0, length = v.length; i < length; i++) {
+        byte c = v[i];
+        if (c >= 0) {
+          writeAsciiChar((char) c, b);
+        } else if (c == (byte) 0xe2 && i + 2 < length && v[i + 1] == (byte) 0x80
+            && (v[i + 2] == (byte) 0xa8 || v[i + 2] == (byte) 0xa9)) {
+          b.writeAscii(v[i + 2] == (byte) 0xa8 ? "\\u2028" : "\\u2029");
+          i += 2;
+        } else {
+          b.writeByte(c);
+        }
+      }
+    }
+
+    static void writeAsciiChar(char c, Buffer b) {
+      switch (c) {
+        case '"':
+          b.writeAscii("\\\"");
+          return;
+        case '\\':
+          b.writeAscii("\\\\");
+          return;
+        case '\b':
+          b.writeAscii("\\b");
+          return;
+        case '\t':
+          b.writeAscii("\\t");
+          return;
+        case '\n':
+          b.writeAscii("\\n");
+          return;
+        case '\f':
+          b.writeAscii("\\f");
+          return;
+        case '\r':
+          b.writeAscii("\\r");
+          return;
+        default:
+          if (c < 0x20) {
+            b.writeAscii("\\u00").writeByte(Buffer.HEX_DIGITS[c >> 4]).writeByte(
+                Buffer.HEX_DIGITS[c & 0xf]);
+          } else {
+            b.writeByte(c);
+          }
+      }
+    }
+
+    static int readInt(byte[] v, int offset) {
+      return (v[offset] & 0xff) << 24 | (v[offset + 1] & 0xff) << 16
+          | (v[offset + 2] & 0xff) << 8 | (v[offset + 3] & 0xff);
+    }
+
+    static long readLong(byte[] v) {
+      return (readInt(v, 0) & 0xffffffffL) << 32 | (readInt(v, 4) & 0xffffffffL);
+    }
+  }
+
+  /** Writes TBinaryProtocol, field by field, as generated thrift code would. */
+  static final class Thrift extends StreamingSpanCodec {
+    static final byte TYPE_STOP = 0;
+    static final byte TYPE_BOOL = 2;
+    static final byte TYPE_I16 = 6;
+    static final byte TYPE_I32 = 8;
+    static final byte TYPE_I64 = 10;
+    static final byte TYPE_STRING = 11;
+    static final byte TYPE_STRUCT = 12;
+    static final byte TYPE_LIST = 15;
+
+    @Override SpanCodec delegate() {
+      return DefaultSpanCodec.THRIFT;
+    }
+
+    @Override void writeListBegin(Buffer b) {
+      b.writeByte(TYPE_STRUCT).writeInt(0); // count is back-filled
+    }
+
+    @Override void writeListSeparator(Buffer b) {
+    }
+
+    @Override void writeListEnd(Buffer b, int listStart, int count) {
+      b.setInt(listStart + 1, count);
+    }
+
+    @Override int listEndSize() {
+      return 0;
+    }
+
+    @Override
+    public void writeSpan(Span span, Buffer b) {
+      writeFieldBegin(TYPE_I64, 1, b).writeLong(span.getTrace_id());
+      writeFieldBegin(TYPE_STRING, 3, b);
+      writeString(span.getName(), b);
+      writeFieldBegin(TYPE_I64, 4, b).writeLong(span.getId());
+      Long parentId = span.getParent_id();
+      if (parentId != null) writeFieldBegin(TYPE_I64, 5, b).writeLong(parentId);
+
+      int length = span.annotationCount();
+      writeFieldBegin(TYPE_LIST, 6, b).writeByte(TYPE_STRUCT).writeInt(length);
+      for (int i = 0; i < length; i++) {
+        writeFieldBegin(TYPE_I64, 1, b).writeLong(span.annotationTimestamp(i));
+        writeFieldBegin(TYPE_STRING, 2, b);
+        writeString(span.annotationValue(i), b);
+        Endpoint host = span.annotationHost(i);
+        if (host != null) {
+          writeFieldBegin(TYPE_STRUCT, 3, b);
+          writeEndpoint(host, b);
+        }
+        b.writeByte(TYPE_STOP);
+      }
+
+      length = span.binaryAnnotationCount();
+      writeFieldBegin(TYPE_LIST, 8, b).writeByte(TYPE_STRUCT).writeInt(length);
+      for (int i = 0; i < length; i++) {
+        writeFieldBegin(TYPE_STRING, 1, b);
+        writeString(span.binaryAnnotationKey(i), b);
+        writeFieldBegin(TYPE_STRING, 2, b);
+        String stringValue = span.binaryAnnotationStringValue(i);
+        if (stringValue != null) { // not yet encoded
+          writeString(stringValue, b);
+        } else {
+          byte[] value = span.binaryAnnotationValue(i);
+          b.writeInt(value.length).write(value);
+        }
+        writeFieldBegin(TYPE_I32, 3, b).writeInt(span.binaryAnnotationType(i).getValue());
+        Endpoint host = span.binaryAnnotationHost(i);
+        if (host != null) {
+          writeFieldBegin(TYPE_STRUCT, 4, b);
+          writeEndpoint(host, b);
+        }
+        b.writeByte(TYPE_STOP);
+      }
+
+      Boolean debug = span.isDebug();
+      if (debug != null) writeFieldBegin(TYPE_BOOL, 9, b).writeByte(debug ? 1 : 0);
+      Long timestamp = span.getTimestamp();
+      if (timestamp != null) writeFieldBegin(TYPE_I64, 10, b).writeLong(timestamp);
+      Long duration = span.getDuration();
+      if (duration != null) writeFieldBegin(TYPE_I64, 11, b).writeLong(duration);
+      long traceIdHigh = span.getTrace_id_high();
+      if (traceIdHigh != 0) writeFieldBegin(TYPE_I64, 12, b).writeLong(traceIdHigh);
+      b.writeByte(TYPE_STOP);
+    }
+
+    static void writeEndpoint(Endpoint host, Buffer b) {
+      writeFieldBegin(TYPE_I32, 1, b).writeInt(host.ipv4);
+      writeFieldBegin(TYPE_I16, 2, b).writeShort(host.port != null ? host.port : 0);
+      writeFieldBegin(TYPE_STRING, 3, b);
+      writeString(host.service_name, b);
+      b.writeByte(TYPE_STOP);
+    }
+
+    static Buffer writeFieldBegin(byte type, int id, Buffer b) {
+      return b.writeByte(type).writeShort(id);
+    }
+
+    /** Writes a length-prefixed UTF-8 string, back-filling the length once it is known. */
+    static void writeString(@Nullable String v, Buffer b) {
+      int lengthPos = b.size();
+      b.writeInt(0);
+      if (v == null) return;
+      b.writeUtf8(v);
+      b.setInt(lengthPos, b.size() - lengthPos - 4);
+    }
+  }
+}
@@ -1,11 +1,17 @@
 package com.twitter.zipkin.gen;
 
+import com.github.kristofa.brave.internal.Nullable;
 import com.github.kristofa.brave.internal.Util;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
+import static com.github.kristofa.brave.internal.Util.checkNotBlank;
+import static com.github.kristofa.brave.internal.Util.checkNotNull;
 import static com.github.kristofa.brave.internal.Util.equal;
 
 /**
@@ -14,25 +20,53 @@ import static com.github.kristofa.brave.internal.Util.equal;
  * The root span is where trace_id = id and parent_id = Nil. The root span is
  * usually the longest interval in the trace, starting with a SERVER_RECV
  * annotation and ending with a SERVER_SEND.
+ *
+ * <p>Annotations are recorded into parallel arrays, rather than lists of model objects, so that
+ * tracing a request doesn't allocate per annotation. {@link Annotation} and {@link
+ * BinaryAnnotation} objects are only built when {@link #getAnnotations()} or {@link
+ * #getBinary_annotations()} are called. Encoders read the arrays directly.
+ *
+ * <p>The arrays are held in append-only blocks, so that threads annotating the same span don't
+ * lock or block each other. A writer reserves a slot by atomically incrementing the block's count,
+ * fills it, then publishes it with a volatile write of its last field. Readers only see slots up
+ * to the first that isn't published yet. When a block is full, writers link another, twice as
+ * large. Blocks are never copied or reused, so a published slot never changes.
  */
 public class Span implements Serializable {
 
   static final long serialVersionUID = 1L;
+  /** Enough for the two core annotations of a client or server span, and a couple more. */
+  static final int INITIAL_CAPACITY = 4;
+  static final AtomicReferenceFieldUpdater<Span, AnnotationBlock> ANNOTATION_BLOCKS =
+      AtomicReferenceFieldUpdater.newUpdater(Span.class, AnnotationBlock.class, "annotationBlocks");
+  static final AtomicReferenceFieldUpdater<Span, BinaryAnnotationBlock> BINARY_ANNOTATION_BLOCKS =
+      AtomicReferenceFieldUpdater.newUpdater(Span.class, BinaryAnnotationBlock.class,
+          "binaryAnnotationBlocks");
 
   /**
    * Internal field, used for deriving duration with {@link System#nanoTime()}.
    */
   public volatile Long startTick;
 
+  /**
+   * Internal field, used by the local tracer to restore the local span that was current when this
+   * one started. Following this field from the current local span walks the stack of open spans.
+   * Cleared when this span finishes or is released to a pool.
+   */
+  public transient Span enclosingLocalSpan;
+
+  private long trace_id_high; // optional, 0 when the trace id is 64-bit
   private long trace_id; // required
   private String name; // required
   private long id; // required
   private Long parent_id; // optional
-  private List<Annotation> annotations = Collections.emptyList(); // required
-  private List<BinaryAnnotation> binary_annotations = Collections.emptyList(); // required
+  // annotations, in append-only blocks. required
+  private volatile AnnotationBlock annotationBlocks;
+  // binary annotations, in append-only blocks. required
+  private volatile BinaryAnnotationBlock binaryAnnotationBlocks;
   private Boolean debug; // optional
-  private Long timestamp; // optional
-  private Long duration; // optional
+  private volatile Long timestamp; // optional
+  private volatile Long duration; // optional
 
   public long getTrace_id() {
     return this.trace_id;
@@ -43,6 +77,19 @@ public class Span implements Serializable {
     return this;
   }
 
+  /**
+   * When non-zero, the trace id is 128-bit and this holds its upper 64 bits. {@link #getTrace_id()}
+   * holds the lower 64 bits.
+   */
+  public long getTrace_id_high() {
+    return this.trace_id_high;
+  }
+
+  public Span setTrace_id_high(long trace_id_high) {
+    this.trace_id_high = trace_id_high;
+    return this;
+  }
+
   /**
    * Span name in lowercase, rpc method for example
    * 
@@ -84,36 +131,207 @@ public class Span implements Serializable {
   }
 
   public Span addToAnnotations(Annotation elem) {
-    if (this.annotations == Collections.EMPTY_LIST) {
-      this.annotations = new ArrayList<Annotation>();
+    return addAnnotation(elem.timestamp, elem.value, elem.host);
+  }
+
+  /**
+   * Like {@link #addToAnnotations(Annotation)}, except doesn't allocate an {@link Annotation}. This
+   * is safe to call from multiple threads at the same time, and doesn't block.
+   */
+  public Span addAnnotation(long timestamp, String value, @Nullable Endpoint host) {
+    checkNotNull(value, "Null value");
+    AnnotationBlock block = annotationBlocks;
+    if (block == null) {
+      ANNOTATION_BLOCKS.compareAndSet(this, null, new AnnotationBlock(INITIAL_CAPACITY));
+      block = annotationBlocks;
     }
-    this.annotations.add(elem);
-    return this;
+    while (true) {
+      if (block.reserved < block.capacity) { // skip full blocks without contending on them
+        int i = AnnotationBlock.RESERVED.getAndIncrement(block);
+        if (i < block.capacity) {
+          block.timestamps[i] = timestamp;
+          block.hosts[i] = host;
+          block.values.set(i, value); // publishes the slot
+          return this;
+        }
+      }
+      block = block.next();
+    }
+  }
+
+  /** Internal: count of annotations, for encoders. */
+  public int annotationCount() {
+    int count = 0;
+    for (AnnotationBlock b = annotationBlocks; b != null; b = b.next) {
+      int published = b.published();
+      count += published;
+      if (published < b.capacity) break;
+    }
+    return count;
+  }
+
+  /** Internal: {@link Annotation#timestamp} of the annotation at the index, for encoders. */
+  public long annotationTimestamp(int i) {
+    AnnotationBlock b = annotationBlocks;
+    for (; i >= b.capacity; b = b.next) i -= b.capacity;
+    return b.timestamps[i];
   }
 
+  /** Internal: {@link Annotation#value} of the annotation at the index, for encoders. */
+  public String annotationValue(int i) {
+    AnnotationBlock b = annotationBlocks;
+    for (; i >= b.capacity; b = b.next) i -= b.capacity;
+    return b.values.get(i);
+  }
+
+  /** Internal: {@link Annotation#host} of the annotation at the index, for encoders. */
+  @Nullable
+  public Endpoint annotationHost(int i) {
+    AnnotationBlock b = annotationBlocks;
+    for (; i >= b.capacity; b = b.next) i -= b.capacity;
+    return b.hosts[i];
+  }
+
+  /** Returns an unmodifiable list of annotations, built on first call after a change. */
   public List<Annotation> getAnnotations() {
-    return this.annotations;
+    AnnotationBlock head = annotationBlocks;
+    if (head == null) return Collections.emptyList();
+    int count = annotationCount();
+    List<Annotation> snapshot = head.snapshot;
+    if (snapshot != null && snapshot.size() == count) return snapshot;
+    List<Annotation> result = new ArrayList<Annotation>(count);
+    for (int i = 0; i < count; i++) {
+      result.add(Annotation.create(annotationTimestamp(i), annotationValue(i), annotationHost(i)));
+    }
+    return head.snapshot = Collections.unmodifiableList(result);
   }
 
+  /** Replaces all annotations. Unlike adding an annotation, this isn't safe for concurrent use. */
   public Span setAnnotations(List<Annotation> annotations) {
-    this.annotations = annotations;
+    annotationBlocks = null;
+    for (Annotation a : annotations) {
+      addToAnnotations(a);
+    }
     return this;
   }
 
   public Span addToBinary_annotations(BinaryAnnotation elem) {
-    if (this.binary_annotations == Collections.EMPTY_LIST) {
-      this.binary_annotations = new ArrayList<BinaryAnnotation>();
+    return addBinaryAnnotation(elem.key, elem.value, elem.type, elem.host);
+  }
+
+  /**
+   * Like {@link #addToBinary_annotations(BinaryAnnotation)} with a {@link AnnotationType#STRING}
+   * value, except doesn't allocate a {@link BinaryAnnotation}, and defers encoding the value. This
+   * is safe to call from multiple threads at the same time, and doesn't block.
+   */
+  public Span addBinaryAnnotation(String key, String value, @Nullable Endpoint host) {
+    checkNotBlank(key, "Null or blank key");
+    checkNotNull(value, "Null value");
+    return addBinaryAnnotation(key, (Object) value, AnnotationType.STRING, host);
+  }
+
+  private Span addBinaryAnnotation(String key, Object value, AnnotationType type,
+      @Nullable Endpoint host) {
+    BinaryAnnotationBlock block = binaryAnnotationBlocks;
+    if (block == null) {
+      BINARY_ANNOTATION_BLOCKS.compareAndSet(this, null,
+          new BinaryAnnotationBlock(INITIAL_CAPACITY));
+      block = binaryAnnotationBlocks;
     }
-    this.binary_annotations.add(elem);
-    return this;
+    while (true) {
+      if (block.reserved < block.capacity) { // skip full blocks without contending on them
+        int i = BinaryAnnotationBlock.RESERVED.getAndIncrement(block);
+        if (i < block.capacity) {
+          block.values[i] = value;
+          block.types[i] = type;
+          block.hosts[i] = host;
+          block.keys.set(i, key); // publishes the slot
+          return this;
+        }
+      }
+      block = block.next();
+    }
+  }
+
+  /** Internal: count of binary annotations, for encoders. */
+  public int binaryAnnotationCount() {
+    int count = 0;
+    for (BinaryAnnotationBlock b = binaryAnnotationBlocks; b != null; b = b.next) {
+      int published = b.published();
+      count += published;
+      if (published < b.capacity) break;
+    }
+    return count;
+  }
+
+  /** Internal: {@link BinaryAnnotation#key} of the binary annotation at the index, for encoders. */
+  public String binaryAnnotationKey(int i) {
+    BinaryAnnotationBlock b = binaryAnnotationBlocks;
+    for (; i >= b.capacity; b = b.next) i -= b.capacity;
+    return b.keys.get(i);
+  }
+
+  /** Internal: {@link BinaryAnnotation#type} of the binary annotation at the index, for encoders. */
+  public AnnotationType binaryAnnotationType(int i) {
+    BinaryAnnotationBlock b = binaryAnnotationBlocks;
+    for (; i >= b.capacity; b = b.next) i -= b.capacity;
+    return b.types[i];
   }
 
+  /**
+   * Internal: the value of the {@link AnnotationType#STRING} binary annotation at the index, if it
+   * hasn't been encoded yet. Otherwise null, in which case use {@link #binaryAnnotationValue(int)}.
+   */
+  @Nullable
+  public String binaryAnnotationStringValue(int i) {
+    Object value = binaryAnnotationRawValue(i);
+    return value instanceof String ? (String) value : null;
+  }
+
+  /** Internal: {@link BinaryAnnotation#value} of the binary annotation at the index, for encoders. */
+  public byte[] binaryAnnotationValue(int i) {
+    Object value = binaryAnnotationRawValue(i);
+    return value instanceof String ? ((String) value).getBytes(Util.UTF_8) : (byte[]) value;
+  }
+
+  private Object binaryAnnotationRawValue(int i) {
+    BinaryAnnotationBlock b = binaryAnnotationBlocks;
+    for (; i >= b.capacity; b = b.next) i -= b.capacity;
+    return b.values[i];
+  }
+
+  /** Internal: {@link BinaryAnnotation#host} of the binary annotation at the index, for encoders. */
+  @Nullable
+  public Endpoint binaryAnnotationHost(int i) {
+    BinaryAnnotationBlock b = binaryAnnotationBlocks;
+    for (; i >= b.capacity; b = b.next) i -= b.capacity;
+    return b.hosts[i];
+  }
+
+  /** Returns an unmodifiable list of binary annotations, built on first call after a change. */
   public List<BinaryAnnotation> getBinary_annotations() {
-    return this.binary_annotations;
+    BinaryAnnotationBlock head = binaryAnnotationBlocks;
+    if (head == null) return Collections.emptyList();
+    int count = binaryAnnotationCount();
+    List<BinaryAnnotation> snapshot = head.snapshot;
+    if (snapshot != null && snapshot.size() == count) return snapshot;
+    List<BinaryAnnotation> result = new ArrayList<BinaryAnnotation>(count);
+    for (int i = 0; i < count; i++) {
+      result.add(BinaryAnnotation.create(binaryAnnotationKey(i), binaryAnnotationValue(i),
+          binaryAnnotationType(i), binaryAnnotationHost(i)));
+    }
+    return head.snapshot = Collections.unmodifiableList(result);
   }
 
+  /**
+   * Replaces all binary annotations. Unlike adding a binary annotation, this isn't safe for
+   * concurrent use.
+   */
   public Span setBinaryAnnotations(List<BinaryAnnotation> binary_annotations) {
-    this.binary_annotations = binary_annotations;
+    binaryAnnotationBlocks = null;
+    for (BinaryAnnotation b : binary_annotations) {
+      addToBinary_annotations(b);
+    }
     return this;
   }
 
@@ -206,6 +424,27 @@ public class Span implements Serializable {
     return this;
   }
 
+  /**
+   * Internal: resets all fields, so that this span can be reused. The storage for annotations is
+   * kept, so a reused span doesn't allocate until it has more annotations than before. Only call
+   * this once no other thread can reference the span.
+   */
+  public Span clear() {
+    startTick = null;
+    enclosingLocalSpan = null;
+    trace_id_high = 0L;
+    trace_id = 0L;
+    name = null;
+    id = 0L;
+    parent_id = null;
+    for (AnnotationBlock b = annotationBlocks; b != null; b = b.next) b.clear();
+    for (BinaryAnnotationBlock b = binaryAnnotationBlocks; b != null; b = b.next) b.clear();
+    debug = null;
+    timestamp = null;
+    duration = null;
+    return this;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (o == this) {
@@ -213,14 +452,15 @@ public class Span implements Serializable {
     }
     if (o instanceof Span) {
       Span that = (Span) o;
-      return (this.trace_id == that.trace_id)
+      return (this.trace_id_high == that.trace_id_high)
+          && (this.trace_id == that.trace_id)
           && (this.name.equals(that.name))
           && (this.id == that.id)
           && equal(this.parent_id, that.parent_id)
           && equal(this.timestamp, that.timestamp)
           && equal(this.duration, that.duration)
-          && equal(this.annotations, that.annotations)
-          && equal(this.binary_annotations, that.binary_annotations)
+          && this.getAnnotations().equals(that.getAnnotations())
+          && this.getBinary_annotations().equals(that.getBinary_annotations())
           && equal(this.debug, that.debug);
     }
     return false;
@@ -230,6 +470,8 @@ public class Span implements Serializable {
   public int hashCode() {
     int h = 1;
     h *= 1000003;
+    h ^= (trace_id_high >>> 32) ^ trace_id_high;
+    h *= 1000003;
     h ^= (trace_id >>> 32) ^ trace_id;
     h *= 1000003;
     h ^= name.hashCode();
@@ -242,9 +484,9 @@ public class Span implements Serializable {
     h *= 1000003;
     h ^= (duration == null) ? 0 : duration.hashCode();
     h *= 1000003;
-    h ^= (annotations == null) ? 0 : annotations.hashCode();
+    h ^= getAnnotations().hashCode();
     h *= 1000003;
-    h ^= (binary_annotations == null) ? 0 : binary_annotations.hashCode();
+    h ^= getBinary_annotations().hashCode();
     h *= 1000003;
     h ^= (debug == null) ? 0 : debug.hashCode();
     return h;
@@ -255,7 +497,11 @@ public class Span implements Serializable {
     return new String(SpanCodec.JSON.writeSpan(this), Util.UTF_8);
   }
 
-  /** Changes this to a zipkin-native span object. */
+  /**
+   * Changes this to a zipkin-native span object.
+   *
+   * <p>Zipkin's span model only has 64-bit trace ids, so {@link #getTrace_id_high()} is dropped.
+   */
   public zipkin.Span toZipkin() {
     zipkin.Span.Builder result = zipkin.Span.builder();
     result.traceId(getTrace_id());
@@ -284,5 +530,109 @@ public class Span implements Serializable {
     if (host.port == null) return zipkin.Endpoint.create(host.service_name, host.ipv4);
     return zipkin.Endpoint.create(host.service_name, host.ipv4, host.port);
   }
-}
 
+  /** Slots for annotations. A slot is published by setting its value. */
+  static final class AnnotationBlock implements Serializable {
+    static final long serialVersionUID = 1L;
+    static final AtomicIntegerFieldUpdater<AnnotationBlock> RESERVED =
+        AtomicIntegerFieldUpdater.newUpdater(AnnotationBlock.class, "reserved");
+    static final AtomicReferenceFieldUpdater<AnnotationBlock, AnnotationBlock> NEXT =
+        AtomicReferenceFieldUpdater.newUpdater(AnnotationBlock.class, AnnotationBlock.class, "next");
+
+    final int capacity;
+    final long[] timestamps;
+    final Endpoint[] hosts;
+    final AtomicReferenceArray<String> values;
+    /** Count of slots handed out to writers, which can exceed capacity when full. */
+    volatile int reserved;
+    volatile AnnotationBlock next;
+    /** Cached result of {@link Span#getAnnotations()}, only used on the first block. */
+    transient volatile List<Annotation> snapshot;
+
+    AnnotationBlock(int capacity) {
+      this.capacity = capacity;
+      this.timestamps = new long[capacity];
+      this.hosts = new Endpoint[capacity];
+      this.values = new AtomicReferenceArray<String>(capacity);
+    }
+
+    /** Returns the count of leading slots whose writers have finished. */
+    int published() {
+      int limit = Math.min(reserved, capacity), i = 0;
+      while (i < limit && values.get(i) != null) i++;
+      return i;
+    }
+
+    void clear() {
+      for (int i = 0, length = Math.min(reserved, capacity); i < length; i++) {
+        hosts[i] = null;
+        values.lazySet(i, null);
+      }
+      reserved = 0;
+      snapshot = null;
+    }
+
+    /** Returns the next block, linking one if this is the last. */
+    AnnotationBlock next() {
+      AnnotationBlock result = next;
+      if (result != null) return result;
+      NEXT.compareAndSet(this, null, new AnnotationBlock(capacity * 2));
+      return next;
+    }
+  }
+
+  /** Slots for binary annotations. A slot is published by setting its key. */
+  static final class BinaryAnnotationBlock implements Serializable {
+    static final long serialVersionUID = 1L;
+    static final AtomicIntegerFieldUpdater<BinaryAnnotationBlock> RESERVED =
+        AtomicIntegerFieldUpdater.newUpdater(BinaryAnnotationBlock.class, "reserved");
+    static final AtomicReferenceFieldUpdater<BinaryAnnotationBlock, BinaryAnnotationBlock> NEXT =
+        AtomicReferenceFieldUpdater.newUpdater(BinaryAnnotationBlock.class,
+            BinaryAnnotationBlock.class, "next");
+
+    final int capacity;
+    final Object[] values; // String when deferring UTF-8 encoding, otherwise byte[]
+    final AnnotationType[] types;
+    final Endpoint[] hosts;
+    final AtomicReferenceArray<String> keys;
+    /** Count of slots handed out to writers, which can exceed capacity when full. */
+    volatile int reserved;
+    volatile BinaryAnnotationBlock next;
+    /** Cached result of {@link Span#getBinary_annotations()}, only used on the first block. */
+    transient volatile List<BinaryAnnotation> snapshot;
+
+    BinaryAnnotationBlock(int capacity) {
+      this.capacity = capacity;
+      this.values = new Object[capacity];
+      this.types = new AnnotationType[capacity];
+      this.hosts = new Endpoint[capacity];
+      this.keys = new AtomicReferenceArray<String>(capacity);
+    }
+
+    /** Returns the count of leading slots whose writers have finished. */
+    int published() {
+      int limit = Math.min(reserved, capacity), i = 0;
+      while (i < limit && keys.get(i) != null) i++;
+      return i;
+    }
+
+    void clear() {
+      for (int i = 0, length = Math.min(reserved, capacity); i < length; i++) {
+        values[i] = null;
+        types[i] = null;
+        hosts[i] = null;
+        keys.lazySet(i, null);
+      }
+      reserved = 0;
+      snapshot = null;
+    }
+
+    /** Returns the next block, linking one if this is the last. */
+    BinaryAnnotationBlock next() {
+      BinaryAnnotationBlock result = next;
+      if (result != null) return result;
+      NEXT.compareAndSet(this, null, new BinaryAnnotationBlock(capacity * 2));
+      return next;
+    }
+  }
+}
@@ -1,11 +1,11 @@
 package com.twitter.zipkin.gen;
 
-import com.github.kristofa.brave.internal.DefaultSpanCodec;
+import com.github.kristofa.brave.internal.StreamingSpanCodec;
 import java.util.List;
 
 public interface SpanCodec {
-  SpanCodec THRIFT = DefaultSpanCodec.THRIFT;
-  SpanCodec JSON = DefaultSpanCodec.JSON;
+  SpanCodec THRIFT = StreamingSpanCodec.THRIFT;
+  SpanCodec JSON = StreamingSpanCodec.JSON;
 
   byte[] writeSpan(Span span);
 
@@ -0,0 +1,53 @@
+package com.github.kristofa.brave;
+
+import com.twitter.zipkin.gen.Span;
+import com.twitter.zipkin.gen.SpanCodec;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AbstractSpanCollectorTest {
+  Span span = new Span().setTrace_id(1L).setId(1L).setName("get");
+  List<byte[]> sent = new ArrayList<byte[]>();
+
+  @Test
+  public void sendSpans_byteBuffer() {
+    AbstractSpanCollector collector = new AbstractSpanCollector(SpanCodec.JSON,
+        new EmptySpanCollectorMetricsHandler(), 0) {
+      @Override protected void sendSpans(ByteBuffer encoded) {
+        byte[] copy = new byte[encoded.remaining()];
+        encoded.get(copy);
+        sent.add(copy);
+      }
+
+      @Override protected void sendSpans(byte[] encoded) {
+        throw new AssertionError("should have used sendSpans(ByteBuffer)");
+      }
+    };
+
+    collector.collect(span);
+    collector.flush();
+
+    assertThat(sent).containsExactly(SpanCodec.JSON.writeSpans(asList(span)));
+  }
+
+  /** Transports written before the ByteBuffer overload should work unmodified. */
+  @Test
+  public void sendSpans_byteArray() {
+    AbstractSpanCollector collector = new AbstractSpanCollector(SpanCodec.THRIFT,
+        new EmptySpanCollectorMetricsHandler(), 0) {
+      @Override protected void sendSpans(byte[] encoded) {
+        sent.add(encoded);
+      }
+    };
+
+    collector.collect(span);
+    collector.flush();
+
+    assertThat(sent).containsExactly(SpanCodec.THRIFT.writeSpans(asList(span)));
+  }
+}
@@ -0,0 +1,161 @@
+package com.github.kristofa.brave;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.data.Percentage.withPercentage;
+
+public class AdaptiveSamplerTest {
+  static final long NOW = System.nanoTime();
+  static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  AdaptiveSampler sampler = new AdaptiveSampler(10000, 100, 1000, NOW);
+  AtomicInteger delegateDrops = new AtomicInteger();
+  AtomicInteger delegateDroppedBytes = new AtomicInteger();
+  AdaptiveSampler.PressureMetricsHandler metrics = (AdaptiveSampler.PressureMetricsHandler)
+      sampler.metricsHandler(new EmptySpanCollectorMetricsHandler() {
+        @Override public void incrementDroppedSpans(int quantity) {
+          delegateDrops.addAndGet(quantity);
+        }
+
+        @Override public void incrementDroppedBytes(int quantity) {
+          delegateDroppedBytes.addAndGet(quantity);
+        }
+      });
+
+  @Test
+  public void startsAtMaxRate() {
+    assertThat(sampler.rate()).isEqualTo(1.0f);
+    assertThat(sampler.isSampledAt(new Random().nextLong(), NOW)).isTrue();
+  }
+
+  @Test
+  public void halvesRateWhenQueueFull() {
+    metrics.incrementDroppedBytes(100);
+    sampler.isSampledAt(1L, NOW + SECOND);
+
+    assertThat(sampler.rate()).isEqualTo(0.5f);
+  }
+
+  @Test
+  public void transportFailuresArentPressure() {
+    metrics.incrementDroppedSpans(10); // without incrementDroppedBytes
+    sampler.isSampledAt(1L, NOW + SECOND);
+
+    assertThat(sampler.rate()).isEqualTo(1.0f);
+  }
+
+  @Test
+  public void halvesRateWhenQueueNearlyFull() {
+    metrics.updateQueuedBytes(999);
+    sampler.isSampledAt(1L, NOW + SECOND);
+    assertThat(sampler.rate()).isEqualTo(1.0f);
+
+    metrics.updateQueuedBytes(1000);
+    sampler.isSampledAt(1L, NOW + 2 * SECOND);
+    assertThat(sampler.rate()).isEqualTo(0.5f);
+  }
+
+  @Test
+  public void adjustsAtMostOncePerSecond() {
+    metrics.incrementDroppedBytes(100);
+    sampler.isSampledAt(1L, NOW + SECOND - 1);
+    assertThat(sampler.rate()).isEqualTo(1.0f);
+
+    sampler.isSampledAt(1L, NOW + SECOND);
+    metrics.incrementDroppedBytes(100);
+    sampler.isSampledAt(1L, NOW + SECOND + 1);
+    assertThat(sampler.rate()).isEqualTo(0.5f);
+  }
+
+  @Test
+  public void neverBelowMinRate() {
+    for (int i = 1; i <= 20; i++) {
+      metrics.incrementDroppedBytes(100);
+      sampler.isSampledAt(1L, NOW + i * SECOND);
+    }
+
+    assertThat(sampler.rate()).isEqualTo(0.01f);
+  }
+
+  @Test
+  public void recoversWhenPressureEases() {
+    for (int i = 1; i <= 20; i++) {
+      metrics.incrementDroppedBytes(100);
+      sampler.isSampledAt(1L, NOW + i * SECOND);
+    }
+
+    sampler.isSampledAt(1L, NOW + 21 * SECOND);
+    assertThat(sampler.rate()).isEqualTo(0.11f);
+
+    for (int i = 22; i <= 40; i++) {
+      sampler.isSampledAt(1L, NOW + i * SECOND);
+    }
+    assertThat(sampler.rate()).isEqualTo(1.0f);
+  }
+
+  @Test
+  public void retainsPerCurrentRate() {
+    metrics.incrementDroppedBytes(100);
+    sampler.isSampledAt(1L, NOW + SECOND);
+
+    Random random = new Random();
+    int passed = 0;
+    for (int i = 0; i < SamplerTest.INPUT_SIZE; i++) {
+      if (sampler.isSampledAt(random.nextLong(), NOW + SECOND)) passed++;
+    }
+    assertThat(passed).isCloseTo(SamplerTest.INPUT_SIZE / 2, withPercentage(10));
+  }
+
+  @Test
+  public void metricsForwardedToDelegate() {
+    metrics.incrementDroppedSpans(3);
+
+    assertThat(delegateDrops.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void byteMetricsForwardedToDelegate() {
+    metrics.incrementDroppedBytes(100);
+
+    assertThat(delegateDroppedBytes.get()).isEqualTo(100);
+  }
+
+  @Test
+  public void delegateNeedntTrackBytes() {
+    AdaptiveSampler.PressureMetricsHandler metrics = (AdaptiveSampler.PressureMetricsHandler)
+        sampler.metricsHandler(new SpanCollectorMetricsHandler() {
+          @Override public void incrementAcceptedSpans(int quantity) {
+          }
+
+          @Override public void incrementDroppedSpans(int quantity) {
+          }
+        });
+    metrics.incrementDroppedBytes(100);
+    sampler.isSampledAt(1L, NOW + SECOND);
+
+    assertThat(sampler.rate()).isEqualTo(0.5f);
+  }
+
+  @Test
+  public void minRateCantExceedMaxRate() {
+    thrown.expect(IllegalArgumentException.class);
+
+    AdaptiveSampler.create(0.1f, 0.2f, 0);
+  }
+
+  @Test
+  public void maxRateCantBeOverOne() {
+    thrown.expect(IllegalArgumentException.class);
+
+    AdaptiveSampler.create(1.1f, 0.1f, 0);
+  }
+}
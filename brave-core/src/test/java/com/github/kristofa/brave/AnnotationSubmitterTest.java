@@ -1,8 +1,6 @@
 package com.github.kristofa.brave;
 
 import com.github.kristofa.brave.SpanAndEndpoint.StaticSpanAndEndpoint;
-import com.twitter.zipkin.gen.Annotation;
-import com.twitter.zipkin.gen.BinaryAnnotation;
 import com.twitter.zipkin.gen.Endpoint;
 import com.twitter.zipkin.gen.Span;
 
@@ -13,8 +11,6 @@ import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
-import java.io.UnsupportedEncodingException;
-
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -47,13 +43,7 @@ public class AnnotationSubmitterTest {
     public void testSubmitAnnotationSpanEndpointString() {
         annotationSubmitter.submitAnnotation(ANNOTATION_NAME);
 
-        Annotation expectedAnnotation = Annotation.create(
-            CURRENT_TIME_MICROSECONDS,
-            ANNOTATION_NAME,
-            endpoint
-        );
-
-        verify(mockSpan).addToAnnotations(expectedAnnotation);
+        verify(mockSpan).addAnnotation(CURRENT_TIME_MICROSECONDS, ANNOTATION_NAME, endpoint);
         verifyNoMoreInteractions(mockSpan);
     }
 
@@ -69,16 +59,10 @@ public class AnnotationSubmitterTest {
     }
 
     @Test
-    public void testSubmitBinaryAnnotationStringValue() throws UnsupportedEncodingException {
+    public void testSubmitBinaryAnnotationStringValue() {
         annotationSubmitter.submitBinaryAnnotation(KEY, STRING_VALUE);
 
-        final BinaryAnnotation expectedAnnotation = BinaryAnnotation.create(
-            KEY,
-            STRING_VALUE,
-            endpoint
-        );
-
-        verify(mockSpan).addToBinary_annotations(expectedAnnotation);
+        verify(mockSpan).addBinaryAnnotation(KEY, STRING_VALUE, endpoint);
         verifyNoMoreInteractions(mockSpan);
     }
 
@@ -86,13 +70,7 @@ public class AnnotationSubmitterTest {
     public void testSubmitBinaryAnnotationIntValue() {
         annotationSubmitter.submitBinaryAnnotation(KEY, INT_VALUE);
 
-        final BinaryAnnotation expectedAnnotation = BinaryAnnotation.create(
-            KEY,
-            String.valueOf(INT_VALUE),
-            endpoint
-        );
-
-        verify(mockSpan).addToBinary_annotations(expectedAnnotation);
+        verify(mockSpan).addBinaryAnnotation(KEY, String.valueOf(INT_VALUE), endpoint);
         verifyNoMoreInteractions(mockSpan);
     }
 
@@ -102,4 +80,72 @@ public class AnnotationSubmitterTest {
             StaticSpanAndEndpoint.create(null, endpoint));
         assertEquals(CURRENT_TIME_MICROSECONDS, anotherAnnotationSubmitter.currentTimeMicroseconds());
     }
+
+    @Test
+    public void annotationsDerivedFromStartTick() {
+        Span span = new Span();
+        FakeClock clock = new FakeClock(CURRENT_TIME_MICROSECONDS, 5000L);
+        AnnotationSubmitter submitter =
+            AnnotationSubmitter.create(StaticSpanAndEndpoint.create(span, endpoint), clock);
+
+        submitter.submitStartAnnotation("sr");
+        clock.currentTimeMicroseconds += 1000L; // the wall clock shouldn't be read again
+        clock.nanoTime += 1500L;
+        submitter.submitAnnotation(ANNOTATION_NAME);
+        clock.nanoTime += 1000L;
+        submitter.submitEndAnnotation("ss", new EmptySpanCollector());
+
+        assertEquals(CURRENT_TIME_MICROSECONDS, span.annotationTimestamp(0));
+        assertEquals(CURRENT_TIME_MICROSECONDS + 1, span.annotationTimestamp(1));
+        assertEquals(CURRENT_TIME_MICROSECONDS + 2, span.annotationTimestamp(2));
+        assertEquals(2L, span.getDuration().longValue());
+    }
+
+    /** Duration of less than one microsecond is confusing to plot and could coerce to null. */
+    @Test
+    public void durationFromStartTick_lessThanMicrosRoundUp() {
+        Span span = new Span();
+        FakeClock clock = new FakeClock(CURRENT_TIME_MICROSECONDS, 5000L);
+        AnnotationSubmitter submitter =
+            AnnotationSubmitter.create(StaticSpanAndEndpoint.create(span, endpoint), clock);
+
+        submitter.submitStartAnnotation("cs");
+        clock.nanoTime += 500L;
+        submitter.submitEndAnnotation("cr", new EmptySpanCollector());
+
+        assertEquals(1L, span.getDuration().longValue());
+    }
+
+    /** When the span's start wasn't recorded by this submitter, there's no tick to derive from. */
+    @Test
+    public void annotationWithoutStartTick_readsClock() {
+        Span span = new Span().setTimestamp(1L);
+        FakeClock clock = new FakeClock(CURRENT_TIME_MICROSECONDS, 5000L);
+        AnnotationSubmitter submitter =
+            AnnotationSubmitter.create(StaticSpanAndEndpoint.create(span, endpoint), clock);
+
+        submitter.submitAnnotation(ANNOTATION_NAME);
+
+        assertEquals(CURRENT_TIME_MICROSECONDS, span.annotationTimestamp(0));
+    }
+
+    static final class FakeClock implements AnnotationSubmitter.Clock {
+        long currentTimeMicroseconds;
+        long nanoTime;
+
+        FakeClock(long currentTimeMicroseconds, long nanoTime) {
+            this.currentTimeMicroseconds = currentTimeMicroseconds;
+            this.nanoTime = nanoTime;
+        }
+
+        @Override
+        public long currentTimeMicroseconds() {
+            return currentTimeMicroseconds;
+        }
+
+        @Override
+        public long nanoTime() {
+            return nanoTime;
+        }
+    }
 }
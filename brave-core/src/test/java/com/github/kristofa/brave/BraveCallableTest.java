@@ -1,13 +1,18 @@
 package com.github.kristofa.brave;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import com.twitter.zipkin.gen.Span;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -38,11 +43,38 @@ public class BraveCallableTest {
 
         final InOrder inOrder = inOrder(mockWrappedCallable, mockThreadBinder, mockServerSpan);
 
-        inOrder.verify(mockThreadBinder).getCurrentServerSpan();
+        inOrder.verify(mockThreadBinder).state();
+        inOrder.verify(mockThreadBinder, times(2)).getCurrentServerSpan();
         inOrder.verify(mockThreadBinder).setCurrentSpan(mockServerSpan);
         inOrder.verify(mockWrappedCallable).call();
+        inOrder.verify(mockThreadBinder).setCurrentSpan(mockServerSpan);
 
         verifyNoMoreInteractions(mockWrappedCallable, mockThreadBinder, mockServerSpan);
     }
 
+    @Test
+    public void testCall_propagatesAllSpansAndRestoresThreadState() throws Exception {
+        final ServerClientAndLocalSpanState state =
+            new ThreadLocalServerClientAndLocalSpanState(192 << 24 | 168 << 16 | 1, 80, "service");
+        final Span clientSpan = new Span().setTrace_id(1L).setId(3L).setName("query");
+        state.setCurrentServerSpan(ServerSpan.create(1L, 2L, null, "get"));
+        state.setCurrentClientSpan(clientSpan);
+        final Callable<Span> currentClientSpan = new Callable<Span>() {
+            @Override
+            public Span call() {
+                return state.getCurrentClientSpan();
+            }
+        };
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertThat(executor.submit(BraveCallable.create(currentClientSpan, new ServerSpanThreadBinder(state))).get())
+                .isSameAs(clientSpan);
+            assertThat(executor.submit(currentClientSpan).get()).isNull();
+        } finally {
+            executor.shutdownNow();
+            state.setCurrentServerSpan(null);
+            state.setCurrentClientSpan(null);
+        }
+    }
+
 }
@@ -43,6 +43,7 @@ public class BraveExecutorServiceTest {
         braveExecutorService.execute(mockRunnable);
         final BraveRunnable expectedRunnable = BraveRunnable.create(mockRunnable, mockThreadBinder);
         verify(mockThreadBinder, times(2)).getCurrentServerSpan();
+        verify(mockThreadBinder, times(2)).state();
         verify(wrappedExecutor).execute(expectedRunnable);
         verifyNoMoreInteractions(wrappedExecutor, mockThreadBinder);
     }
@@ -70,6 +71,7 @@ public class BraveExecutorServiceTest {
         expectedCollection.add(BraveCallable.create(mockCallable2, mockThreadBinder));
 
         verify(mockThreadBinder, times(4)).getCurrentServerSpan();
+        verify(mockThreadBinder, times(4)).state();
         verify(wrappedExecutor).invokeAll(expectedCollection);
         verifyNoMoreInteractions(wrappedExecutor, mockThreadBinder);
 
@@ -88,6 +90,7 @@ public class BraveExecutorServiceTest {
         expectedCollection.add(BraveCallable.create(mockCallable2, mockThreadBinder));
 
         verify(mockThreadBinder, times(4)).getCurrentServerSpan();
+        verify(mockThreadBinder, times(4)).state();
         verify(wrappedExecutor).invokeAll(expectedCollection, TIMEOUT, TIME_UNIT);
         verifyNoMoreInteractions(wrappedExecutor, mockThreadBinder);
     }
@@ -105,6 +108,7 @@ public class BraveExecutorServiceTest {
         expectedCollection.add(BraveCallable.create(mockCallable2, mockThreadBinder));
 
         verify(mockThreadBinder, times(4)).getCurrentServerSpan();
+        verify(mockThreadBinder, times(4)).state();
         verify(wrappedExecutor).invokeAny(expectedCollection);
         verifyNoMoreInteractions(wrappedExecutor, mockThreadBinder);
     }
@@ -123,6 +127,7 @@ public class BraveExecutorServiceTest {
         expectedCollection.add(BraveCallable.create(mockCallable2, mockThreadBinder));
 
         verify(mockThreadBinder, times(4)).getCurrentServerSpan();
+        verify(mockThreadBinder, times(4)).state();
         verify(wrappedExecutor).invokeAny(expectedCollection, TIMEOUT, TIME_UNIT);
         verifyNoMoreInteractions(wrappedExecutor, mockThreadBinder);
     }
@@ -168,6 +173,7 @@ public class BraveExecutorServiceTest {
         when(wrappedExecutor.submit(expectedCallable)).thenReturn(future);
         assertSame(future, braveExecutorService.submit(callable));
         verify(mockThreadBinder, times(2)).getCurrentServerSpan();
+        verify(mockThreadBinder, times(2)).state();
         verify(wrappedExecutor).submit(expectedCallable);
         verifyNoMoreInteractions(wrappedExecutor, mockThreadBinder);
     }
@@ -178,6 +184,7 @@ public class BraveExecutorServiceTest {
         final BraveRunnable expectedRunnable = BraveRunnable.create(runnable, mockThreadBinder);
         braveExecutorService.submit(runnable);
         verify(mockThreadBinder, times(2)).getCurrentServerSpan();
+        verify(mockThreadBinder, times(2)).state();
         verify(wrappedExecutor).submit(expectedRunnable);
         verifyNoMoreInteractions(wrappedExecutor, mockThreadBinder);
 
@@ -193,6 +200,7 @@ public class BraveExecutorServiceTest {
         when(wrappedExecutor.submit(expectedRunnable, returnValue)).thenReturn(future);
         assertSame(future, braveExecutorService.submit(runnable, returnValue));
         verify(mockThreadBinder, times(2)).getCurrentServerSpan();
+        verify(mockThreadBinder, times(2)).state();
         verify(wrappedExecutor).submit(expectedRunnable, returnValue);
         verifyNoMoreInteractions(wrappedExecutor, mockThreadBinder);
 
@@ -0,0 +1,142 @@
+package com.github.kristofa.brave;
+
+import com.twitter.zipkin.gen.Span;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(Parameterized.class)
+public class BraveExecutorsTest {
+
+    @Parameters
+    public static List<Object[]> states() {
+        int ip = 192 << 24 | 168 << 16 | 1;
+        return Arrays.asList(
+            new Object[] {new ThreadLocalServerClientAndLocalSpanState(ip, 80, "service")},
+            new Object[] {new ScopedServerClientAndLocalSpanState(ip, 80, "service")}
+        );
+    }
+
+    final ServerClientAndLocalSpanState state;
+    final ServerSpan serverSpan = ServerSpan.create(1L, 2L, null, "get");
+    final Span clientSpan = new Span().setTrace_id(1L).setId(3L).setName("query");
+    final Span localSpan = new Span().setTrace_id(1L).setId(4L).setName("encode");
+
+    final ScheduledExecutorService delegate = Executors.newSingleThreadScheduledExecutor();
+
+    public BraveExecutorsTest(ServerClientAndLocalSpanState state) {
+        this.state = state;
+    }
+
+    @After
+    public void tearDown() {
+        delegate.shutdownNow();
+        state.setCurrentServerSpan(null);
+        state.setCurrentClientSpan(null);
+        state.setCurrentLocalSpan(null);
+    }
+
+    @Test
+    public void executorService_propagatesAllSpans() throws Exception {
+        ExecutorService executor = BraveExecutors.executorService(delegate, state);
+        setSpans();
+
+        assertThat(executor.submit(currentSpans()).get())
+            .containsExactly(serverSpan, clientSpan, localSpan);
+    }
+
+    @Test
+    public void executorService_restoresWorkerSpans() throws Exception {
+        ExecutorService executor = BraveExecutors.executorService(delegate, state);
+        setSpans();
+        executor.submit(currentSpans()).get();
+
+        assertThat(delegate.submit(currentSpans()).get())
+            .containsExactly(null, null, null);
+    }
+
+    @Test
+    public void executorService_invokeAll() throws Exception {
+        ExecutorService executor = BraveExecutors.executorService(delegate, state);
+        setSpans();
+
+        List<Future<List<Object>>> futures =
+            executor.invokeAll(Arrays.asList(currentSpans(), currentSpans()));
+        for (Future<List<Object>> future : futures) {
+            assertThat(future.get()).containsExactly(serverSpan, clientSpan, localSpan);
+        }
+    }
+
+    @Test
+    public void scheduledExecutorService_propagatesAllSpans() throws Exception {
+        ScheduledExecutorService executor = BraveExecutors.scheduledExecutorService(delegate, state);
+        setSpans();
+
+        assertThat(executor.schedule(currentSpans(), 1, TimeUnit.MILLISECONDS).get())
+            .containsExactly(serverSpan, clientSpan, localSpan);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void executor_propagatesAllSpans() throws Exception {
+        final List<Object>[] inTask = new List[1];
+        setSpans();
+
+        BraveExecutors.executor(delegate, state).execute(new Runnable() {
+            @Override public void run() {
+                try {
+                    inTask[0] = currentSpans().call();
+                } catch (Exception e) {
+                    throw new AssertionError(e);
+                }
+            }
+        });
+        delegate.submit(new Runnable() {
+            @Override public void run() {
+            }
+        }).get(); // single-threaded, so the task above has run
+
+        assertThat(inTask[0]).containsExactly(serverSpan, clientSpan, localSpan);
+    }
+
+    @Test
+    public void threadPerTaskExecutor_propagatesAllSpans() throws Exception {
+        FutureTask<List<Object>> task = new FutureTask<List<Object>>(currentSpans());
+        setSpans();
+
+        BraveExecutors.threadPerTaskExecutor(Executors.defaultThreadFactory(), state).execute(task);
+
+        assertThat(task.get()).containsExactly(serverSpan, clientSpan, localSpan);
+    }
+
+    void setSpans() {
+        state.setCurrentServerSpan(serverSpan);
+        state.setCurrentClientSpan(clientSpan);
+        state.setCurrentLocalSpan(localSpan);
+    }
+
+    Callable<List<Object>> currentSpans() {
+        return new Callable<List<Object>>() {
+            @Override public List<Object> call() {
+                ServerSpan currentServerSpan = state.getCurrentServerSpan();
+                return Arrays.<Object>asList(
+                    currentServerSpan.getSpan() != null ? currentServerSpan : null,
+                    state.getCurrentClientSpan(),
+                    state.getCurrentLocalSpan());
+            }
+        };
+    }
+}
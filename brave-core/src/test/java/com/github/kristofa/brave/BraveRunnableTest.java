@@ -1,11 +1,17 @@
 package com.github.kristofa.brave;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import com.twitter.zipkin.gen.Span;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InOrder;
@@ -31,11 +37,47 @@ public class BraveRunnableTest {
         braveRunnable.run();
 
         final InOrder inOrder = inOrder(mockWrappedRunnable, mockThreadBinder, mockSpan);
-        inOrder.verify(mockThreadBinder).getCurrentServerSpan();
+        inOrder.verify(mockThreadBinder).state();
+        inOrder.verify(mockThreadBinder, times(2)).getCurrentServerSpan();
         inOrder.verify(mockThreadBinder).setCurrentSpan(mockSpan);
         inOrder.verify(mockWrappedRunnable).run();
+        inOrder.verify(mockThreadBinder).setCurrentSpan(mockSpan);
 
         verifyNoMoreInteractions(mockWrappedRunnable, mockThreadBinder, mockSpan);
     }
 
+    @Test
+    public void testRun_propagatesAllSpansAndRestoresThreadState() throws Exception {
+        final ServerClientAndLocalSpanState state =
+            new ThreadLocalServerClientAndLocalSpanState(192 << 24 | 168 << 16 | 1, 80, "service");
+        final ServerSpan serverSpan = ServerSpan.create(1L, 2L, null, "get");
+        final Span localSpan = new Span().setTrace_id(1L).setId(3L).setName("encode");
+        state.setCurrentServerSpan(serverSpan);
+        state.setCurrentLocalSpan(localSpan);
+        final Object[] inTask = new Object[2];
+        final BraveRunnable runnable = BraveRunnable.create(new Runnable() {
+            @Override
+            public void run() {
+                inTask[0] = state.getCurrentServerSpan();
+                inTask[1] = state.getCurrentLocalSpan();
+            }
+        }, new ServerSpanThreadBinder(state));
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(runnable).get();
+
+            assertThat(inTask).containsExactly(serverSpan, localSpan);
+            assertThat(executor.submit(new Callable<Span>() {
+                @Override
+                public Span call() {
+                    return state.getCurrentLocalSpan();
+                }
+            }).get()).isNull();
+        } finally {
+            executor.shutdownNow();
+            state.setCurrentServerSpan(null);
+            state.setCurrentLocalSpan(null);
+        }
+    }
+
 }
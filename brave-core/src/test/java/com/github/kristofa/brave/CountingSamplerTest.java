@@ -1,9 +1,18 @@
 package com.github.kristofa.brave;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.assertj.core.data.Percentage;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.data.Percentage.withPercentage;
 
 public class CountingSamplerTest extends SamplerTest {
@@ -22,5 +31,34 @@ public class CountingSamplerTest extends SamplerTest {
     newSampler(0.0001f);
   }
 
+  /** Each decision is handed to exactly one caller, so the rate is exact even under contention. */
+  @Test(timeout = 10000L)
+  public void retainsExactRateAcrossThreads() throws Exception {
+    final Sampler sampler = newSampler(0.25f);
+    final int threads = 8, callsPerThread = 100000; // 8000 rounds of 100 decisions
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService exec = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+      for (int t = 0; t < threads; t++) {
+        futures.add(exec.submit(new Callable<Integer>() {
+          @Override public Integer call() throws InterruptedException {
+            start.await(); // start together, to maximize contention
+            int sampled = 0;
+            for (int i = 0; i < callsPerThread; i++) {
+              if (sampler.isSampled(i)) sampled++;
+            }
+            return sampled;
+          }
+        }));
+      }
+      start.countDown();
 
+      int sampled = 0;
+      for (Future<Integer> future : futures) sampled += future.get(5, TimeUnit.SECONDS);
+      assertThat(sampled).isEqualTo(8000 * 25);
+    } finally {
+      exec.shutdownNow();
+    }
+  }
 }
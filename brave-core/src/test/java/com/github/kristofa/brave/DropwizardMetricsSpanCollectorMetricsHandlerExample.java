@@ -1,16 +1,28 @@
 package com.github.kristofa.brave;
 
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
+import java.util.concurrent.atomic.AtomicLong;
 
-class DropwizardMetricsSpanCollectorMetricsHandlerExample implements SpanCollectorMetricsHandler {
+class DropwizardMetricsSpanCollectorMetricsHandlerExample
+    implements SpanCollectorMetricsHandler, SpanCollectorByteMetrics {
 
     static final String ACCEPTED_METER = "tracing.collector.scribe.span.accepted";
     static final String DROPPED_METER = "tracing.collector.scribe.span.dropped";
+    static final String DROPPED_BYTES_METER = "tracing.collector.scribe.bytes.dropped";
+    static final String QUEUED_BYTES_GAUGE = "tracing.collector.scribe.bytes.queued";
 
     private final MetricRegistry registry;
+    private final AtomicLong queuedBytes = new AtomicLong();
 
     DropwizardMetricsSpanCollectorMetricsHandlerExample(MetricRegistry registry) {
         this.registry = registry;
+        registry.register(QUEUED_BYTES_GAUGE, new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return queuedBytes.get();
+            }
+        });
     }
 
     @Override
@@ -23,4 +35,14 @@ class DropwizardMetricsSpanCollectorMetricsHandlerExample implements SpanCollect
         registry.meter(DROPPED_METER).mark(quantity);
     }
 
+    @Override
+    public void incrementDroppedBytes(int quantity) {
+        registry.meter(DROPPED_BYTES_METER).mark(quantity);
+    }
+
+    @Override
+    public void updateQueuedBytes(long quantity) {
+        queuedBytes.set(quantity);
+    }
+
 }
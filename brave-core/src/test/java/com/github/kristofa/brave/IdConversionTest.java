@@ -71,4 +71,37 @@ public class IdConversionTest {
 	public void testIdShouldntBeUppercase() {
 	  	IdConversion.convertToLong("7FFFFFFFFFFFFFFF");
 	}
+
+	@Test
+	public void testCharSequence() {
+		assertEquals(Long.MAX_VALUE,
+			IdConversion.convertToLong(new StringBuilder("7fffffffffffffff")));
+	}
+
+	@Test
+	public void test128BitTraceId() {
+		final String traceId = "463ac35c9f6413ad48485a3953bb6124";
+		assertEquals(0x463ac35c9f6413adL, IdConversion.convertToTraceIdHigh(traceId));
+		assertEquals(0x48485a3953bb6124L, IdConversion.convertToTraceId(traceId));
+		assertEquals(traceId,
+			IdConversion.convertToString(0x463ac35c9f6413adL, 0x48485a3953bb6124L));
+	}
+
+	@Test
+	public void test128BitTraceId_paddsLowerBits() {
+		assertEquals("00000000000000010000000000000002", IdConversion.convertToString(1L, 2L));
+	}
+
+	@Test
+	public void test64BitTraceId() {
+		final String traceId = "48485a3953bb6124";
+		assertEquals(0L, IdConversion.convertToTraceIdHigh(traceId));
+		assertEquals(0x48485a3953bb6124L, IdConversion.convertToTraceId(traceId));
+		assertEquals(traceId, IdConversion.convertToString(0L, 0x48485a3953bb6124L));
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testTraceIdBetween16And32Characters() {
+		IdConversion.convertToTraceId("463ac35c9f6413ad4");
+	}
 }
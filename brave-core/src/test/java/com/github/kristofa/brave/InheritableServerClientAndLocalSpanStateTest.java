@@ -0,0 +1,130 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.ScopedServerClientAndLocalSpanState.Context;
+import com.twitter.zipkin.gen.Span;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InheritableServerClientAndLocalSpanStateTest {
+
+    InheritableServerClientAndLocalSpanState state =
+        new InheritableServerClientAndLocalSpanState(192 << 24 | 168 << 16 | 1, 80, "service");
+    ServerSpan serverSpan = ServerSpan.create(1L, 2L, null, "get");
+    Span localSpan = new Span().setTrace_id(1L).setId(4L).setName("encode");
+
+    @After
+    public void tearDown() {
+        state.attach(Context.EMPTY);
+    }
+
+    @Test
+    public void newThread_inheritsContext() throws InterruptedException {
+        state.setCurrentServerSpan(serverSpan);
+        state.setCurrentLocalSpan(localSpan);
+        Context parent = InheritableServerClientAndLocalSpanState.current();
+
+        final AtomicReference<Context> inChild = new AtomicReference<Context>();
+        Thread child = new Thread(new Runnable() {
+            @Override public void run() {
+                inChild.set(InheritableServerClientAndLocalSpanState.current());
+            }
+        });
+        child.start();
+        child.join();
+
+        assertThat(inChild.get()).isSameAs(parent);
+    }
+
+    @Test
+    public void childChanges_dontAffectParent() throws InterruptedException {
+        state.setCurrentServerSpan(serverSpan);
+
+        Thread child = new Thread(new Runnable() {
+            @Override public void run() {
+                state.setCurrentLocalSpan(localSpan);
+                state.setCurrentServerSpan(null);
+            }
+        });
+        child.start();
+        child.join();
+
+        assertThat(state.getCurrentServerSpan()).isSameAs(serverSpan);
+        assertThat(state.getCurrentLocalSpan()).isNull();
+    }
+
+    @Test
+    public void threadPerTaskExecutor_inheritsWithoutWrapping() throws Exception {
+        state.setCurrentServerSpan(serverSpan);
+        final List<Runnable> started = new ArrayList<Runnable>();
+        final ThreadFactory factory = Executors.defaultThreadFactory();
+        FutureTask<ServerSpan> task = new FutureTask<ServerSpan>(new Callable<ServerSpan>() {
+            @Override public ServerSpan call() {
+                return state.getCurrentServerSpan();
+            }
+        });
+
+        BraveExecutors.threadPerTaskExecutor(new ThreadFactory() {
+            @Override public Thread newThread(Runnable r) {
+                started.add(r);
+                return factory.newThread(r);
+            }
+        }, state).execute(task);
+
+        assertThat(task.get()).isSameAs(serverSpan);
+        assertThat(started).containsExactly(task);
+    }
+
+    @Test
+    public void wrap_attachesToInheritableState() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(new Runnable() {
+                @Override public void run() {
+                }
+            }).get(); // starts the pool thread before there's a span to inherit
+            state.setCurrentServerSpan(serverSpan);
+
+            Callable<ServerSpan> task = InheritableServerClientAndLocalSpanState.current()
+                .wrap(new Callable<ServerSpan>() {
+                    @Override public ServerSpan call() {
+                        return state.getCurrentServerSpan();
+                    }
+                });
+
+            assertThat(executor.submit(task).get()).isSameAs(serverSpan);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void attach_attachesToInheritableState() {
+        state.setCurrentServerSpan(serverSpan);
+        Context context = InheritableServerClientAndLocalSpanState.current();
+        state.setCurrentServerSpan(null);
+
+        Context previous = context.attach();
+
+        assertThat(state.getCurrentServerSpan()).isSameAs(serverSpan);
+        assertThat(ScopedServerClientAndLocalSpanState.current()).isSameAs(Context.EMPTY);
+        previous.attach();
+        assertThat(state.getCurrentServerSpan()).isSameAs(ServerSpan.EMPTY);
+    }
+
+    @Test
+    public void separateFromScopedState() {
+        state.setCurrentServerSpan(serverSpan);
+
+        assertThat(ScopedServerClientAndLocalSpanState.current()).isSameAs(Context.EMPTY);
+    }
+}
@@ -1,7 +1,9 @@
 package com.github.kristofa.brave;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -111,6 +113,81 @@ public class LocalTracerTest {
         assertNull(localTracer.startNewSpan(COMPONENT_NAME, OPERATION_NAME));
     }
 
+    @Test
+    public void startNewSpan_nestsUnderCurrentLocalSpan() {
+        state.setCurrentServerSpan(ServerSpan.create(PARENT_TRACE_ID, PARENT_SPAN_ID, null, "name"));
+        when(mockRandom.nextLong()).thenReturn(555L, 556L);
+
+        localTracer.startNewSpan(COMPONENT_NAME, "outer", 1000L);
+        Span outer = state.getCurrentLocalSpan();
+
+        SpanId inner = localTracer.startNewSpan(COMPONENT_NAME, "inner", 1001L);
+        assertEquals(
+            SpanId.builder().traceId(PARENT_TRACE_ID).spanId(556L).parentId(555L).build(), inner);
+
+        localTracer.finishSpan(1L);
+        assertSame(outer, state.getCurrentLocalSpan());
+
+        localTracer.finishSpan(3L);
+        assertNull(state.getCurrentLocalSpan());
+        verify(mockCollector).collect(outer);
+        assertNull(outer.enclosingLocalSpan);
+    }
+
+    /** When spans finish out of order, a finished span doesn't become current again. */
+    @Test
+    public void finishSpan_outOfOrder_doesntRestoreFinishedSpan() {
+        state.setCurrentServerSpan(ServerSpan.create(PARENT_TRACE_ID, PARENT_SPAN_ID, null, "name"));
+        when(mockRandom.nextLong()).thenReturn(555L, 556L, 557L);
+
+        localTracer.startNewSpan(COMPONENT_NAME, "outer", 1000L);
+        Span outer = state.getCurrentLocalSpan();
+        localTracer.startNewSpan(COMPONENT_NAME, "inner", 1001L);
+        Span inner = state.getCurrentLocalSpan();
+
+        state.setCurrentLocalSpan(outer); // ex. outer is finished by another callback first
+        localTracer.finishSpan(3L);
+        state.setCurrentLocalSpan(inner);
+        localTracer.finishSpan(1L);
+
+        assertNull(state.getCurrentLocalSpan());
+        assertEquals(
+            SpanId.builder().traceId(PARENT_TRACE_ID).spanId(557L).parentId(PARENT_SPAN_ID).build(),
+            localTracer.startNewSpan(COMPONENT_NAME, "next", 1002L));
+    }
+
+    /** A pooled enclosing span may be reused by another trace once it's reported. */
+    @Test
+    public void finishSpan_doesntRestoreRecycledSpan() {
+        SpanPool pool = SpanPool.create(1);
+        localTracer = LocalTracer.builder(localTracer).spanPool(pool).build();
+        state.setCurrentServerSpan(ServerSpan.create(PARENT_TRACE_ID, PARENT_SPAN_ID, null, "name"));
+        when(mockRandom.nextLong()).thenReturn(555L, 556L);
+
+        localTracer.startNewSpan(COMPONENT_NAME, "outer", 1000L);
+        Span outer = state.getCurrentLocalSpan();
+        localTracer.startNewSpan(COMPONENT_NAME, "inner", 1001L);
+        Span inner = state.getCurrentLocalSpan();
+
+        SpanPool.release(outer); // ex. reported out of order
+        pool.acquire().setTrace_id(1L).setId(2L); // reused by another trace
+        localTracer.finishSpan(1L);
+
+        assertNull(state.getCurrentLocalSpan());
+        assertNull(inner.enclosingLocalSpan);
+    }
+
+    /** Once a local span is open, the trace is sampled, so nested spans don't consult the sampler. */
+    @Test
+    public void startNewSpan_nestedSpanInheritsSampling() {
+        state.setCurrentServerSpan(ServerSpan.create(PARENT_TRACE_ID, PARENT_SPAN_ID, null, "name"));
+        localTracer.startNewSpan(COMPONENT_NAME, "outer", 1000L);
+
+        localTracer = LocalTracer.builder(localTracer).traceSampler(Sampler.create(0.0f)).build();
+
+        assertNotNull(localTracer.startNewSpan(COMPONENT_NAME, "inner", 1001L));
+    }
+
     /**
      * When finish is called without a duration, the startTick from start is used in duration calculation.
      * <p>
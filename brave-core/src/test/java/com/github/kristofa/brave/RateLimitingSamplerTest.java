@@ -0,0 +1,107 @@
+package com.github.kristofa.brave;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RateLimitingSamplerTest {
+  static final long NOW = System.nanoTime();
+  static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void zeroMeansDropAllTraces() {
+    assertThat(RateLimitingSampler.create(0)).isSameAs(Sampler.NEVER_SAMPLE);
+  }
+
+  @Test
+  public void tracesPerSecondCantBeNegative() {
+    thrown.expect(IllegalArgumentException.class);
+
+    RateLimitingSampler.create(-1);
+  }
+
+  @Test
+  public void allowsBurstUpToRate() {
+    RateLimitingSampler sampler = new RateLimitingSampler(10, NOW);
+
+    for (int i = 0; i < 10; i++) {
+      assertThat(sampler.isSampledAt(NOW)).isTrue();
+    }
+    assertThat(sampler.isSampledAt(NOW)).isFalse();
+  }
+
+  @Test
+  public void refillsContinuously() {
+    RateLimitingSampler sampler = new RateLimitingSampler(10, NOW);
+    for (int i = 0; i < 10; i++) {
+      sampler.isSampledAt(NOW);
+    }
+
+    assertThat(sampler.isSampledAt(NOW + 99 * MILLI)).isFalse();
+    assertThat(sampler.isSampledAt(NOW + 100 * MILLI)).isTrue();
+    assertThat(sampler.isSampledAt(NOW + 100 * MILLI)).isFalse();
+  }
+
+  @Test
+  public void doesntAccumulateMoreThanOneSecond() {
+    RateLimitingSampler sampler = new RateLimitingSampler(10, NOW);
+
+    long later = NOW + TimeUnit.MINUTES.toNanos(1);
+    int sampled = 0;
+    for (int i = 0; i < 100; i++) {
+      if (sampler.isSampledAt(later)) sampled++;
+    }
+    assertThat(sampled).isEqualTo(10);
+  }
+
+  @Test
+  public void handlesNanoTimeOverflow() {
+    RateLimitingSampler sampler = new RateLimitingSampler(10, Long.MAX_VALUE - MILLI);
+    for (int i = 0; i < 10; i++) {
+      assertThat(sampler.isSampledAt(Long.MAX_VALUE - MILLI)).isTrue();
+    }
+
+    assertThat(sampler.isSampledAt(Long.MIN_VALUE + 200 * MILLI)).isTrue();
+  }
+
+  /** Ensures there are no unsynchronized race conditions when threads share the bucket. */
+  @Test
+  public void exactUnderConcurrency() throws Exception {
+    final RateLimitingSampler sampler = new RateLimitingSampler(1000, NOW);
+
+    ExecutorService exec = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+      for (int t = 0; t < 8; t++) {
+        futures.add(exec.submit(new Callable<Integer>() {
+          @Override public Integer call() {
+            int sampled = 0;
+            for (int i = 0; i < 10000; i++) {
+              if (sampler.isSampledAt(NOW)) sampled++;
+            }
+            return sampled;
+          }
+        }));
+      }
+      int sampled = 0;
+      for (Future<Integer> future : futures) {
+        sampled += future.get();
+      }
+      assertThat(sampled).isEqualTo(1000);
+    } finally {
+      exec.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,141 @@
+package com.github.kristofa.brave;
+
+import com.twitter.zipkin.gen.Span;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RingBufferSpanQueueTest {
+
+  RingBufferSpanQueue queue = new RingBufferSpanQueue(3, Long.MAX_VALUE);
+
+  @Test
+  public void drainsInInsertionOrder() {
+    queue.offer(span(1L), 1);
+    queue.offer(span(2L), 1);
+    queue.offer(span(3L), 1);
+
+    List<Span> drained = new ArrayList<Span>();
+    assertThat(queue.drainTo(drained)).isEqualTo(3);
+
+    assertThat(drained).containsExactly(span(1L), span(2L), span(3L));
+    assertThat(queue.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void offerReturnsFalseWhenFull() {
+    assertThat(queue.offer(span(1L), 1)).isTrue();
+    assertThat(queue.offer(span(2L), 1)).isTrue();
+    assertThat(queue.offer(span(3L), 1)).isTrue();
+
+    assertThat(queue.offer(span(4L), 1)).isFalse();
+    assertThat(queue.size()).isEqualTo(3);
+  }
+
+  @Test
+  public void offerReturnsFalseWhenOverMaxBytes() {
+    RingBufferSpanQueue queue = new RingBufferSpanQueue(3, 100);
+
+    assertThat(queue.offer(span(1L), 60)).isTrue();
+    assertThat(queue.offer(span(2L), 60)).isFalse();
+    assertThat(queue.offer(span(3L), 40)).isTrue();
+
+    assertThat(queue.size()).isEqualTo(2);
+    assertThat(queue.sizeInBytes()).isEqualTo(100);
+  }
+
+  @Test
+  public void drainReleasesBytes() {
+    RingBufferSpanQueue queue = new RingBufferSpanQueue(3, 100);
+    queue.offer(span(1L), 60);
+    queue.offer(span(2L), 40);
+
+    queue.drainTo(new ArrayList<Span>());
+
+    assertThat(queue.sizeInBytes()).isZero();
+    assertThat(queue.offer(span(3L), 100)).isTrue();
+  }
+
+  @Test
+  public void failedOfferReleasesBytes() {
+    queue.offer(span(1L), 1);
+    queue.offer(span(2L), 1);
+    queue.offer(span(3L), 1);
+
+    queue.offer(span(4L), 1);
+
+    assertThat(queue.sizeInBytes()).isEqualTo(3);
+  }
+
+  @Test
+  public void wrapsAround() {
+    List<Span> drained = new ArrayList<Span>();
+    for (long i = 1; i <= 10; i++) {
+      assertThat(queue.offer(span(i), 1)).isTrue();
+      assertThat(queue.offer(span(-i), 1)).isTrue();
+      queue.drainTo(drained);
+    }
+
+    assertThat(drained).hasSize(20);
+    assertThat(drained.get(18)).isEqualTo(span(10L));
+    assertThat(drained.get(19)).isEqualTo(span(-10L));
+  }
+
+  @Test
+  public void drainReleasesReferences() {
+    queue.offer(span(1L), 1);
+    queue.drainTo(new ArrayList<Span>());
+
+    for (int i = 0; i < queue.capacity; i++) {
+      assertThat(queue.elements.get(i)).isNull();
+    }
+  }
+
+  @Test(timeout = 10000L) // a lost span would otherwise hang the drain loop
+  public void concurrentProducersDontLoseSpans() throws Exception {
+    final RingBufferSpanQueue queue = new RingBufferSpanQueue(1000, Long.MAX_VALUE);
+    ExecutorService exec = Executors.newFixedThreadPool(4);
+    List<Future<?>> futures = new ArrayList<Future<?>>();
+    for (int t = 0; t < 4; t++) {
+      final long offset = t * 100000L;
+      futures.add(exec.submit(new Callable<Void>() {
+        @Override public Void call() {
+          for (long i = 0; i < 10000; i++) {
+            while (!queue.offer(span(offset + i), 1)) Thread.yield(); // spin until drained
+          }
+          return null;
+        }
+      }));
+    }
+
+    Set<Span> drained = new HashSet<Span>();
+    List<Span> batch = new ArrayList<Span>();
+    try {
+      while (drained.size() < 40000) {
+        queue.drainTo(batch);
+        drained.addAll(batch);
+        batch.clear();
+      }
+      for (Future<?> future : futures) future.get(5, TimeUnit.SECONDS);
+    } finally {
+      exec.shutdownNow();
+    }
+
+    assertThat(drained).hasSize(40000);
+    assertThat(queue.isEmpty()).isTrue();
+    assertThat(queue.sizeInBytes()).isZero();
+  }
+
+  static Span span(long traceId) {
+    return new Span().setTrace_id(traceId).setId(traceId).setName("foo");
+  }
+}
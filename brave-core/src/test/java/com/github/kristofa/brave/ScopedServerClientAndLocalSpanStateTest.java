@@ -0,0 +1,105 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.ScopedServerClientAndLocalSpanState.Context;
+import com.twitter.zipkin.gen.Span;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ScopedServerClientAndLocalSpanStateTest {
+
+    ScopedServerClientAndLocalSpanState state =
+        new ScopedServerClientAndLocalSpanState(192 << 24 | 168 << 16 | 1, 80, "service");
+    ServerSpan serverSpan = ServerSpan.create(1L, 2L, null, "get");
+    Span clientSpan = new Span().setTrace_id(1L).setId(3L).setName("query");
+    Span localSpan = new Span().setTrace_id(1L).setId(4L).setName("encode");
+
+    @After
+    public void tearDown() {
+        Context.EMPTY.attach();
+    }
+
+    @Test
+    public void initiallyEmpty() {
+        assertThat(state.getCurrentServerSpan()).isEqualTo(ServerSpan.EMPTY);
+        assertThat(state.getCurrentClientSpan()).isNull();
+        assertThat(state.getCurrentLocalSpan()).isNull();
+        assertThat(state.sample()).isNull();
+    }
+
+    @Test
+    public void setSpans_independently() {
+        state.setCurrentServerSpan(serverSpan);
+        state.setCurrentClientSpan(clientSpan);
+        state.setCurrentLocalSpan(localSpan);
+
+        assertThat(state.getCurrentServerSpan()).isSameAs(serverSpan);
+        assertThat(state.getCurrentClientSpan()).isSameAs(clientSpan);
+        assertThat(state.getCurrentLocalSpan()).isSameAs(localSpan);
+
+        state.setCurrentClientSpan(null);
+        assertThat(state.getCurrentServerSpan()).isSameAs(serverSpan);
+        assertThat(state.getCurrentLocalSpan()).isSameAs(localSpan);
+    }
+
+    @Test
+    public void clearingAllSpans_removesEntry() {
+        state.setCurrentServerSpan(serverSpan);
+        state.setCurrentServerSpan(null);
+
+        assertThat(ScopedServerClientAndLocalSpanState.current()).isSameAs(Context.EMPTY);
+    }
+
+    @Test
+    public void capturedContext_unaffectedByLaterChanges() {
+        state.setCurrentServerSpan(serverSpan);
+        Context captured = ScopedServerClientAndLocalSpanState.current();
+
+        state.setCurrentClientSpan(clientSpan);
+
+        assertThat(captured.clientSpan).isNull();
+        assertThat(captured.serverSpan).isSameAs(serverSpan);
+    }
+
+    @Test
+    public void attach_restoresPrevious() {
+        state.setCurrentServerSpan(serverSpan);
+        Context outer = ScopedServerClientAndLocalSpanState.current();
+
+        Context previous = Context.EMPTY.attach();
+        assertThat(state.getCurrentServerSpan()).isEqualTo(ServerSpan.EMPTY);
+
+        previous.attach();
+        assertThat(ScopedServerClientAndLocalSpanState.current()).isSameAs(outer);
+    }
+
+    @Test
+    public void wrap_propagatesToAnotherThread() throws Exception {
+        state.setCurrentServerSpan(serverSpan);
+        state.setCurrentLocalSpan(localSpan);
+        Context context = ScopedServerClientAndLocalSpanState.current();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Context inTask = executor.submit(context.wrap(new Callable<Context>() {
+                @Override public Context call() {
+                    return ScopedServerClientAndLocalSpanState.current();
+                }
+            })).get();
+            assertThat(inTask).isSameAs(context);
+
+            Context afterTask = executor.submit(new Callable<Context>() {
+                @Override public Context call() {
+                    return ScopedServerClientAndLocalSpanState.current();
+                }
+            }).get();
+            assertThat(afterTask).isSameAs(Context.EMPTY);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -56,6 +56,45 @@ public class ServerRequestInterceptorTest {
         verifyNoMoreInteractions(serverTracer);
     }
 
+    @Test
+    public void handleNoState_requestSampler() {
+        final Sampler sampler = Sampler.NEVER_SAMPLE;
+        interceptor = new ServerRequestInterceptor(serverTracer, new ServerRequestSampler() {
+            @Override
+            public Sampler sampler(String spanName, ServerRequestAdapter adapter) {
+                return SPAN_NAME.equals(spanName) ? sampler : null;
+            }
+        });
+        TraceData traceData = TraceData.builder().build();
+        when(adapter.getTraceData()).thenReturn(traceData);
+        when(adapter.getSpanName()).thenReturn(SPAN_NAME);
+        when(adapter.requestAnnotations()).thenReturn(Collections.EMPTY_LIST);
+
+        interceptor.handle(adapter);
+        InOrder inOrder = inOrder(serverTracer);
+        inOrder.verify(serverTracer).clearCurrentSpan();
+        inOrder.verify(serverTracer).setStateUnknown(SPAN_NAME, sampler);
+        inOrder.verify(serverTracer).setServerReceived();
+        verifyNoMoreInteractions(serverTracer);
+    }
+
+    @Test
+    public void handleNoState_requestSamplerDefers() {
+        interceptor = new ServerRequestInterceptor(serverTracer, new ServerRequestSampler() {
+            @Override
+            public Sampler sampler(String spanName, ServerRequestAdapter adapter) {
+                return null;
+            }
+        });
+        TraceData traceData = TraceData.builder().build();
+        when(adapter.getTraceData()).thenReturn(traceData);
+        when(adapter.getSpanName()).thenReturn(SPAN_NAME);
+        when(adapter.requestAnnotations()).thenReturn(Collections.EMPTY_LIST);
+
+        interceptor.handle(adapter);
+        verify(serverTracer).setStateUnknown(SPAN_NAME);
+    }
+
     @Test
     public void handleSampleRequestWithParentSpanId() {
         SpanId spanId =
@@ -68,7 +107,7 @@ public class ServerRequestInterceptorTest {
         interceptor.handle(adapter);
         InOrder inOrder = inOrder(serverTracer, adapter);
         inOrder.verify(serverTracer).clearCurrentSpan();
-        inOrder.verify(serverTracer).setStateCurrentTrace(TRACE_ID, SPAN_ID, PARENT_SPAN_ID, SPAN_NAME);
+        inOrder.verify(serverTracer).setStateCurrentTrace(spanId, SPAN_NAME);
         inOrder.verify(serverTracer).setServerReceived();
         inOrder.verify(adapter).requestAnnotations();
         inOrder.verify(serverTracer).submitBinaryAnnotation(ANNOTATION1.getKey(), ANNOTATION1.getValue());
@@ -87,7 +126,7 @@ public class ServerRequestInterceptorTest {
         interceptor.handle(adapter);
         InOrder inOrder = inOrder(serverTracer);
         inOrder.verify(serverTracer).clearCurrentSpan();
-        inOrder.verify(serverTracer).setStateCurrentTrace(TRACE_ID, SPAN_ID, null, SPAN_NAME);
+        inOrder.verify(serverTracer).setStateCurrentTrace(spanId, SPAN_NAME);
         inOrder.verify(serverTracer).setServerReceived();
         verifyNoMoreInteractions(serverTracer);
     }
@@ -27,6 +27,7 @@ import static org.mockito.Mockito.when;
 public class ServerTracerTest {
 
     private final static long CURRENT_TIME_MICROSECONDS = System.currentTimeMillis() * 1000;
+    private final static long TRACE_ID_HIGH = 4L;
     private final static long TRACE_ID = 1L;
     private final static long SPAN_ID = 2L;
     private final static Long PARENT_SPANID = 3L;
@@ -76,6 +77,17 @@ public class ServerTracerTest {
         verifyNoMoreInteractions(mockServerSpanState, mockSpanCollector);
     }
 
+    @Test
+    public void testSetStateCurrentTrace_128BitTraceId() {
+        SpanId spanId = SpanId.builder().traceIdHigh(TRACE_ID_HIGH).traceId(TRACE_ID)
+            .spanId(SPAN_ID).parentId(PARENT_SPANID).build();
+        serverTracer.setStateCurrentTrace(spanId, SPAN_NAME);
+        final ServerSpan expectedServerSpan = ServerSpan.create(
+            new Span().setTrace_id_high(TRACE_ID_HIGH), TRACE_ID, SPAN_ID, PARENT_SPANID, SPAN_NAME);
+        verify(mockServerSpanState).setCurrentServerSpan(expectedServerSpan);
+        verifyNoMoreInteractions(mockServerSpanState, mockSpanCollector);
+    }
+
     @Test
     public void testSetStateNoTracing() {
         serverTracer.setStateNoTracing();
@@ -121,6 +133,21 @@ public class ServerTracerTest {
         verifyNoMoreInteractions(mockServerSpanState, mockSpanCollector, mockRandom);
     }
 
+    @Test
+    public void testSetStateUnknownSuppliedSampler() {
+
+        final Sampler requestSampler = mock(Sampler.class);
+        when(mockRandom.nextLong()).thenReturn(TRACE_ID);
+        when(requestSampler.isSampled(TRACE_ID)).thenReturn(true);
+
+        serverTracer.setStateUnknown(SPAN_NAME, requestSampler);
+        final ServerSpan expectedServerSpan = ServerSpan.create(TRACE_ID, TRACE_ID, null, SPAN_NAME);
+
+        verify(requestSampler).isSampled(TRACE_ID);
+        verify(mockServerSpanState).setCurrentServerSpan(expectedServerSpan);
+        verifyNoMoreInteractions(mockSampler);
+    }
+
     @Test
     public void testSetServerReceivedNoServerSpan() {
 
@@ -156,6 +156,28 @@ public class SpanIdTest {
         .isEqualTo(TraceId$.MODULE$.deserialize(id.bytes()).get().toString());
   }
 
+  @Test
+  public void testToString128BitTraceId() {
+    SpanId id = SpanId.builder().traceIdHigh(4).traceId(1).spanId(3).parentId(2L).build();
+
+    assertThat(id.toString())
+        .isEqualTo("00000000000000040000000000000001.0000000000000003<:0000000000000002");
+  }
+
+  @Test public void equalsAccountsForTraceIdHigh() {
+    SpanId id = SpanId.builder().traceId(1L).spanId(3L).build();
+
+    assertThat(id.toBuilder().traceIdHigh(4L).build())
+        .isNotEqualTo(id)
+        .isEqualTo(id.toBuilder().traceIdHigh(4L).build());
+  }
+
+  @Test public void toSpan_128BitTraceId() {
+    SpanId id = SpanId.builder().traceIdHigh(4L).traceId(1L).spanId(3L).build();
+
+    assertThat(id.toSpan().getTrace_id_high()).isEqualTo(4L);
+  }
+
   static void checkAgainstFinagle(SpanId brave) {
     TraceId finagle = TraceId$.MODULE$.deserialize(brave.bytes()).get();
 
@@ -0,0 +1,235 @@
+package com.github.kristofa.brave;
+
+import com.github.kristofa.brave.SpanPool.BoundedSpanPool;
+import com.github.kristofa.brave.SpanPool.LeakDetectingSpanPool;
+import com.twitter.zipkin.gen.Endpoint;
+import com.twitter.zipkin.gen.Span;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SpanPoolTest {
+  Endpoint endpoint = Endpoint.create("foobar", 1 << 24 | 2 << 16 | 3 << 8 | 4, 9999);
+  BoundedSpanPool pool = (BoundedSpanPool) SpanPool.create(2);
+
+  @Test
+  public void none_allocates() {
+    Span span = SpanPool.NONE.acquire();
+    SpanPool.release(span);
+
+    assertThat(SpanPool.NONE.acquire()).isNotSameAs(span);
+  }
+
+  @Test
+  public void reusesReleasedSpan() {
+    Span span = pool.acquire();
+    SpanPool.release(span);
+
+    assertThat(pool.acquire()).isSameAs(span);
+  }
+
+  @Test
+  public void releasedSpanIsCleared() {
+    Span span = pool.acquire()
+        .setTrace_id(1L).setId(2L).setParent_id(3L).setName("get")
+        .setTimestamp(1L).setDuration(2L).setDebug(true);
+    span.startTick = 1L;
+    for (int i = 0; i < 10; i++) { // past initial capacity
+      span.addAnnotation(i, "annotation" + i, endpoint);
+      span.addBinaryAnnotation("key" + i, "value" + i, endpoint);
+    }
+
+    SpanPool.release(span);
+
+    assertThat(pool.acquire()).isSameAs(span);
+    assertThat(span.getTrace_id()).isZero();
+    assertThat(span.getId()).isZero();
+    assertThat(span.getParent_id()).isNull();
+    assertThat(span.getName()).isNull();
+    assertThat(span.getTimestamp()).isNull();
+    assertThat(span.getDuration()).isNull();
+    assertThat(span.isDebug()).isNull();
+    assertThat(span.getAnnotations()).isEmpty();
+    assertThat(span.getBinary_annotations()).isEmpty();
+    assertThat(span.startTick).isNull();
+  }
+
+  @Test
+  public void releasedSpanIgnoresChanges() {
+    Span span = pool.acquire().setTrace_id(1L).setId(2L).setName("get");
+    SpanPool.pin(span); // so that release doesn't clear it
+    SpanPool.release(span);
+
+    span.setName("post").setTimestamp(1L).addAnnotation(1L, "late", endpoint)
+        .addBinaryAnnotation("key", "value", endpoint);
+
+    assertThat(span.getName()).isEqualTo("get");
+    assertThat(span.getTimestamp()).isNull();
+    assertThat(span.getAnnotations()).isEmpty();
+    assertThat(span.getBinary_annotations()).isEmpty();
+  }
+
+  @Test
+  public void pinnedSpanIsntRecycled() {
+    Span span = pool.acquire();
+    SpanPool.pin(span);
+    SpanPool.release(span);
+
+    assertThat(pool.size()).isZero();
+    assertThat(pool.acquire()).isNotSameAs(span);
+  }
+
+  /** A task can outlive the request that submitted it, so its spans mustn't be reused. */
+  @Test
+  public void taskOutlivingRequest_doesntAffectNextRequest() throws InterruptedException {
+    Brave brave = new Brave.Builder(1, 9999, "foobar")
+        .spanCollector(new EmptySpanCollector())
+        .spanPool(pool).build();
+    final ServerTracer serverTracer = brave.serverTracer();
+
+    serverTracer.setStateUnknown("get");
+    serverTracer.setServerReceived();
+    Span first = brave.serverSpanThreadBinder().state().getCurrentServerSpan().getSpan();
+    Thread task = new Thread(BraveRunnable.create(new Runnable() {
+      @Override public void run() {
+        serverTracer.submitAnnotation("late");
+      }
+    }, brave.serverSpanThreadBinder()));
+    serverTracer.setServerSend(); // releases the span, before the task runs
+
+    serverTracer.setStateUnknown("get");
+    Span next = brave.serverSpanThreadBinder().state().getCurrentServerSpan().getSpan();
+    task.start();
+    task.join(1000);
+
+    assertThat(next).isNotSameAs(first);
+    assertThat(next.getAnnotations()).isEmpty();
+    assertThat(first.getAnnotations()).extracting("value").doesNotContain("late");
+  }
+
+  /** Spans read from a thread binder may be used by another thread after they are reported. */
+  @Test
+  public void spanHandedOffViaBinder_doesntAffectNextRequest() throws InterruptedException {
+    Brave brave = new Brave.Builder(1, 9999, "foobar")
+        .spanCollector(new EmptySpanCollector())
+        .spanPool(pool).build();
+    final ServerTracer serverTracer = brave.serverTracer();
+    final ServerSpanThreadBinder binder = brave.serverSpanThreadBinder();
+
+    serverTracer.setStateUnknown("get");
+    serverTracer.setServerReceived();
+    final ServerSpan handedOff = binder.getCurrentServerSpan();
+    serverTracer.setServerSend(); // releases the span, before the other thread uses it
+
+    serverTracer.setStateUnknown("get");
+    Span next = binder.state().getCurrentServerSpan().getSpan();
+    Thread callback = new Thread(new Runnable() {
+      @Override public void run() {
+        binder.setCurrentSpan(handedOff);
+        serverTracer.submitAnnotation("late");
+        serverTracer.submitBinaryAnnotation("key", "value");
+      }
+    });
+    callback.start();
+    callback.join(1000);
+
+    assertThat(next).isNotSameAs(handedOff.getSpan());
+    assertThat(next.getAnnotations()).isEmpty();
+    assertThat(next.getBinary_annotations()).isEmpty();
+  }
+
+  @Test
+  public void binders_pinSpans() {
+    ServerClientAndLocalSpanState state = new ThreadLocalServerClientAndLocalSpanState(1, 9999, "foobar");
+    Span server = pool.acquire(), client = pool.acquire(), local = pool.acquire();
+    state.setCurrentServerSpan(ServerSpan.create(server, true));
+    state.setCurrentClientSpan(client);
+    state.setCurrentLocalSpan(local);
+
+    new ServerSpanThreadBinder(state).getCurrentServerSpan();
+    new ClientSpanThreadBinder(state).getCurrentClientSpan();
+    new LocalSpanThreadBinder(state).getCurrentLocalSpan();
+    SpanPool.release(server);
+    SpanPool.release(client);
+    SpanPool.release(local);
+
+    assertThat(pool.size()).isZero();
+  }
+
+  @Test
+  public void holdsAtMostMaxSpans() {
+    Span one = pool.acquire(), two = pool.acquire(), three = pool.acquire();
+    SpanPool.release(one);
+    SpanPool.release(two);
+    SpanPool.release(three);
+
+    assertThat(pool.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void releaseTwice_ignored() {
+    Span span = pool.acquire();
+    SpanPool.release(span);
+    SpanPool.release(span);
+
+    assertThat(pool.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void releaseIgnoresSpansNotFromPool() {
+    SpanPool.release(new Span());
+    SpanPool.release(null);
+
+    assertThat(pool.size()).isZero();
+  }
+
+  @Test
+  public void debug_detectsLeaks() throws InterruptedException {
+    LeakDetectingSpanPool pool = (LeakDetectingSpanPool) SpanPool.debug(2);
+    pool.acquire(); // never released
+    SpanPool.release(pool.acquire());
+
+    for (int i = 0; i < 20 && pool.leaks.get() == 0; i++) {
+      System.gc();
+      Thread.sleep(50);
+      SpanPool.release(pool.acquire()); // leaks are reported on acquire
+    }
+
+    assertThat(pool.leaks.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void flushingSpanCollector_releasesReportedSpans() {
+    final List<Long> reported = new ArrayList<Long>();
+    FlushingSpanCollector collector = new FlushingSpanCollector(
+        new EmptySpanCollectorMetricsHandler(), 0) {
+      @Override protected void reportSpans(List<Span> drained) {
+        for (Span span : drained) reported.add(span.getTrace_id());
+      }
+    };
+
+    collector.collect(pool.acquire().setTrace_id(1L).setName("get"));
+    collector.collect(pool.acquire().setTrace_id(2L).setName("get"));
+    collector.flush();
+
+    assertThat(reported).containsExactly(1L, 2L);
+    assertThat(pool.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void tracer_reusesSpanOfPreviousRequest() {
+    Brave brave = new Brave.Builder(1, 9999, "foobar")
+        .spanCollector(new EmptySpanCollector())
+        .spanPool(pool).build();
+
+    brave.serverTracer().setStateUnknown("get");
+    Span first = brave.serverSpanThreadBinder().state().getCurrentServerSpan().getSpan();
+    brave.serverTracer().setServerReceived();
+    brave.serverTracer().setServerSend();
+
+    brave.serverTracer().setStateUnknown("get");
+    assertThat(brave.serverSpanThreadBinder().state().getCurrentServerSpan().getSpan()).isSameAs(first);
+  }
+}
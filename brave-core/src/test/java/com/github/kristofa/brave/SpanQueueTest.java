@@ -0,0 +1,45 @@
+package com.github.kristofa.brave;
+
+import com.twitter.zipkin.gen.Span;
+import java.util.ArrayList;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SpanQueueTest {
+
+  @Test
+  public void blocking_offerReturnsFalseWhenOverMaxBytes() {
+    SpanQueue queue = SpanQueue.blocking(3, 100);
+
+    assertThat(queue.offer(span(1L), 60)).isTrue();
+    assertThat(queue.offer(span(2L), 60)).isFalse();
+    assertThat(queue.offer(span(3L), 40)).isTrue();
+
+    assertThat(queue.size()).isEqualTo(2);
+    assertThat(queue.sizeInBytes()).isEqualTo(100);
+  }
+
+  @Test
+  public void blocking_failedOfferReleasesBytes() {
+    SpanQueue queue = SpanQueue.blocking(1, 100);
+    queue.offer(span(1L), 10);
+
+    assertThat(queue.offer(span(2L), 10)).isFalse();
+    assertThat(queue.sizeInBytes()).isEqualTo(10);
+  }
+
+  @Test
+  public void blocking_drainReleasesBytes() {
+    SpanQueue queue = SpanQueue.blocking(3, 100);
+    queue.offer(span(1L), 60);
+    queue.drainTo(new ArrayList<Span>());
+
+    assertThat(queue.sizeInBytes()).isZero();
+    assertThat(queue.offer(span(2L), 100)).isTrue();
+  }
+
+  static Span span(long id) {
+    return new Span().setTrace_id(id).setId(id).setName("get");
+  }
+}
@@ -0,0 +1,178 @@
+package com.github.kristofa.brave.internal;
+
+import com.twitter.zipkin.gen.Annotation;
+import com.twitter.zipkin.gen.AnnotationType;
+import com.twitter.zipkin.gen.BinaryAnnotation;
+import com.twitter.zipkin.gen.Endpoint;
+import com.twitter.zipkin.gen.Span;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import zipkin.Codec;
+import zipkin.Constants;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StreamingSpanCodecTest {
+
+  Endpoint browser = Endpoint.create("browser-client", 1 << 24 | 2 << 16 | 3);
+  Endpoint web = Endpoint.create("zipkin-web", 172 << 24 | 17 << 16 | 3, 8080);
+
+  Span span = new Span() // browser calls web
+      .setTrace_id(-692101025335252320L)
+      .setName("get")
+      .setId(-692101025335252320L)
+      .setTimestamp(1444438900939000L)
+      .setDuration(376000L)
+      .addToAnnotations(Annotation.create(1444438900939000L, Constants.SERVER_RECV, web))
+      .addToAnnotations(Annotation.create(1444438901315000L, Constants.SERVER_SEND, web))
+      .addToBinary_annotations(BinaryAnnotation.address(Constants.CLIENT_ADDR, browser));
+
+  Span allTypes = new Span()
+      .setTrace_id(1L)
+      .setName("all \"types\"\t é😀\u0001")
+      .setId(2L)
+      .setParent_id(-3L)
+      .setDebug(false)
+      .addToAnnotations(Annotation.create(2L, "b", null))
+      .addToAnnotations(Annotation.create(1L, "a\n", web))
+      .addToBinary_annotations(BinaryAnnotation.create("bool", new byte[] {1}, AnnotationType.BOOL, null))
+      .addToBinary_annotations(BinaryAnnotation.create("bytes", new byte[] {1, 2, 3, 4}, AnnotationType.BYTES, web))
+      .addToBinary_annotations(BinaryAnnotation.create("i16", ByteBuffer.allocate(2).putShort((short) -2).array(), AnnotationType.I16, null))
+      .addToBinary_annotations(BinaryAnnotation.create("i32", ByteBuffer.allocate(4).putInt(Integer.MIN_VALUE).array(), AnnotationType.I32, null))
+      .addToBinary_annotations(BinaryAnnotation.create("i64", ByteBuffer.allocate(8).putLong(Long.MAX_VALUE).array(), AnnotationType.I64, null))
+      .addToBinary_annotations(BinaryAnnotation.create("double", ByteBuffer.allocate(8).putDouble(1.5e-10).array(), AnnotationType.DOUBLE, null))
+      .addToBinary_annotations(BinaryAnnotation.create("string", "\"quoted\" ü\\", browser));
+
+  @Test
+  public void writeSpans_json_sameBytesAsDefaultCodec() {
+    assertThat(StreamingSpanCodec.JSON.writeSpans(asList(span, span)))
+        .isEqualTo(DefaultSpanCodec.JSON.writeSpans(asList(span, span)));
+  }
+
+  @Test
+  public void writeSpans_thrift_sameBytesAsDefaultCodec() {
+    assertThat(StreamingSpanCodec.THRIFT.writeSpans(asList(span, span)))
+        .isEqualTo(DefaultSpanCodec.THRIFT.writeSpans(asList(span, span)));
+  }
+
+  @Test
+  public void writeSpans_empty() {
+    List<Span> empty = Collections.emptyList();
+    assertThat(StreamingSpanCodec.JSON.writeSpans(empty))
+        .isEqualTo(DefaultSpanCodec.JSON.writeSpans(empty));
+    assertThat(StreamingSpanCodec.THRIFT.writeSpans(empty))
+        .isEqualTo(DefaultSpanCodec.THRIFT.writeSpans(empty));
+  }
+
+  /** Annotations aren't sorted until decode, so compare decoded spans, not bytes. */
+  @Test
+  public void writeSpans_json_allTypes() {
+    byte[] encoded = StreamingSpanCodec.JSON.writeSpans(asList(span, allTypes));
+    assertThat(Codec.JSON.readSpans(encoded))
+        .containsExactly(span.toZipkin(), allTypes.toZipkin());
+  }
+
+  @Test
+  public void writeSpans_thrift_allTypes() {
+    byte[] encoded = StreamingSpanCodec.THRIFT.writeSpans(asList(span, allTypes));
+    assertThat(Codec.THRIFT.readSpans(encoded))
+        .containsExactly(span.toZipkin(), allTypes.toZipkin());
+  }
+
+  /** Zipkin's JSON decoder only accepts 64-bit trace ids, so the lower 64 bits are written. */
+  @Test
+  public void writeSpan_json_128BitTraceId() {
+    Span span = new Span().setTrace_id_high(0x463ac35c9f6413adL).setTrace_id(0x48485a3953bb6124L)
+        .setId(1L).setName("get");
+
+    assertThat(new String(StreamingSpanCodec.JSON.writeSpan(span), Util.UTF_8))
+        .startsWith("{\"traceId\":\"48485a3953bb6124\"");
+  }
+
+  @Test
+  public void writeSpan_roundTrip_128BitTraceId() {
+    Span span = new Span().setTrace_id_high(0x463ac35c9f6413adL).setTrace_id(0x48485a3953bb6124L)
+        .setId(1L).setName("get");
+    Span lower64Bits = new Span().setTrace_id(0x48485a3953bb6124L).setId(1L).setName("get");
+
+    for (StreamingSpanCodec codec : asList(StreamingSpanCodec.JSON, StreamingSpanCodec.THRIFT)) {
+      assertThat(codec.readSpan(codec.writeSpan(span))).isEqualTo(lower64Bits);
+    }
+  }
+
+  /** Readers which don't know the trace id high field skip it, keeping the lower 64 bits. */
+  @Test
+  public void writeSpan_thrift_128BitTraceId() {
+    Span span = new Span().setTrace_id_high(0x463ac35c9f6413adL).setTrace_id(0x48485a3953bb6124L)
+        .setId(1L).setName("get");
+
+    assertThat(Codec.THRIFT.readSpan(StreamingSpanCodec.THRIFT.writeSpan(span)))
+        .isEqualTo(span.toZipkin());
+  }
+
+  @Test
+  public void writeSpan_roundTrip() {
+    for (StreamingSpanCodec codec : asList(StreamingSpanCodec.JSON, StreamingSpanCodec.THRIFT)) {
+      assertThat(codec.readSpan(codec.writeSpan(span))).isEqualTo(span);
+    }
+  }
+
+  @Test
+  public void writeSpans_appendsToBuffer() {
+    Buffer buffer = new Buffer(1);
+    buffer.writeByte('x');
+    StreamingSpanCodec.JSON.writeSpans(asList(span), buffer);
+
+    byte[] expected = DefaultSpanCodec.JSON.writeSpans(asList(span));
+    assertThat(Arrays.copyOfRange(buffer.toByteArray(), 1, buffer.size())).isEqualTo(expected);
+  }
+
+  @Test
+  public void writeSpans_splitsByMaxBytes() {
+    for (StreamingSpanCodec codec : asList(StreamingSpanCodec.JSON, StreamingSpanCodec.THRIFT)) {
+      List<Span> spans = asList(span, allTypes, span);
+      int maxBytes = codec.writeSpans(asList(span, allTypes)).length;
+
+      Buffer buffer = new Buffer(16);
+      assertThat(codec.writeSpans(spans, 0, maxBytes, buffer)).isEqualTo(2);
+      assertThat(buffer.size()).isEqualTo(maxBytes);
+      assertThat(buffer.toByteArray()).isEqualTo(codec.writeSpans(asList(span, allTypes)));
+
+      buffer.reset();
+      assertThat(codec.writeSpans(spans, 2, maxBytes, buffer)).isEqualTo(3);
+      assertThat(buffer.toByteArray()).isEqualTo(codec.writeSpans(asList(span)));
+    }
+  }
+
+  @Test
+  public void writeSpans_writesOneSpanEvenIfOverMaxBytes() {
+    for (StreamingSpanCodec codec : asList(StreamingSpanCodec.JSON, StreamingSpanCodec.THRIFT)) {
+      Buffer buffer = new Buffer(16);
+      assertThat(codec.writeSpans(asList(allTypes, span), 0, 1, buffer)).isEqualTo(1);
+      assertThat(buffer.toByteArray()).isEqualTo(codec.writeSpans(asList(allTypes)));
+    }
+  }
+
+  /** Span.toString() can run while a flush uses the pooled buffer on the same thread. */
+  @Test
+  public void writeSpan_doesntUsePooledBuffer() {
+    Buffer pooled = Buffer.pooled().writeAscii("flushing");
+
+    StreamingSpanCodec.JSON.writeSpan(span);
+    StreamingSpanCodec.THRIFT.writeSpans(asList(span));
+
+    assertThat(new String(pooled.toByteArray(), Util.UTF_8)).isEqualTo("flushing");
+  }
+
+  @Test
+  public void pooledBuffer_doesntRetainLargeArrays() {
+    Buffer pooled = Buffer.pooled();
+    pooled.write(new byte[Buffer.MAX_POOLED_CAPACITY + 1]);
+
+    assertThat(Buffer.pooled().array).hasSize(Buffer.INITIAL_CAPACITY);
+  }
+}
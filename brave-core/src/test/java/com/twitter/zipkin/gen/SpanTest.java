@@ -1,8 +1,20 @@
 package com.twitter.zipkin.gen;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import org.junit.Test;
 import zipkin.Constants;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
 
 public class SpanTest {
@@ -29,4 +41,103 @@ public class SpanTest {
     Span span = new Span();
     span.startTick = System.nanoTime();
   }
+
+  Endpoint endpoint = Endpoint.create("foobar", 1 << 24 | 2 << 16 | 3 << 8 | 4, 9999);
+
+  @Test
+  public void addAnnotation_sameAsModelObjects() {
+    Span compact = new Span().setTrace_id(1L).setId(1L).setName("get");
+    Span model = new Span().setTrace_id(1L).setId(1L).setName("get");
+    for (int i = 0; i < 10; i++) { // past initial capacity
+      compact.addAnnotation(i, "annotation" + i, endpoint);
+      model.addToAnnotations(Annotation.create(i, "annotation" + i, endpoint));
+      compact.addBinaryAnnotation("key" + i, "value" + i, endpoint);
+      model.addToBinary_annotations(BinaryAnnotation.create("key" + i, "value" + i, endpoint));
+    }
+
+    assertThat(compact).isEqualTo(model);
+    assertThat(compact.hashCode()).isEqualTo(model.hashCode());
+    assertThat(compact.getAnnotations()).hasSize(10);
+    assertThat(compact.getBinary_annotations().get(9).value).isEqualTo("value9".getBytes());
+  }
+
+  @Test
+  public void addBinaryAnnotation_defersEncoding() {
+    Span span = new Span().addBinaryAnnotation("key", "välue", null);
+
+    assertThat(span.binaryAnnotationStringValue(0)).isEqualTo("välue");
+    assertThat(span.binaryAnnotationValue(0)).isEqualTo("välue".getBytes(com.github.kristofa.brave.internal.Util.UTF_8));
+  }
+
+  @Test
+  public void getAnnotations_rebuiltAfterAdd() {
+    Span span = new Span().addAnnotation(1L, "a", null);
+    assertThat(span.getAnnotations()).containsExactly(Annotation.create(1L, "a", null));
+
+    span.addAnnotation(2L, "b", null);
+    assertThat(span.getAnnotations())
+        .containsExactly(Annotation.create(1L, "a", null), Annotation.create(2L, "b", null));
+  }
+
+  @Test
+  public void setAnnotations_replaces() {
+    Span span = new Span().addAnnotation(1L, "a", null).addBinaryAnnotation("k", "v", null);
+
+    span.setAnnotations(Arrays.asList(Annotation.create(2L, "b", null)));
+    span.setBinaryAnnotations(Collections.<BinaryAnnotation>emptyList());
+
+    assertThat(span.getAnnotations()).containsExactly(Annotation.create(2L, "b", null));
+    assertThat(span.getBinary_annotations()).isEmpty();
+  }
+
+  @Test
+  public void addAnnotation_concurrently() throws InterruptedException {
+    final Span span = new Span().setTrace_id(1L).setId(1L).setName("get");
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < 8; t++) {
+      final int thread = t;
+      threads.add(new Thread() {
+        @Override public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          for (int i = 0; i < 1000; i++) {
+            span.addAnnotation(i, thread + "-" + i, endpoint);
+            span.addBinaryAnnotation(thread + "-" + i, "value", endpoint);
+          }
+        }
+      });
+    }
+    for (Thread thread : threads) thread.start();
+    start.countDown();
+    for (Thread thread : threads) thread.join();
+
+    Set<String> values = new HashSet<String>();
+    for (Annotation a : span.getAnnotations()) values.add(a.value);
+    Set<String> keys = new HashSet<String>();
+    for (BinaryAnnotation b : span.getBinary_annotations()) keys.add(b.key);
+
+    assertThat(values).hasSize(8000);
+    assertThat(keys).isEqualTo(values);
+  }
+
+  @Test
+  public void serializable() throws Exception {
+    Span span = new Span().setTrace_id(1L).setId(1L).setName("get");
+    for (int i = 0; i < 10; i++) { // past initial capacity
+      span.addAnnotation(i, "annotation" + i, endpoint);
+      span.addBinaryAnnotation("key" + i, "value" + i, endpoint);
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(span);
+    out.close();
+    Object read = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+    assertThat(read).isEqualTo(span);
+  }
 }
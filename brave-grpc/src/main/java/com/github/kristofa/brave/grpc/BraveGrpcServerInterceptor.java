@@ -1,6 +1,8 @@
 package com.github.kristofa.brave.grpc;
 
 import static com.github.kristofa.brave.IdConversion.convertToLong;
+import static com.github.kristofa.brave.IdConversion.convertToTraceId;
+import static com.github.kristofa.brave.IdConversion.convertToTraceIdHigh;
 import static com.github.kristofa.brave.grpc.GrpcKeys.GRPC_STATUS_CODE;
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -125,7 +127,8 @@ public final class BraveGrpcServerInterceptor implements ServerInterceptor {
 
     static SpanId getSpanId(String traceId, String spanId, String parentSpanId) {
         return SpanId.builder()
-            .traceId(convertToLong(traceId))
+            .traceIdHigh(convertToTraceIdHigh(traceId))
+            .traceId(convertToTraceId(traceId))
             .spanId(convertToLong(spanId))
             .parentId(parentSpanId == null ? null : convertToLong(parentSpanId)).build();
     }
@@ -0,0 +1,190 @@
+package com.github.kristofa.brave.http;
+
+import com.github.kristofa.brave.Sampler;
+import com.github.kristofa.brave.ServerRequestAdapter;
+import com.github.kristofa.brave.ServerRequestSampler;
+import com.github.kristofa.brave.internal.Nullable;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.github.kristofa.brave.internal.Util.checkNotNull;
+
+/**
+ * Chooses a sampler for incoming http requests by span name, http method and path, so that for
+ * example health checks don't consume the trace budget of rare endpoints. Requests that match no
+ * rule use the {@link com.github.kristofa.brave.Brave.Builder#traceSampler(Sampler) trace sampler}.
+ *
+ * <pre>
+ * HttpRuleSampler rules = HttpRuleSampler.builder()
+ *     .addPath(null, "/health", Sampler.NEVER_SAMPLE)
+ *     .addPath("POST", "/api/checkout", Sampler.ALWAYS_SAMPLE)
+ *     .addPath(null, "/api", RateLimitingSampler.create(100))
+ *     .build();
+ *
+ * Brave brave = new Brave.Builder("serviceName").serverRequestSampler(rules).build();
+ * </pre>
+ *
+ * <p>Span name rules match exactly, and take precedence over path rules. Among path rules, the
+ * longest matching prefix wins. At the same length, a rule for the request's method wins over one
+ * for any method. Paths are compared undecoded, as returned by {@link URI#getRawPath()}.
+ *
+ * <p>Path rules are compiled into a prefix trie per method, so choosing a sampler walks the path
+ * once, without allocating, regardless of how many rules there are.
+ */
+public final class HttpRuleSampler implements ServerRequestSampler {
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        final Map<String, Sampler> spanNames = new HashMap<String, Sampler>();
+        final TrieBuilder anyMethod = new TrieBuilder();
+        final Map<String, TrieBuilder> byMethod = new HashMap<String, TrieBuilder>();
+
+        Builder() {
+        }
+
+        /**
+         * Samples spans named exactly {@code spanName} with the given sampler. These rules take
+         * precedence over path rules.
+         */
+        public Builder addSpanName(String spanName, Sampler sampler) {
+            spanNames.put(checkNotNull(spanName, "spanName"), checkNotNull(sampler, "sampler"));
+            return this;
+        }
+
+        /**
+         * Samples requests whose path starts with {@code pathPrefix} with the given sampler.
+         *
+         * @param method http method such as "GET", or null to match any method.
+         * @param pathPrefix undecoded path prefix, such as "/api". "" matches every path.
+         */
+        public Builder addPath(@Nullable String method, String pathPrefix, Sampler sampler) {
+            checkNotNull(pathPrefix, "pathPrefix");
+            checkNotNull(sampler, "sampler");
+            TrieBuilder trie = anyMethod;
+            if (method != null) {
+                trie = byMethod.get(method);
+                if (trie == null) byMethod.put(method, trie = new TrieBuilder());
+            }
+            trie.put(pathPrefix, sampler);
+            return this;
+        }
+
+        public HttpRuleSampler build() {
+            return new HttpRuleSampler(this);
+        }
+    }
+
+    private final Map<String, Sampler> spanNames;
+    @Nullable
+    private final Node anyMethod;
+    private final Map<String, Node> byMethod;
+
+    HttpRuleSampler(Builder builder) {
+        spanNames = new HashMap<String, Sampler>(builder.spanNames);
+        anyMethod = builder.anyMethod.compile(0);
+        byMethod = new HashMap<String, Node>();
+        for (Map.Entry<String, TrieBuilder> entry : builder.byMethod.entrySet()) {
+            byMethod.put(entry.getKey(), entry.getValue().compile(0));
+        }
+    }
+
+    @Override
+    @Nullable
+    public Sampler sampler(String spanName, ServerRequestAdapter adapter) {
+        if (!spanNames.isEmpty()) {
+            Sampler sampler = spanNames.get(spanName);
+            if (sampler != null) return sampler;
+        }
+        if (!(adapter instanceof HttpServerRequestAdapter)) return null;
+        return sampler(((HttpServerRequestAdapter) adapter).getServerRequest());
+    }
+
+    @Nullable
+    Sampler sampler(HttpRequest request) {
+        URI uri = request.getUri();
+        String path = uri != null ? uri.getRawPath() : null;
+        if (path == null) return null;
+
+        Node anyMatch = longestPrefix(anyMethod, path);
+        String method = request.getHttpMethod();
+        Node methodMatch = method != null && !byMethod.isEmpty()
+            ? longestPrefix(byMethod.get(method), path) : null;
+
+        if (methodMatch != null && (anyMatch == null || methodMatch.depth >= anyMatch.depth)) {
+            return methodMatch.sampler;
+        }
+        return anyMatch != null ? anyMatch.sampler : null;
+    }
+
+    /** Returns the deepest node along the path that has a sampler, or null if there is none. */
+    @Nullable
+    static Node longestPrefix(@Nullable Node node, String path) {
+        if (node == null) return null;
+        Node match = node.sampler != null ? node : null;
+        for (int i = 0, length = path.length(); i < length; i++) {
+            int child = Arrays.binarySearch(node.chars, path.charAt(i));
+            if (child < 0) break;
+            node = node.children[child];
+            if (node.sampler != null) match = node;
+        }
+        return match;
+    }
+
+    /** An immutable trie node, whose children are sorted by character for binary search. */
+    static final class Node {
+        final char[] chars;
+        final Node[] children;
+        @Nullable
+        final Sampler sampler;
+        /** Length of the prefix this node represents. */
+        final int depth;
+
+        Node(char[] chars, Node[] children, @Nullable Sampler sampler, int depth) {
+            this.chars = chars;
+            this.children = children;
+            this.sampler = sampler;
+            this.depth = depth;
+        }
+    }
+
+    static final class TrieBuilder {
+        final TreeMap<Character, TrieBuilder> children = new TreeMap<Character, TrieBuilder>();
+        Sampler sampler;
+
+        void put(String prefix, Sampler sampler) {
+            TrieBuilder node = this;
+            for (int i = 0; i < prefix.length(); i++) {
+                Character c = prefix.charAt(i);
+                TrieBuilder child = node.children.get(c);
+                if (child == null) node.children.put(c, child = new TrieBuilder());
+                node = child;
+            }
+            node.sampler = sampler;
+        }
+
+        /** Returns null when there are no rules under this node. */
+        @Nullable
+        Node compile(int depth) {
+            if (sampler == null && children.isEmpty()) return null;
+            char[] chars = new char[children.size()];
+            Node[] nodes = new Node[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, TrieBuilder> entry : children.entrySet()) {
+                chars[i] = entry.getKey();
+                nodes[i++] = entry.getValue().compile(depth + 1);
+            }
+            return new Node(chars, nodes, sampler, depth);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HttpRuleSampler(spanNames=" + spanNames.keySet() + ", methods=" + byMethod.keySet() + ")";
+    }
+}
@@ -9,6 +9,8 @@ import java.util.Collections;
 import zipkin.TraceKeys;
 
 import static com.github.kristofa.brave.IdConversion.convertToLong;
+import static com.github.kristofa.brave.IdConversion.convertToTraceId;
+import static com.github.kristofa.brave.IdConversion.convertToTraceIdHigh;
 
 public class HttpServerRequestAdapter implements ServerRequestAdapter {
 
@@ -40,6 +42,13 @@ public class HttpServerRequestAdapter implements ServerRequestAdapter {
         return TraceData.builder().build();
     }
 
+    /**
+     * Returns the request this adapts, for example to sample by {@link HttpRuleSampler path}.
+     */
+    public HttpServerRequest getServerRequest() {
+        return serverRequest;
+    }
+
     @Override
     public String getSpanName() {
         return spanNameProvider.spanName(serverRequest);
@@ -54,7 +63,8 @@ public class HttpServerRequestAdapter implements ServerRequestAdapter {
 
     private SpanId getSpanId(String traceId, String spanId, String parentSpanId) {
         return SpanId.builder()
-            .traceId(convertToLong(traceId))
+            .traceIdHigh(convertToTraceIdHigh(traceId))
+            .traceId(convertToTraceId(traceId))
             .spanId(convertToLong(spanId))
             .parentId(parentSpanId == null ? null : convertToLong(parentSpanId)).build();
    }
@@ -70,6 +70,16 @@ public class HttpClientRequestAdapterTest {
         verifyNoMoreInteractions(request, spanNameProvider);
     }
 
+    @Test
+    public void addSpanIdToRequest_128BitTraceId() {
+        SpanId id = SpanId.builder().traceIdHigh(1L).traceId(TRACE_ID).spanId(SPAN_ID).parentId(null).build();
+        clientRequestAdapter.addSpanIdToRequest(id);
+        verify(request).addHeader(BraveHttpHeaders.Sampled.getName(), "1");
+        verify(request).addHeader(BraveHttpHeaders.TraceId.getName(), "00000000000000010000000000000001");
+        verify(request).addHeader(BraveHttpHeaders.SpanId.getName(), String.valueOf(SPAN_ID));
+        verifyNoMoreInteractions(request, spanNameProvider);
+    }
+
     @Test
     public void requestAnnotations() {
         when(request.getUri()).thenReturn(URI.create(TEST_URI));
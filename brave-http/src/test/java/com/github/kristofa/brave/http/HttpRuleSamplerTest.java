@@ -0,0 +1,107 @@
+package com.github.kristofa.brave.http;
+
+import com.github.kristofa.brave.Sampler;
+import com.github.kristofa.brave.ServerRequestAdapter;
+import java.net.URI;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class HttpRuleSamplerTest {
+
+    private static final Sampler HEALTH = Sampler.NEVER_SAMPLE;
+    private static final Sampler API = Sampler.create(0.1f);
+    private static final Sampler API_USERS = Sampler.create(0.5f);
+    private static final Sampler POST_API = Sampler.ALWAYS_SAMPLE;
+    private static final Sampler SPAN_NAME = Sampler.create(0.2f);
+
+    private HttpServerRequest serverRequest;
+    private SpanNameProvider spanNameProvider;
+    private HttpServerRequestAdapter adapter;
+    private HttpRuleSampler sampler;
+
+    @Before
+    public void setup() {
+        serverRequest = mock(HttpServerRequest.class);
+        spanNameProvider = mock(SpanNameProvider.class);
+        adapter = new HttpServerRequestAdapter(serverRequest, spanNameProvider);
+        sampler = HttpRuleSampler.builder()
+            .addPath(null, "/health", HEALTH)
+            .addPath(null, "/api", API)
+            .addPath(null, "/api/users", API_USERS)
+            .addPath("POST", "/api", POST_API)
+            .addSpanName("slow-report", SPAN_NAME)
+            .build();
+    }
+
+    @Test
+    public void noMatch() {
+        request("GET", "/other");
+        assertNull(sampler.sampler("get", adapter));
+    }
+
+    @Test
+    public void prefixMatch() {
+        request("GET", "/health/ready");
+        assertSame(HEALTH, sampler.sampler("get", adapter));
+    }
+
+    @Test
+    public void longestPrefixWins() {
+        request("GET", "/api/users/1");
+        assertSame(API_USERS, sampler.sampler("get", adapter));
+
+        request("GET", "/api/orders");
+        assertSame(API, sampler.sampler("get", adapter));
+    }
+
+    @Test
+    public void methodWinsAtSameLength() {
+        request("POST", "/api/orders");
+        assertSame(POST_API, sampler.sampler("post", adapter));
+    }
+
+    @Test
+    public void longerPrefixWinsOverMethod() {
+        request("POST", "/api/users");
+        assertSame(API_USERS, sampler.sampler("post", adapter));
+    }
+
+    @Test
+    public void spanNameWinsOverPath() {
+        request("GET", "/api/users");
+        assertSame(SPAN_NAME, sampler.sampler("slow-report", adapter));
+    }
+
+    @Test
+    public void emptyPrefixMatchesEverything() {
+        Sampler all = Sampler.create(0.3f);
+        sampler = HttpRuleSampler.builder().addPath(null, "", all).build();
+
+        request("GET", "/");
+        assertSame(all, sampler.sampler("get", adapter));
+    }
+
+    @Test
+    public void nonHttpAdapter_onlySpanNames() {
+        ServerRequestAdapter other = mock(ServerRequestAdapter.class);
+
+        assertSame(SPAN_NAME, sampler.sampler("slow-report", other));
+        assertNull(sampler.sampler("get", other));
+    }
+
+    @Test
+    public void opaqueUri() {
+        when(serverRequest.getUri()).thenReturn(URI.create("mailto:a@b.com"));
+        assertNull(sampler.sampler("get", adapter));
+    }
+
+    private void request(String method, String path) {
+        when(serverRequest.getHttpMethod()).thenReturn(method);
+        when(serverRequest.getUri()).thenReturn(URI.create("http://localhost:8080" + path + "?q=1"));
+    }
+}
@@ -134,6 +134,19 @@ public class HttpServerRequestAdapterTest {
         assertEquals(IdConversion.convertToLong(PARENT_SPAN_ID), spanId.parentId);
     }
 
+    @Test
+    public void getTraceData128BitTraceId() {
+        when(serverRequest.getHttpHeaderValue(BraveHttpHeaders.Sampled.getName())).thenReturn("1");
+        when(serverRequest.getHttpHeaderValue(BraveHttpHeaders.TraceId.getName())).thenReturn("463ac35c9f6413ad" + TRACE_ID);
+        when(serverRequest.getHttpHeaderValue(BraveHttpHeaders.SpanId.getName())).thenReturn(SPAN_ID);
+        TraceData traceData = adapter.getTraceData();
+        SpanId spanId = traceData.getSpanId();
+        assertNotNull(spanId);
+        assertEquals(0x463ac35c9f6413adL, spanId.traceIdHigh);
+        assertEquals(IdConversion.convertToLong(TRACE_ID), spanId.traceId);
+        assertEquals(IdConversion.convertToLong(SPAN_ID), spanId.spanId);
+    }
+
     @Test
     public void fullUriAnnotation() throws Exception {
         when(serverRequest.getUri()).thenReturn(new URI("http://youruri.com/a/b?myquery=you"));
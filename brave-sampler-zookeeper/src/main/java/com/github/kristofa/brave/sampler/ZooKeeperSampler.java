@@ -1,8 +1,22 @@
 package com.github.kristofa.brave.sampler;
 
 import com.github.kristofa.brave.Sampler;
+import com.github.kristofa.brave.ServerRequestAdapter;
+import com.github.kristofa.brave.ServerRequestSampler;
+import com.github.kristofa.brave.internal.Nullable;
 import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
@@ -10,76 +24,160 @@ import java.util.logging.Logger;
 import org.apache.curator.RetryPolicy;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.TreeCache;
+import org.apache.curator.framework.recipes.cache.TreeCacheEvent;
+import org.apache.curator.framework.recipes.cache.TreeCacheListener;
 import org.apache.curator.framework.state.ConnectionState;
 import org.apache.curator.framework.state.ConnectionStateListener;
 import org.apache.curator.retry.ExponentialBackoffRetry;
-import org.apache.zookeeper.WatchedEvent;
-import org.apache.zookeeper.Watcher;
-import org.apache.zookeeper.data.Stat;
 
+import static com.github.kristofa.brave.internal.Util.UTF_8;
 import static com.github.kristofa.brave.internal.Util.checkNotBlank;
+import static com.github.kristofa.brave.internal.Util.checkNotNull;
 import static java.lang.String.format;
 
-public final class ZooKeeperSampler extends Sampler implements Watcher, Closeable {
+/**
+ * Samples according to rates held in ZooKeeper, which can be changed at runtime.
+ *
+ * <p>The data of {@code sampleRateZNode} is the sample rate, such as {@code 0.2}. Each child holds
+ * the rate for the span named like the child, URL-encoded as span names can contain '/'. For
+ * example, {@code /brave/samplerate/get%20%2Fhealth} with data {@code 0.0} turns off tracing of
+ * health checks. Span name rates are applied when this is also configured as the {@link
+ * com.github.kristofa.brave.Brave.Builder#serverRequestSampler(ServerRequestSampler) server
+ * request sampler}.
+ *
+ * <p>Rates are read from a local {@link TreeCache} of the subtree, so sampling never waits on
+ * ZooKeeper. Samplers are only rebuilt for rates that changed.
+ *
+ * <p>When a cache file is supplied, the last known rates are saved to it, and read on startup. The
+ * sampler is then usable immediately, even when ZooKeeper is unreachable.
+ */
+public final class ZooKeeperSampler extends Sampler implements ServerRequestSampler, Closeable {
 
   private final static Logger LOGGER = Logger.getLogger(ZooKeeperSampler.class.getName());
   private final static float DEFAULT_SAMPLE_RATE = 0.0f;
+  static final String RATE_KEY = "rate";
+  static final String SPAN_NAME_RATE_PREFIX = "rate.";
 
   private final CuratorFramework zkCurator;
   private final CountDownLatch connectionEstablished = new CountDownLatch(1);
+  private final CountDownLatch cacheInitialized = new CountDownLatch(1);
   private final String sampleRateZNode;
+  private final TreeCache treeCache;
+  @Nullable
+  private final File cacheFile;
 
-  private volatile Sampler delegate;
+  private volatile Rules rules;
 
   @Override
   public boolean isSampled(long traceId) {
-    return delegate.isSampled(traceId);
+    return rules.sampler.isSampled(traceId);
+  }
+
+  /** Returns the sampler for the span name, or null to use the sample rate. */
+  @Override
+  @Nullable
+  public Sampler sampler(String spanName, ServerRequestAdapter adapter) {
+    return rules.spanNameSamplers.get(spanName);
   }
 
   /**
-   * Creates a new instance. If the initial connection with ZooKeeper can't be established within 2
-   * seconds an unchecked exception will be thrown as this will probably indicate wrong
-   * configuration.
+   * Creates a new instance, which returns once rates are read from ZooKeeper. If the initial
+   * connection with ZooKeeper can't be established and rates read within 2 seconds an unchecked
+   * exception will be thrown as this will probably indicate wrong configuration.
    *
    * @param connectionString ZooKeeper connection string. Should not be <code>null</code> or empty.
    * @param sampleRateZNode The znode that contains sample rate. Should not be <code>null</code> or
    * empty.
-   * @throws IOException In case we can't connect with ZooKeeper.
    * @throws InterruptedException In case we can't connect with ZooKeeper.
    */
   public ZooKeeperSampler(final String connectionString, final String sampleRateZNode)
       throws InterruptedException {
+    this(connectionString, sampleRateZNode, null);
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+    if (connectionEstablished.await(2, TimeUnit.SECONDS) == false) {
+      close();
+      throw new IllegalStateException("Connection with ZooKeeper failed.");
+    }
+    if (awaitInitialized(deadline - System.nanoTime(), TimeUnit.NANOSECONDS) == false) {
+      close();
+      throw new IllegalStateException("Couldn't read sample rates from " + sampleRateZNode);
+    }
+  }
+
+  /**
+   * Creates a new instance, which doesn't wait for ZooKeeper. Until rates are read from ZooKeeper,
+   * those last saved to the cache file are used, or if there are none, nothing is sampled.
+   *
+   * @param connectionString ZooKeeper connection string. Should not be <code>null</code> or empty.
+   * @param sampleRateZNode The znode that contains sample rate. Should not be <code>null</code> or
+   * empty.
+   * @param cacheFile Holds the last known rates. Can be <code>null</code>, in which case rates are
+   * not saved.
+   */
+  public ZooKeeperSampler(final String connectionString, final String sampleRateZNode,
+      @Nullable final File cacheFile) {
     checkNotBlank(connectionString, "Null or blank connectionString");
     this.sampleRateZNode = checkNotBlank(sampleRateZNode, "Null or blank sampleRateZNode");
+    this.cacheFile = cacheFile;
+
+    Rules cached = cacheFile != null ? readCacheFile(cacheFile) : null;
+    rules = cached != null
+        ? cached : Rules.compile(DEFAULT_SAMPLE_RATE, Collections.<String, Float>emptyMap(), null);
 
     final RetryPolicy retryPolicy = new ExponentialBackoffRetry(1000, 3);
     zkCurator = CuratorFrameworkFactory.newClient(connectionString, retryPolicy);
-    final ConnectionStateListener initialConnectionState = new InitialConnectionStateListener();
-    zkCurator.getConnectionStateListenable().addListener(initialConnectionState);
+    zkCurator.getConnectionStateListenable().addListener(new InitialConnectionStateListener());
+    treeCache = TreeCache.newBuilder(zkCurator, sampleRateZNode).setMaxDepth(1).build();
+    treeCache.getListenable().addListener(new TreeCacheListener() {
+      @Override
+      public void childEvent(CuratorFramework client, TreeCacheEvent event) {
+        switch (event.getType()) {
+          case NODE_ADDED:
+          case NODE_UPDATED:
+          case NODE_REMOVED:
+            update();
+            break;
+          case INITIALIZED:
+            update();
+            cacheInitialized.countDown();
+            break;
+          default:
+            // the cache keeps the last known state while disconnected
+        }
+      }
+    });
     zkCurator.start();
-
-    if (connectionEstablished.await(2, TimeUnit.SECONDS) == false) {
+    try {
+      treeCache.start();
+    } catch (Exception e) {
       zkCurator.close();
-      throw new IllegalStateException("Connection with ZooKeeper failed.");
+      throw new IllegalStateException("Couldn't watch " + sampleRateZNode, e);
     }
-    zkCurator.getConnectionStateListenable().removeListener(initialConnectionState);
-    delegate = Sampler.create(getSampleRate());
   }
 
-  @Override
-  public void process(final WatchedEvent event) {
-
-    if (event.getType().equals(Event.EventType.NodeDataChanged) || event.getType().equals(Event.EventType.NodeCreated)
-        || event.getType().equals(Event.EventType.NodeDeleted)) {
+  /** Recompiles rates from the tree cache, and saves them if they changed. */
+  synchronized void update() {
+    ChildData data = treeCache.getCurrentData(sampleRateZNode);
+    float rate = data != null ? parseRate(data) : DEFAULT_SAMPLE_RATE;
+    if (Float.isNaN(rate)) rate = rules.rate; // keep the last valid rate
 
-      final String path = event.getPath();
-
-      if (sampleRateZNode.equals(path)) {
-        float newRate = getSampleRate();
-        delegate = Sampler.create(newRate);
-        LOGGER.info(format("SampleRate znode [%s] changed. New value: %s", sampleRateZNode, newRate));
+    Map<String, Float> spanNameRates = new LinkedHashMap<String, Float>();
+    Map<String, ChildData> children = treeCache.getCurrentChildren(sampleRateZNode);
+    if (children != null) {
+      for (Map.Entry<String, ChildData> child : children.entrySet()) {
+        float spanNameRate = parseRate(child.getValue());
+        if (!Float.isNaN(spanNameRate)) spanNameRates.put(decode(child.getKey()), spanNameRate);
       }
     }
+
+    Rules previous = rules;
+    if (previous.rate == rate && previous.spanNameRates.equals(spanNameRates)) return;
+    rules = Rules.compile(rate, spanNameRates, previous);
+    LOGGER.info(format("SampleRate znode [%s] changed. New value: %s, span names: %s",
+        sampleRateZNode, rate, spanNameRates));
+    if (cacheFile != null) writeCacheFile(cacheFile, rules);
   }
 
   /**
@@ -87,9 +185,15 @@ public final class ZooKeeperSampler extends Sampler implements Watcher, Closeabl
    */
   @Override
   public void close() {
+    treeCache.close();
     zkCurator.close();
   }
 
+  /** Waits until the rates held in ZooKeeper when this sampler started are in use. */
+  boolean awaitInitialized(long timeout, TimeUnit unit) throws InterruptedException {
+    return cacheInitialized.await(timeout, unit);
+  }
+
   /**
    * Gets ZooKeeper Curator instance.
    *
@@ -99,24 +203,123 @@ public final class ZooKeeperSampler extends Sampler implements Watcher, Closeabl
     return zkCurator;
   }
 
-  private float getSampleRate() {
-    final byte[] data = getData(sampleRateZNode);
-    if (data == null) {
-      return DEFAULT_SAMPLE_RATE;
+  /** The sample rate currently in use. */
+  float sampleRate() {
+    return rules.rate;
+  }
+
+  /** Returns NaN if the znode doesn't hold a valid rate. */
+  static float parseRate(ChildData data) {
+    byte[] bytes = data.getData();
+    if (bytes == null || bytes.length == 0) return Float.NaN;
+    String value = new String(bytes, UTF_8).trim();
+    try {
+      float rate = Float.parseFloat(value);
+      Sampler.create(rate); // validates
+      return rate;
+    } catch (RuntimeException e) {
+      LOGGER.warning(format("Ignoring invalid sample rate [%s] in znode [%s]", value, data.getPath()));
+      return Float.NaN;
+    }
+  }
+
+  static String decode(String childName) {
+    try {
+      return URLDecoder.decode(childName, "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  @Nullable
+  static Rules readCacheFile(File cacheFile) {
+    if (!cacheFile.exists()) return null;
+    Properties properties = new Properties();
+    InputStream in = null;
+    try {
+      in = new FileInputStream(cacheFile);
+      properties.load(in);
+      float rate = Float.parseFloat(properties.getProperty(RATE_KEY));
+      Map<String, Float> spanNameRates = new LinkedHashMap<String, Float>();
+      for (String key : properties.stringPropertyNames()) {
+        if (!key.startsWith(SPAN_NAME_RATE_PREFIX)) continue;
+        spanNameRates.put(key.substring(SPAN_NAME_RATE_PREFIX.length()),
+            Float.parseFloat(properties.getProperty(key)));
+      }
+      return Rules.compile(rate, spanNameRates, null);
+    } catch (IOException | RuntimeException e) {
+      LOGGER.log(Level.WARNING, "Ignoring unreadable sample rate cache " + cacheFile, e);
+      return null;
+    } finally {
+      closeQuietly(in);
+    }
+  }
+
+  /** Writes to a temporary file first, so that a crash can't leave a partially written cache. */
+  static void writeCacheFile(File cacheFile, Rules rules) {
+    Properties properties = new Properties();
+    properties.setProperty(RATE_KEY, String.valueOf(rules.rate));
+    for (Map.Entry<String, Float> entry : rules.spanNameRates.entrySet()) {
+      properties.setProperty(SPAN_NAME_RATE_PREFIX + entry.getKey(), String.valueOf(entry.getValue()));
+    }
+    File temp = new File(cacheFile.getPath() + ".tmp");
+    OutputStream out = null;
+    try {
+      out = new FileOutputStream(temp);
+      properties.store(out, "Last known sample rates, written by ZooKeeperSampler");
+      out.close();
+      out = null;
+      if (!temp.renameTo(cacheFile)) {
+        // rename doesn't replace an existing file on all platforms
+        if (!cacheFile.delete() || !temp.renameTo(cacheFile)) {
+          throw new IOException("Couldn't rename " + temp + " to " + cacheFile);
+        }
+      }
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Couldn't save sample rates to " + cacheFile, e);
+    } finally {
+      closeQuietly(out);
     }
-    return Float.valueOf(new String(data));
   }
 
-  private byte[] getData(final String znode) {
+  static void closeQuietly(@Nullable Closeable closeable) {
+    if (closeable == null) return;
     try {
-      final Stat stat = zkCurator.checkExists().usingWatcher(this).forPath(znode);
-      if (stat != null) {
-        return zkCurator.getData().usingWatcher(this).forPath(znode);
+      closeable.close();
+    } catch (IOException ignored) {
+    }
+  }
+
+  /** Rates and the samplers compiled from them. Immutable, so read without locking. */
+  static final class Rules {
+    final float rate;
+    final Map<String, Float> spanNameRates;
+    final Sampler sampler;
+    final Map<String, Sampler> spanNameSamplers;
+
+    Rules(float rate, Map<String, Float> spanNameRates, Sampler sampler,
+        Map<String, Sampler> spanNameSamplers) {
+      this.rate = rate;
+      this.spanNameRates = spanNameRates;
+      this.sampler = sampler;
+      this.spanNameSamplers = spanNameSamplers;
+    }
+
+    /** Reuses samplers from {@code previous} whose rate didn't change. */
+    static Rules compile(float rate, Map<String, Float> spanNameRates, @Nullable Rules previous) {
+      Sampler sampler = previous != null && previous.rate == rate
+          ? previous.sampler : Sampler.create(rate);
+      Map<String, Sampler> spanNameSamplers = new LinkedHashMap<String, Sampler>();
+      for (Map.Entry<String, Float> entry : spanNameRates.entrySet()) {
+        String spanName = entry.getKey();
+        Float spanNameRate = checkNotNull(entry.getValue(), spanName);
+        Sampler spanNameSampler = previous != null && spanNameRate.equals(previous.spanNameRates.get(spanName))
+            ? previous.spanNameSamplers.get(spanName) : Sampler.create(spanNameRate);
+        spanNameSamplers.put(spanName, spanNameSampler);
       }
-    } catch (final Exception e) {
-      LOGGER.log(Level.WARNING, "Zookeeper exception.", e);
+      return new Rules(rate, Collections.unmodifiableMap(new LinkedHashMap<String, Float>(spanNameRates)),
+          sampler, Collections.unmodifiableMap(spanNameSamplers));
     }
-    return null;
   }
 
   private class InitialConnectionStateListener implements ConnectionStateListener {
@@ -129,5 +332,4 @@ public final class ZooKeeperSampler extends Sampler implements Watcher, Closeabl
       }
     }
   }
-
 }
@@ -1,12 +1,22 @@
 package com.github.kristofa.brave.sampler;
 
+import com.github.kristofa.brave.Sampler;
+import java.io.File;
 import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.file.Files;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.LongStream;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryOneTime;
 import org.apache.curator.test.TestingServer;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.data.Percentage.withPercentage;
@@ -20,21 +30,41 @@ public class ZooKeeperSamplerTest {
 
   private final static String SAMPLE_RATE_NODE = "/zipkin/sampleRate";
 
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
   private TestingServer zooKeeperTestServer;
+  private CuratorFramework client;
   private ZooKeeperSampler sampler;
 
   @Before
   public void setup() throws Exception {
     zooKeeperTestServer = new TestingServer();
+    client = CuratorFrameworkFactory.newClient(zooKeeperTestServer.getConnectString(),
+        new RetryOneTime(100));
+    client.start();
     sampler = new ZooKeeperSampler(zooKeeperTestServer.getConnectString(), SAMPLE_RATE_NODE);
   }
 
   @After
   public void tearDown() throws IOException {
     sampler.close();
+    client.close();
     zooKeeperTestServer.close();
   }
 
+  @Test
+  public void readsRatesBeforeReturning() throws Exception {
+    createRate(SAMPLE_RATE_NODE, 1.0f);
+    createRate(spanNameNode("get /health"), 0.0f);
+    sampler.close();
+
+    sampler = new ZooKeeperSampler(zooKeeperTestServer.getConnectString(), SAMPLE_RATE_NODE);
+
+    assertThat(sampler.sampleRate()).isEqualTo(1.0f);
+    assertThat(sampler.sampler("get /health", null)).isSameAs(Sampler.NEVER_SAMPLE);
+  }
+
   @Test
   public void dropsWhenZNodeIsAbsent() throws Exception {
     assertThat(LongStream.of(traceIds).filter(sampler::isSampled).toArray())
@@ -68,9 +98,105 @@ public class ZooKeeperSamplerTest {
         .containsExactly(traceIds);
   }
 
+  @Test
+  public void updatesRate() throws Exception {
+    setRate(0.0f);
+    client.setData().forPath(SAMPLE_RATE_NODE, "1.0".getBytes());
+    awaitRate(1.0f);
+
+    assertThat(LongStream.of(traceIds).filter(sampler::isSampled).toArray())
+        .containsExactly(traceIds);
+  }
+
+  @Test
+  public void ignoresInvalidRate() throws Exception {
+    setRate(1.0f);
+    client.setData().forPath(SAMPLE_RATE_NODE, "1.5".getBytes());
+    Thread.sleep(500);
+
+    assertThat(sampler.sampleRate()).isEqualTo(1.0f);
+  }
+
+  @Test
+  public void spanNameRates() throws Exception {
+    createRate(SAMPLE_RATE_NODE, 0.1f);
+    createRate(spanNameNode("get /health"), 0.0f);
+    createRate(spanNameNode("post /checkout"), 1.0f);
+    restartSampler();
+
+    assertThat(sampler.sampler("get /health", null)).isSameAs(Sampler.NEVER_SAMPLE);
+    assertThat(sampler.sampler("post /checkout", null)).isSameAs(Sampler.ALWAYS_SAMPLE);
+    assertThat(sampler.sampler("get /users", null)).isNull();
+  }
+
+  @Test
+  public void reusesSamplersWhoseRateDidntChange() throws Exception {
+    createRate(SAMPLE_RATE_NODE, 0.1f);
+    createRate(spanNameNode("get /users"), 0.5f);
+    restartSampler();
+    Sampler spanNameSampler = sampler.sampler("get /users", null);
+
+    client.setData().forPath(SAMPLE_RATE_NODE, "0.2".getBytes());
+    awaitRate(0.2f);
+
+    assertThat(sampler.sampler("get /users", null)).isSameAs(spanNameSampler);
+  }
+
+  @Test
+  public void cacheFile_usedWhenZooKeeperIsUnreachable() throws Exception {
+    File cacheFile = new File(folder.getRoot(), "samplerate.properties");
+    createRate(SAMPLE_RATE_NODE, 1.0f);
+    createRate(spanNameNode("get /health"), 0.0f);
+    sampler.close();
+    sampler = new ZooKeeperSampler(zooKeeperTestServer.getConnectString(), SAMPLE_RATE_NODE, cacheFile);
+    assertThat(sampler.awaitInitialized(2, TimeUnit.SECONDS)).isTrue();
+    sampler.close();
+    client.close();
+    zooKeeperTestServer.stop();
+
+    long start = System.nanoTime();
+    sampler = new ZooKeeperSampler(zooKeeperTestServer.getConnectString(), SAMPLE_RATE_NODE, cacheFile);
+
+    assertThat(System.nanoTime() - start).isLessThan(1_000_000_000L); // doesn't await connection
+    assertThat(LongStream.of(traceIds).filter(sampler::isSampled).toArray())
+        .containsExactly(traceIds);
+    assertThat(sampler.sampler("get /health", null)).isSameAs(Sampler.NEVER_SAMPLE);
+  }
+
+  @Test
+  public void cacheFile_ignoredWhenCorrupt() throws Exception {
+    File cacheFile = folder.newFile("samplerate.properties");
+    Files.write(cacheFile.toPath(), "rate=lots".getBytes());
+    sampler.close();
+
+    sampler = new ZooKeeperSampler(zooKeeperTestServer.getConnectString(), SAMPLE_RATE_NODE, cacheFile);
+    assertThat(sampler.sampleRate()).isZero();
+  }
+
+  /** Sets the rate before starting the sampler, which reads it before returning. */
   private void setRate(float rate) throws Exception {
-    sampler.getZkCurator().create().creatingParentsIfNeeded()
-        .forPath(SAMPLE_RATE_NODE, String.valueOf(rate).getBytes());
-    Thread.sleep(100);
+    createRate(SAMPLE_RATE_NODE, rate);
+    restartSampler();
+  }
+
+  private void createRate(String path, float rate) throws Exception {
+    client.create().creatingParentsIfNeeded().forPath(path, String.valueOf(rate).getBytes());
+  }
+
+  private static String spanNameNode(String spanName) throws IOException {
+    return SAMPLE_RATE_NODE + "/" + URLEncoder.encode(spanName, "UTF-8");
+  }
+
+  private void restartSampler() throws InterruptedException {
+    sampler.close();
+    sampler = new ZooKeeperSampler(zooKeeperTestServer.getConnectString(), SAMPLE_RATE_NODE);
+  }
+
+  /** Changes made after the sampler started are applied asynchronously */
+  private void awaitRate(float rate) throws InterruptedException {
+    for (int i = 0; i < 500 && sampler.sampleRate() != rate; i++) {
+      Thread.sleep(10);
+    }
+    assertThat(sampler.sampleRate()).isEqualTo(rate);
   }
 }
@@ -2,15 +2,32 @@ package com.github.kristofa.brave.http;
 
 import com.github.kristofa.brave.AbstractSpanCollector;
 import com.github.kristofa.brave.EmptySpanCollectorMetricsHandler;
+import com.github.kristofa.brave.FlushPolicy;
 import com.github.kristofa.brave.SpanCollectorMetricsHandler;
+import com.github.kristofa.brave.SpanQueue;
+import com.github.kristofa.brave.internal.Nullable;
 import com.google.auto.value.AutoValue;
+import com.twitter.zipkin.gen.Span;
 import com.twitter.zipkin.gen.SpanCodec;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.util.zip.GZIPOutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static zipkin.internal.Util.checkArgument;
 
 /**
  * SpanCollector which submits spans to Zipkin, using its {@code POST /spans} endpoint.
@@ -24,7 +41,15 @@ public final class HttpSpanCollector extends AbstractSpanCollector {
           .connectTimeout(10 * 1000)
           .readTimeout(60 * 1000)
           .compressionEnabled(false)
-          .flushInterval(1);
+          .compressionLevel(Deflater.DEFAULT_COMPRESSION)
+          .maxInFlight(0)
+          .flushInterval(1)
+          .flushIntervalUnit(TimeUnit.SECONDS)
+          .flushThreads(1)
+          .flushMaxSpans(0)
+          .flushMaxBytes(0)
+          .queuedMaxSpans(SpanQueue.DEFAULT_MAX_SPANS)
+          .queuedMaxBytes(SpanQueue.DEFAULT_MAX_BYTES);
     }
 
     abstract int connectTimeout();
@@ -33,8 +58,24 @@ public final class HttpSpanCollector extends AbstractSpanCollector {
 
     abstract int flushInterval();
 
+    abstract TimeUnit flushIntervalUnit();
+
+    abstract int flushThreads();
+
+    abstract int flushMaxSpans();
+
+    abstract long flushMaxBytes();
+
     abstract boolean compressionEnabled();
 
+    abstract int compressionLevel();
+
+    abstract int maxInFlight();
+
+    abstract int queuedMaxSpans();
+
+    abstract long queuedMaxBytes();
+
     @AutoValue.Builder
     public interface Builder {
       /** Default 10 * 1000 milliseconds. 0 implies no timeout. */
@@ -43,9 +84,30 @@ public final class HttpSpanCollector extends AbstractSpanCollector {
       /** Default 60 * 1000 milliseconds. 0 implies no timeout. */
       Builder readTimeout(int readTimeout);
 
-      /** Default 1 second. 0 implies spans are {@link #flush() flushed} externally. */
+      /**
+       * Default 1, in {@link #flushIntervalUnit(TimeUnit)}. 0 implies spans are {@link #flush()
+       * flushed} externally, unless a size trigger is set.
+       */
       Builder flushInterval(int flushInterval);
 
+      /** Default seconds. Use milliseconds for a sub-second {@link #flushInterval(int)}. */
+      Builder flushIntervalUnit(TimeUnit flushIntervalUnit);
+
+      /**
+       * Default 1. Count of threads that report spans. Increase this when a single report per
+       * interval can't keep up with collected spans.
+       */
+      Builder flushThreads(int flushThreads);
+
+      /** Default 0. When positive, flush as soon as this many spans are pending. */
+      Builder flushMaxSpans(int flushMaxSpans);
+
+      /**
+       * Default 0. When positive, flush as soon as the estimated encoded size of pending spans
+       * reaches this value.
+       */
+      Builder flushMaxBytes(long flushMaxBytes);
+
       /**
        * Default false. true implies that spans will be gzipped before transport.
        *
@@ -53,12 +115,50 @@ public final class HttpSpanCollector extends AbstractSpanCollector {
        */
       Builder compressionEnabled(boolean compressSpans);
 
+      /**
+       * Default {@link Deflater#DEFAULT_COMPRESSION}. When compression is enabled, a value from
+       * {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}. Lower levels use less CPU
+       * on the flushing thread.
+       */
+      Builder compressionLevel(int compressionLevel);
+
+      /**
+       * Default 0, which implies spans are POSTed on the thread that flushes them.
+       *
+       * <p>When positive, POSTs are sent by a pool of this many threads, so that a slow zipkin
+       * server doesn't stall flushing. Once this many requests are in flight, further flushes are
+       * dropped.
+       */
+      Builder maxInFlight(int maxInFlight);
+
+      /**
+       * Maximum count of spans pending report. Spans collected once this is reached are dropped.
+       * Default {@link SpanQueue#DEFAULT_MAX_SPANS}.
+       */
+      Builder queuedMaxSpans(int queuedMaxSpans);
+
+      /**
+       * Maximum estimated encoded size of spans pending report. Spans collected once this is
+       * reached are dropped. Default {@link SpanQueue#DEFAULT_MAX_BYTES}: 1% of the heap.
+       */
+      Builder queuedMaxBytes(long queuedMaxBytes);
+
       Config build();
     }
   }
 
   private final String url;
   private final Config config;
+  private final SpanCollectorMetricsHandler metrics;
+  @Nullable // when maxInFlight is 0
+  private final ExecutorService sender;
+  private final Semaphore inFlight;
+  /**
+   * Idle compressors, reused as creating a {@link Deflater} allocates native memory. At most one
+   * per concurrent POST, and ended on {@link #close()}.
+   */
+  final Queue<Gzipper> gzippers = new ConcurrentLinkedQueue<>(); // visible for testing
+  private volatile boolean closed;
 
   /**
    * Create a new instance with default configuration.
@@ -84,40 +184,192 @@ public final class HttpSpanCollector extends AbstractSpanCollector {
 
   // Visible for testing. Ex when tests need to explicitly control flushing, set interval to 0.
   HttpSpanCollector(String baseUrl, Config config, SpanCollectorMetricsHandler metrics) {
-    super(SpanCodec.JSON, metrics,  config.flushInterval());
+    super(SpanCodec.JSON, metrics, flushPolicy(config),
+        SpanQueue.create(config.queuedMaxSpans(), config.queuedMaxBytes()));
     this.url = baseUrl + (baseUrl.endsWith("/") ? "" : "/") + "api/v1/spans";
     this.config = config;
+    this.metrics = metrics;
+    checkArgument(config.maxInFlight() >= 0, "maxInFlight < 0: %s", config.maxInFlight());
+    int level = config.compressionLevel();
+    checkArgument(level >= Deflater.DEFAULT_COMPRESSION && level <= Deflater.BEST_COMPRESSION,
+        "compressionLevel should be between -1 and 9: was %s", level);
+    this.sender = config.maxInFlight() > 0 ? newSender(config.maxInFlight()) : null;
+    this.inFlight = new Semaphore(config.maxInFlight());
+  }
+
+  static ExecutorService newSender(int maxInFlight) {
+    return Executors.newFixedThreadPool(maxInFlight, new ThreadFactory() {
+      final AtomicInteger count = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread result = new Thread(r, "HttpSpanCollector-sender-" + count.incrementAndGet());
+        result.setDaemon(true);
+        return result;
+      }
+    });
+  }
+
+  static FlushPolicy flushPolicy(Config config) {
+    return FlushPolicy.builder()
+        .interval(config.flushInterval())
+        .intervalUnit(config.flushIntervalUnit())
+        .threads(config.flushThreads())
+        .maxSpans(config.flushMaxSpans())
+        .maxBytes(config.flushMaxBytes()).build();
+  }
+
+  /** When {@link Config.Builder#maxInFlight(int)} is positive, POSTs the spans on another thread. */
+  @Override
+  protected void reportSpans(List<Span> drained) throws IOException {
+    if (sender == null) {
+      super.reportSpans(drained);
+      return;
+    }
+    if (!inFlight.tryAcquire()) {
+      throw new IOException(config.maxInFlight() + " requests already in flight");
+    }
+    final int spanCount = drained.size();
+    try {
+      // encode on the calling thread, as the sender needs its own copy anyway
+      final byte[] json = SpanCodec.JSON.writeSpans(drained);
+      sender.execute(new Runnable() {
+        @Override public void run() {
+          try {
+            post(json, 0, json.length);
+          } catch (IOException | RuntimeException e) {
+            metrics.incrementDroppedSpans(spanCount);
+          } finally {
+            inFlight.release();
+          }
+        }
+      });
+    } catch (RuntimeException e) { // including RejectedExecutionException, when closed
+      inFlight.release();
+      throw e;
+    }
   }
 
   @Override
   protected void sendSpans(byte[] json) throws IOException {
+    post(json, 0, json.length);
+  }
+
+  @Override
+  protected void sendSpans(ByteBuffer json) throws IOException {
+    if (json.hasArray()) {
+      post(json.array(), json.arrayOffset() + json.position(), json.remaining());
+    } else { // ex. a direct buffer
+      byte[] copy = new byte[json.remaining()];
+      json.get(copy);
+      post(copy, 0, copy.length);
+    }
+  }
+
+  void post(byte[] body, int offset, int length) throws IOException {
     // intentionally not closing the connection, so as to use keep-alives
     HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
     connection.setConnectTimeout(config.connectTimeout());
     connection.setReadTimeout(config.readTimeout());
     connection.setRequestMethod("POST");
     connection.addRequestProperty("Content-Type", "application/json");
+    connection.setDoOutput(true);
     if (config.compressionEnabled()) {
       connection.addRequestProperty("Content-Encoding", "gzip");
-      ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
-      try (GZIPOutputStream compressor = new GZIPOutputStream(gzipped)) {
-        compressor.write(json);
+      // compressed size isn't known until done, so stream it in chunks instead of buffering
+      connection.setChunkedStreamingMode(0);
+      Gzipper gzipper = gzippers.poll();
+      if (gzipper == null) gzipper = new Gzipper(config.compressionLevel());
+      try {
+        gzipper.gzip(body, offset, length, connection.getOutputStream());
+      } finally {
+        releaseGzipper(gzipper);
       }
-      json = gzipped.toByteArray();
+    } else {
+      connection.setFixedLengthStreamingMode(length);
+      connection.getOutputStream().write(body, offset, length);
     }
-    connection.setDoOutput(true);
-    connection.setFixedLengthStreamingMode(json.length);
-    connection.getOutputStream().write(json);
 
+    // The connection returns to the JDK's keep-alive pool only once the response is fully read.
     try (InputStream in = connection.getInputStream()) {
-      while (in.read() != -1) ; // skip
+      skip(in);
     } catch (IOException e) {
       try (InputStream err = connection.getErrorStream()) {
         if (err != null) { // possible, if the connection was dropped
-          while (err.read() != -1) ; // skip
+          skip(err);
         }
       }
       throw e;
     }
   }
+
+  /** Returns the compressor to the pool, or ends it if the collector was closed meanwhile. */
+  void releaseGzipper(Gzipper gzipper) {
+    if (closed) {
+      gzipper.end();
+      return;
+    }
+    gzippers.offer(gzipper);
+    // close() may have drained the pool before the offer. Only one of us removes it.
+    if (closed && gzippers.remove(gzipper)) gzipper.end();
+  }
+
+  /** Writes gzip format using a reusable deflater, which {@link java.util.zip.GZIPOutputStream} can't. */
+  static final class Gzipper {
+    static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    final Deflater deflater;
+    final CRC32 crc = new CRC32();
+    final byte[] buffer = new byte[8192];
+
+    Gzipper(int level) {
+      deflater = new Deflater(level, true /* gzip supplies the header and trailer */);
+    }
+
+    void gzip(byte[] in, int offset, int length, OutputStream out) throws IOException {
+      deflater.reset();
+      crc.reset();
+      out.write(HEADER);
+      deflater.setInput(in, offset, length);
+      deflater.finish();
+      while (!deflater.finished()) {
+        out.write(buffer, 0, deflater.deflate(buffer));
+      }
+      crc.update(in, offset, length);
+      writeIntLe((int) crc.getValue(), out);
+      writeIntLe(length, out);
+    }
+
+    /** Frees the deflater's native memory. This instance can't be used afterwards. */
+    void end() {
+      deflater.end();
+    }
+
+    void writeIntLe(int v, OutputStream out) throws IOException {
+      buffer[0] = (byte) (v & 0xff);
+      buffer[1] = (byte) ((v >>> 8) & 0xff);
+      buffer[2] = (byte) ((v >>> 16) & 0xff);
+      buffer[3] = (byte) ((v >>> 24) & 0xff);
+      out.write(buffer, 0, 4);
+    }
+  }
+
+  static void skip(InputStream in) throws IOException {
+    byte[] buffer = new byte[512];
+    while (in.read(buffer) != -1) ; // skip
+  }
+
+  /**
+   * Stops flushing. POSTs already in flight complete in the background, and end their compressors
+   * when done.
+   */
+  @Override
+  public void close() {
+    super.close();
+    if (sender != null) sender.shutdown();
+    closed = true;
+    for (Gzipper gzipper; (gzipper = gzippers.poll()) != null; ) {
+      gzipper.end();
+    }
+  }
 }
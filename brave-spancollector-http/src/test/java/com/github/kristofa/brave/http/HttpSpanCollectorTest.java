@@ -1,15 +1,27 @@
 package com.github.kristofa.brave.http;
 
+import com.github.kristofa.brave.SpanCollectorByteMetrics;
 import com.github.kristofa.brave.SpanCollectorMetricsHandler;
+import com.github.kristofa.brave.internal.SpanSizer;
 import com.twitter.zipkin.gen.Annotation;
 import com.twitter.zipkin.gen.Span;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
 import org.junit.After;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 import zipkin.junit.HttpFailure;
 import zipkin.junit.ZipkinRule;
 
@@ -20,6 +32,8 @@ public class HttpSpanCollectorTest {
 
   @Rule
   public final ZipkinRule zipkinRule = new ZipkinRule();
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
 
   TestMetricsHander metrics = new TestMetricsHander();
   // set flush interval to 0 so that tests can drive flushing explicitly
@@ -57,6 +71,34 @@ public class HttpSpanCollectorTest {
     assertThat(metrics.droppedSpans.get()).isEqualTo(1);
   }
 
+  @Test
+  public void dropsWhenQueueExceedsMaxBytes() throws Exception {
+    int spanSize = SpanSizer.estimate(span(1L, "foo"));
+    HttpSpanCollector.Config config = HttpSpanCollector.Config.builder()
+        .flushInterval(0).queuedMaxBytes(spanSize * 2).build();
+    HttpSpanCollector collector = new HttpSpanCollector(zipkinRule.httpUrl(), config, metrics);
+
+    for (int i = 0; i < 3; i++)
+      collector.collect(span(1L, "foo"));
+
+    collector.flush(); // manually flush the spans
+
+    assertThat(zipkinRule.collectorMetrics().spans()).isEqualTo(2);
+    assertThat(metrics.droppedSpans.get()).isEqualTo(1);
+    assertThat(metrics.droppedBytes.get()).isEqualTo(spanSize);
+  }
+
+  @Test
+  public void flushUpdatesQueuedBytes() throws Exception {
+    collector.collect(span(1L, "foo"));
+    collector.collect(span(2L, "bar"));
+
+    collector.flush(); // manually flush the spans
+
+    assertThat(metrics.queuedBytes.get())
+        .isEqualTo(SpanSizer.estimate(span(1L, "foo")) + SpanSizer.estimate(span(2L, "bar")));
+  }
+
   @Test
   public void postsSpans() throws Exception {
     collector.collect(span(1L, "foo"));
@@ -74,6 +116,96 @@ public class HttpSpanCollectorTest {
     );
   }
 
+  @Test
+  public void flushesWhenMaxSpansPending() throws Exception {
+    HttpSpanCollector.Config config = HttpSpanCollector.Config.builder()
+        .flushInterval(0).flushThreads(2).flushMaxSpans(2).build();
+    HttpSpanCollector collector = new HttpSpanCollector(zipkinRule.httpUrl(), config, metrics);
+    try {
+      collector.collect(span(1L, "foo"));
+      Thread.sleep(100);
+      assertThat(zipkinRule.httpRequestCount()).isZero();
+
+      collector.collect(span(2L, "bar")); // reaches the threshold
+
+      awaitSpanCount(2);
+    } finally {
+      collector.close();
+    }
+  }
+
+  @Test
+  public void flushesOnSubSecondInterval() throws Exception {
+    HttpSpanCollector.Config config = HttpSpanCollector.Config.builder()
+        .flushInterval(10).flushIntervalUnit(TimeUnit.MILLISECONDS).build();
+    HttpSpanCollector collector = new HttpSpanCollector(zipkinRule.httpUrl(), config, metrics);
+    try {
+      collector.collect(span(1L, "foo"));
+
+      awaitSpanCount(1);
+    } finally {
+      collector.close();
+    }
+  }
+
+  @Test
+  public void maxInFlight_slowServerDoesntBlockFlush() throws Exception {
+    final CountDownLatch respond = new CountDownLatch(1);
+    MockWebServer zipkin = new MockWebServer();
+    zipkin.setDispatcher(new Dispatcher() {
+      @Override public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        respond.await();
+        return new MockResponse();
+      }
+    });
+    try {
+      zipkin.start(0);
+      HttpSpanCollector.Config config = HttpSpanCollector.Config.builder()
+          .flushInterval(0).maxInFlight(1).build();
+      HttpSpanCollector collector = new HttpSpanCollector(zipkin.url("/").toString(), config, metrics);
+
+      collector.collect(span(1L, "foo"));
+      collector.flush(); // returns while the server is stalled
+
+      zipkin.takeRequest(); // ensures the request is in flight
+      collector.collect(span(2L, "bar"));
+      collector.flush(); // drops, as the only permit is in use
+
+      assertThat(metrics.droppedSpans.get()).isEqualTo(1);
+
+      respond.countDown();
+      collector.close();
+    } finally {
+      respond.countDown();
+      zipkin.shutdown();
+    }
+  }
+
+  @Test
+  public void maxInFlight_postsSpans() throws Exception {
+    HttpSpanCollector.Config config = HttpSpanCollector.Config.builder()
+        .flushInterval(0).maxInFlight(2).build();
+    HttpSpanCollector collector = new HttpSpanCollector(zipkinRule.httpUrl(), config, metrics);
+    try {
+      collector.collect(span(1L, "foo"));
+      collector.flush();
+      collector.collect(span(2L, "bar"));
+      collector.flush();
+
+      awaitSpanCount(2);
+      assertThat(metrics.droppedSpans.get()).isZero();
+    } finally {
+      collector.close();
+    }
+  }
+
+  void awaitSpanCount(int count) throws InterruptedException {
+    for (int i = 0; i < 100 && zipkinRule.collectorMetrics().spans() < count; i++) {
+      Thread.sleep(10);
+    }
+    assertThat(zipkinRule.collectorMetrics().spans()).isEqualTo(count);
+  }
+
   @Test
   public void postsCompressedSpans() throws Exception {
     char[] annotation2K = new char[2048];
@@ -102,6 +234,69 @@ public class HttpSpanCollectorTest {
     }
   }
 
+  @Test
+  public void postsCompressedSpans_readable() throws Exception {
+    HttpSpanCollector.Config config = HttpSpanCollector.Config.builder()
+        .flushInterval(0).compressionEnabled(true).compressionLevel(Deflater.BEST_SPEED).build();
+    HttpSpanCollector collector = new HttpSpanCollector(zipkinRule.httpUrl(), config, metrics);
+
+    // flush twice, to ensure the deflater is reset between batches
+    collector.collect(span(1L, "foo"));
+    collector.flush();
+    collector.collect(span(2L, "bar"));
+    collector.flush();
+
+    assertThat(zipkinRule.getTraces()).containsExactly(
+        asList(zipkinSpan(1L, "foo")),
+        asList(zipkinSpan(2L, "bar"))
+    );
+  }
+
+  @Test
+  public void gzipperOutputIsGzip() throws Exception {
+    byte[] json = "[{\"traceId\":\"0000000000000001\"}]".getBytes("UTF-8");
+    HttpSpanCollector.Gzipper gzipper = new HttpSpanCollector.Gzipper(Deflater.DEFAULT_COMPRESSION);
+
+    for (int i = 0; i < 2; i++) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      gzipper.gzip(json, 0, json.length, out);
+
+      GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()));
+      ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+      for (int b; (b = in.read()) != -1; ) decompressed.write(b);
+      assertThat(decompressed.toByteArray()).isEqualTo(json);
+    }
+  }
+
+  @Test
+  public void closeEndsCompressors() throws Exception {
+    HttpSpanCollector.Config config = HttpSpanCollector.Config.builder()
+        .flushInterval(0).compressionEnabled(true).build();
+    HttpSpanCollector collector = new HttpSpanCollector(zipkinRule.httpUrl(), config, metrics);
+    collector.collect(span(1L, "foo"));
+    collector.flush(); // manually flush the spans
+
+    assertThat(collector.gzippers).hasSize(1);
+    HttpSpanCollector.Gzipper idle = collector.gzippers.peek();
+
+    collector.close();
+
+    assertThat(collector.gzippers).isEmpty();
+    thrown.expect(NullPointerException.class); // the deflater was ended
+    idle.gzip(new byte[1], 0, 1, new ByteArrayOutputStream());
+  }
+
+  @Test
+  public void compressorReleasedAfterCloseIsEnded() throws Exception {
+    HttpSpanCollector.Gzipper inFlight = new HttpSpanCollector.Gzipper(Deflater.DEFAULT_COMPRESSION);
+    collector.close();
+    collector.releaseGzipper(inFlight);
+
+    assertThat(collector.gzippers).isEmpty();
+    thrown.expect(NullPointerException.class); // the deflater was ended
+    inFlight.gzip(new byte[1], 0, 1, new ByteArrayOutputStream());
+  }
+
   @Test
   public void incrementsDroppedSpansWhenServerErrors() throws Exception {
     zipkinRule.enqueueFailure(HttpFailure.sendErrorResponse(500, "Server Error!"));
@@ -126,10 +321,12 @@ public class HttpSpanCollectorTest {
     assertThat(metrics.droppedSpans.get()).isEqualTo(2);
   }
 
-  class TestMetricsHander implements SpanCollectorMetricsHandler {
+  class TestMetricsHander implements SpanCollectorMetricsHandler, SpanCollectorByteMetrics {
 
     final AtomicInteger acceptedSpans = new AtomicInteger();
     final AtomicInteger droppedSpans = new AtomicInteger();
+    final AtomicInteger droppedBytes = new AtomicInteger();
+    final AtomicLong queuedBytes = new AtomicLong();
 
     @Override
     public void incrementAcceptedSpans(int quantity) {
@@ -140,6 +337,16 @@ public class HttpSpanCollectorTest {
     public void incrementDroppedSpans(int quantity) {
       droppedSpans.addAndGet(quantity);
     }
+
+    @Override
+    public void incrementDroppedBytes(int quantity) {
+      droppedBytes.addAndGet(quantity);
+    }
+
+    @Override
+    public void updateQueuedBytes(long quantity) {
+      queuedBytes.set(quantity);
+    }
   }
 
   static Span span(long traceId, String spanName) {
@@ -2,14 +2,31 @@ package com.github.kristofa.brave.kafka;
 
 import com.github.kristofa.brave.AbstractSpanCollector;
 import com.github.kristofa.brave.EmptySpanCollectorMetricsHandler;
+import com.github.kristofa.brave.FlushPolicy;
 import com.github.kristofa.brave.SpanCollectorMetricsHandler;
+import com.github.kristofa.brave.SpanQueue;
+import com.github.kristofa.brave.internal.Buffer;
+import com.github.kristofa.brave.internal.Nullable;
+import com.github.kristofa.brave.internal.StreamingSpanCodec;
 import com.google.auto.value.AutoValue;
+import com.twitter.zipkin.gen.Span;
 import com.twitter.zipkin.gen.SpanCodec;
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.utils.Utils;
+
+import static com.github.kristofa.brave.internal.Util.checkArgument;
 
 /**
  * SpanCollector which sends a thrift-encoded list of spans to a Kafka topic (default: "zipkin")
@@ -23,7 +40,16 @@ public final class KafkaSpanCollector extends AbstractSpanCollector {
     public static Builder builder() {
       return new AutoValue_KafkaSpanCollector_Config.Builder()
           .topic("zipkin")
-          .flushInterval(1);
+          .flushInterval(1)
+          .flushIntervalUnit(TimeUnit.SECONDS)
+          .flushThreads(1)
+          .flushMaxSpans(0)
+          .flushMaxBytes(0)
+          .maxInFlight(0)
+          .maxMessageBytes(DEFAULT_MAX_MESSAGE_BYTES)
+          .partitionByTraceId(false)
+          .queuedMaxSpans(SpanQueue.DEFAULT_MAX_SPANS)
+          .queuedMaxBytes(SpanQueue.DEFAULT_MAX_BYTES);
     }
 
     public static Builder builder(String bootstrapServers) {
@@ -38,8 +64,26 @@ public final class KafkaSpanCollector extends AbstractSpanCollector {
 
     abstract int flushInterval();
 
+    abstract TimeUnit flushIntervalUnit();
+
+    abstract int flushThreads();
+
+    abstract int flushMaxSpans();
+
+    abstract long flushMaxBytes();
+
     abstract String topic();
 
+    abstract int maxInFlight();
+
+    abstract int maxMessageBytes();
+
+    abstract boolean partitionByTraceId();
+
+    abstract int queuedMaxSpans();
+
+    abstract long queuedMaxBytes();
+
     @AutoValue.Builder
     public interface Builder {
       /**
@@ -51,17 +95,87 @@ public final class KafkaSpanCollector extends AbstractSpanCollector {
        */
       Builder kafkaProperties(Properties kafkaProperties);
 
-      /** Default 1 second. 0 implies spans are {@link #flush() flushed} externally. */
+      /**
+       * Default 1, in {@link #flushIntervalUnit(TimeUnit)}. 0 implies spans are {@link #flush()
+       * flushed} externally, unless a size trigger is set.
+       */
       Builder flushInterval(int flushInterval);
 
+      /** Default seconds. Use milliseconds for a sub-second {@link #flushInterval(int)}. */
+      Builder flushIntervalUnit(TimeUnit flushIntervalUnit);
+
+      /**
+       * Default 1. Count of threads that report spans. Increase this when a single report per
+       * interval can't keep up with collected spans.
+       */
+      Builder flushThreads(int flushThreads);
+
+      /** Default 0. When positive, flush as soon as this many spans are pending. */
+      Builder flushMaxSpans(int flushMaxSpans);
+
+      /**
+       * Default 0. When positive, flush as soon as the estimated encoded size of pending spans
+       * reaches this value.
+       */
+      Builder flushMaxBytes(long flushMaxBytes);
+
       /** Sets kafka-topic for zipkin to report to. Default topic zipkin. **/
       Builder topic(String topic);
 
+      /**
+       * Default 0, which implies no limit. When positive, the maximum count of messages sent, but
+       * not yet acknowledged by Kafka. Once reached, flushing waits for an acknowledgement, so that
+       * spans back up into the pending queue instead of into the producer.
+       */
+      Builder maxInFlight(int maxInFlight);
+
+      /**
+       * Default 1000000, which is under Kafka's default maximum message size. Flushed spans are
+       * split into as many messages as needed to stay within this size.
+       */
+      Builder maxMessageBytes(int maxMessageBytes);
+
+      /**
+       * Default false, which implies each flush is sent without a key, so spans of a trace may be
+       * spread across partitions.
+       *
+       * <p>When true, flushed spans are grouped by the partition their trace ID hashes to, and each
+       * group is sent to that partition. All spans of a trace land on the same partition, so
+       * consumers can assemble traces without a shuffle. A flush sends at most one message per
+       * partition, more only when a group exceeds {@link #maxMessageBytes(int)}.
+       *
+       * <p>In this mode, records have no key, and a custom {@code partitioner.class} is ignored.
+       * The partition is chosen like Kafka's default partitioner would for the 8-byte big-endian
+       * trace ID, using the partition count from {@code producer.partitionsFor(topic)}. Reading
+       * that may block the flush thread while the producer fetches metadata. If it fails or finds
+       * no partitions, the flush is sent as if this were false.
+       */
+      Builder partitionByTraceId(boolean partitionByTraceId);
+
+      /**
+       * Maximum count of spans pending report. Spans collected once this is reached are dropped.
+       * Default {@link SpanQueue#DEFAULT_MAX_SPANS}.
+       */
+      Builder queuedMaxSpans(int queuedMaxSpans);
+
+      /**
+       * Maximum estimated encoded size of spans pending report. Spans collected once this is
+       * reached are dropped. Default {@link SpanQueue#DEFAULT_MAX_BYTES}: 1% of the heap.
+       */
+      Builder queuedMaxBytes(long queuedMaxBytes);
+
       Config build();
     }
   }
 
+  static final int DEFAULT_MAX_MESSAGE_BYTES = 1000000;
+
   private final Producer<byte[], byte[]> producer;
+  private final SpanCollectorMetricsHandler metrics;
+  @Nullable // when maxInFlight is 0
+  private final Semaphore inFlight;
+  private final int maxMessageBytes;
+  private final boolean partitionByTraceId;
 
   private final String topic;
 
@@ -88,14 +202,137 @@ public final class KafkaSpanCollector extends AbstractSpanCollector {
 
   // Visible for testing. Ex when tests need to explicitly control flushing, set interval to 0.
   KafkaSpanCollector(Config config, SpanCollectorMetricsHandler metrics) {
-    super(SpanCodec.THRIFT, metrics, config.flushInterval());
-    this.producer = new KafkaProducer<>(config.kafkaProperties());
+    this(config, metrics, new KafkaProducer<byte[], byte[]>(config.kafkaProperties()));
+  }
+
+  KafkaSpanCollector(Config config, SpanCollectorMetricsHandler metrics,
+      Producer<byte[], byte[]> producer) {
+    super(SpanCodec.THRIFT, metrics, flushPolicy(config),
+        SpanQueue.create(config.queuedMaxSpans(), config.queuedMaxBytes()));
+    checkArgument(config.maxInFlight() >= 0, "maxInFlight < 0: %s", config.maxInFlight());
+    checkArgument(config.maxMessageBytes() > 0, "maxMessageBytes <= 0: %s",
+        config.maxMessageBytes());
+    this.producer = producer;
     this.topic = config.topic();
+    this.metrics = metrics;
+    this.inFlight = config.maxInFlight() > 0 ? new Semaphore(config.maxInFlight()) : null;
+    this.maxMessageBytes = config.maxMessageBytes();
+    this.partitionByTraceId = config.partitionByTraceId();
+  }
+
+  static FlushPolicy flushPolicy(Config config) {
+    return FlushPolicy.builder()
+        .interval(config.flushInterval())
+        .intervalUnit(config.flushIntervalUnit())
+        .threads(config.flushThreads())
+        .maxSpans(config.flushMaxSpans())
+        .maxBytes(config.flushMaxBytes()).build();
+  }
+
+  /**
+   * Sends the spans as one or more messages of up to {@link Config.Builder#maxMessageBytes(int)}.
+   * Spans in messages that fail, synchronously or not, are counted as dropped.
+   */
+  @Override
+  protected void reportSpans(List<Span> drained) {
+    if (!partitionByTraceId) {
+      send(drained, null);
+      return;
+    }
+    List<PartitionInfo> partitions = null;
+    try {
+      partitions = producer.partitionsFor(topic);
+    } catch (RuntimeException e) { // ex. metadata unavailable or timed out
+    }
+    if (partitions == null || partitions.isEmpty()) { // let the producer route or fail as usual
+      send(drained, null);
+      return;
+    }
+    // spans in each group remain in the order they were collected
+    Map<Integer, List<Span>> groups = new LinkedHashMap<Integer, List<Span>>();
+    for (int i = 0, length = drained.size(); i < length; i++) {
+      Span span = drained.get(i);
+      Integer partition = partition(span.getTrace_id(), partitions.size());
+      List<Span> group = groups.get(partition);
+      if (group == null) groups.put(partition, group = new ArrayList<Span>());
+      group.add(span);
+    }
+    int unsent = drained.size();
+    for (Map.Entry<Integer, List<Span>> group : groups.entrySet()) {
+      unsent -= group.getValue().size();
+      if (!send(group.getValue(), group.getKey())) {
+        metrics.incrementDroppedSpans(unsent); // don't send the rest
+        return;
+      }
+    }
   }
 
+  /**
+   * Sends a thrift-encoded list of spans as one message. Flushes don't use this, as {@link
+   * #reportSpans} splits spans into messages itself.
+   */
   @Override
-  protected void sendSpans(byte[] thrift) throws IOException {
-    producer.send(new ProducerRecord<byte[], byte[]>(this.topic, thrift));
+  protected void sendSpans(byte[] thrift) {
+    // a thrift list begins with the element type, then the element count
+    int spanCount = (thrift[1] & 0xff) << 24 | (thrift[2] & 0xff) << 16
+        | (thrift[3] & 0xff) << 8 | (thrift[4] & 0xff);
+    sendMessage(null, thrift, spanCount);
+  }
+
+  /** Returns the partition Kafka's default partitioner picks when keyed by {@link #traceIdKey}. */
+  static int partition(long traceId, int partitionCount) {
+    return Utils.abs(Utils.murmur2(traceIdKey(traceId))) % partitionCount;
+  }
+
+  static byte[] traceIdKey(long traceId) {
+    byte[] result = new byte[8];
+    for (int i = 7; i >= 0; i--, traceId >>>= 8) {
+      result[i] = (byte) (traceId & 0xff);
+    }
+    return result;
+  }
+
+  /**
+   * Sends the spans in as many messages as needed. Returns false if the caller should stop
+   * sending, as this thread was interrupted. Unsent spans are counted as dropped.
+   */
+  boolean send(List<Span> spans, @Nullable Integer partition) {
+    Buffer buffer = Buffer.pooled();
+    for (int i = 0, length = spans.size(); i < length; ) {
+      buffer.reset();
+      int next = StreamingSpanCodec.THRIFT.writeSpans(spans, i, maxMessageBytes, buffer);
+      if (!sendMessage(partition, buffer.toByteArray(), next - i)) {
+        metrics.incrementDroppedSpans(length - next);
+        return false;
+      }
+      i = next;
+    }
+    return true;
+  }
+
+  /** Returns false if the caller should stop sending, as this thread was interrupted. */
+  boolean sendMessage(@Nullable Integer partition, byte[] message, final int spanCount) {
+    if (inFlight != null) {
+      try {
+        inFlight.acquire();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        metrics.incrementDroppedSpans(spanCount);
+        return false;
+      }
+    }
+    try {
+      producer.send(new ProducerRecord<byte[], byte[]>(topic, partition, null, message), new Callback() {
+        @Override public void onCompletion(RecordMetadata metadata, Exception exception) {
+          if (inFlight != null) inFlight.release();
+          if (exception != null) metrics.incrementDroppedSpans(spanCount);
+        }
+      });
+    } catch (RuntimeException e) { // ex. serialization or the producer is closed
+      if (inFlight != null) inFlight.release();
+      metrics.incrementDroppedSpans(spanCount);
+    }
+    return true;
   }
 
   @Override
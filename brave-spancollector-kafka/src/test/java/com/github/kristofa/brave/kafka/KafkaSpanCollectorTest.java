@@ -4,7 +4,10 @@ import com.github.charithe.kafka.KafkaJunitRule;
 import com.github.kristofa.brave.SpanCollectorMetricsHandler;
 import com.github.kristofa.brave.kafka.KafkaSpanCollector.Config;
 import com.twitter.zipkin.gen.Span;
+import com.twitter.zipkin.gen.SpanCodec;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -13,12 +16,19 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 import kafka.serializer.DefaultDecoder;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.internals.Partitioner;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
 import org.junit.After;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import zipkin.Codec;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class KafkaSpanCollectorTest {
@@ -133,6 +143,183 @@ public class KafkaSpanCollectorTest {
     assertThat(messages).hasSize(1);
   }
 
+  @Test
+  public void asyncFailureIncrementsDroppedSpans() throws Exception {
+    MockProducer producer = new MockProducer(false);
+    KafkaSpanCollector collector = new KafkaSpanCollector(config, metrics, producer);
+
+    collector.collect(span(1L, "foo"));
+    collector.collect(span(2L, "bar"));
+    collector.flush(); // manually flush the spans
+
+    assertThat(metrics.droppedSpans.get()).isZero();
+    producer.errorNext(new RuntimeException("broker unavailable"));
+    assertThat(metrics.droppedSpans.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void sendSpans_byteArray_countsDroppedSpans() throws Exception {
+    MockProducer producer = new MockProducer(false);
+    KafkaSpanCollector collector = new KafkaSpanCollector(config, metrics, producer);
+
+    collector.sendSpans(SpanCodec.THRIFT.writeSpans(asList(span(1L, "foo"), span(2L, "bar"))));
+
+    assertThat(producer.history()).hasSize(1);
+    producer.errorNext(new RuntimeException("broker unavailable"));
+    assertThat(metrics.droppedSpans.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void maxInFlight_flushWaitsForAcknowledgement() throws Exception {
+    MockProducer producer = new MockProducer(false);
+    final KafkaSpanCollector collector = new KafkaSpanCollector(
+        Config.builder("localhost:1").flushInterval(0).maxInFlight(1).build(), metrics, producer);
+
+    collector.collect(span(1L, "foo"));
+    collector.flush(); // uses the only permit
+
+    collector.collect(span(2L, "bar"));
+    Thread flusher = new Thread() {
+      @Override public void run() {
+        collector.flush();
+      }
+    };
+    flusher.start();
+    flusher.join(100);
+    assertThat(producer.history()).hasSize(1); // still waiting
+
+    producer.completeNext();
+    flusher.join(1000);
+    assertThat(producer.history()).hasSize(2);
+    assertThat(metrics.droppedSpans.get()).isZero();
+  }
+
+  @Test
+  public void splitsMessagesOverMaxMessageBytes() throws Exception {
+    MockProducer producer = new MockProducer(true);
+    int oneSpan = SpanCodec.THRIFT.writeSpans(asList(span(1L, "foo"))).length;
+    KafkaSpanCollector collector = new KafkaSpanCollector(
+        Config.builder("localhost:1").flushInterval(0).maxMessageBytes(oneSpan).build(),
+        metrics, producer);
+
+    collector.collect(span(1L, "foo"));
+    collector.collect(span(2L, "bar"));
+    collector.collect(span(3L, "baz"));
+    collector.flush(); // manually flush the spans
+
+    List<ProducerRecord<byte[], byte[]>> records = producer.history();
+    assertThat(records).hasSize(3);
+    assertThat(Codec.THRIFT.readSpans(records.get(0).value()))
+        .containsExactly(zipkinSpan(1L, "foo"));
+    assertThat(Codec.THRIFT.readSpans(records.get(2).value()))
+        .containsExactly(zipkinSpan(3L, "baz"));
+  }
+
+  @Test
+  public void partitionByTraceId_sendsOneMessagePerPartition() throws Exception {
+    MockProducer producer = new MockProducer(cluster("zipkin", 2), true);
+    KafkaSpanCollector collector = new KafkaSpanCollector(
+        Config.builder("localhost:1").flushInterval(0).partitionByTraceId(true).build(),
+        metrics, producer);
+
+    for (long traceId = 1; traceId <= 10; traceId++) {
+      collector.collect(span(traceId, "foo"));
+    }
+    collector.collect(new Span().setTrace_id(2L).setId(3L).setName("baz"));
+    collector.flush(); // manually flush the spans
+
+    List<ProducerRecord<byte[], byte[]>> records = producer.history();
+    assertThat(records).hasSize(2);
+    int sent = 0;
+    for (ProducerRecord<byte[], byte[]> record : records) {
+      assertThat(record.key()).isNull();
+      for (zipkin.Span span : Codec.THRIFT.readSpans(record.value())) {
+        assertThat(KafkaSpanCollector.partition(span.traceId, 2)).isEqualTo(record.partition());
+        sent++;
+      }
+    }
+    assertThat(sent).isEqualTo(11);
+  }
+
+  @Test
+  public void partitionByTraceId_keepsSpansOfATraceInOrder() throws Exception {
+    MockProducer producer = new MockProducer(cluster("zipkin", 1), true);
+    KafkaSpanCollector collector = new KafkaSpanCollector(
+        Config.builder("localhost:1").flushInterval(0).partitionByTraceId(true).build(),
+        metrics, producer);
+
+    collector.collect(span(2L, "foo"));
+    collector.collect(span(1L, "bar"));
+    collector.collect(new Span().setTrace_id(2L).setId(3L).setName("baz"));
+    collector.flush(); // manually flush the spans
+
+    assertThat(producer.history()).hasSize(1);
+    assertThat(Codec.THRIFT.readSpans(producer.history().get(0).value())).containsExactly(
+        zipkinSpan(2L, "foo"),
+        zipkinSpan(1L, "bar"),
+        zipkin.Span.builder().traceId(2L).id(3L).name("baz").build()
+    );
+  }
+
+  @Test
+  public void partitionByTraceId_sendsUnpartitionedWhenMetadataFails() throws Exception {
+    MockProducer producer = new MockProducer(true) {
+      @Override public List<PartitionInfo> partitionsFor(String topic) {
+        throw new org.apache.kafka.common.errors.TimeoutException("Failed to update metadata");
+      }
+    };
+    KafkaSpanCollector collector = new KafkaSpanCollector(
+        Config.builder("localhost:1").flushInterval(0).partitionByTraceId(true).build(),
+        metrics, producer);
+
+    collector.collect(span(1L, "foo"));
+    collector.collect(span(2L, "bar"));
+    collector.flush(); // manually flush the spans
+
+    assertThat(producer.history()).hasSize(1);
+    assertThat(producer.history().get(0).partition()).isNull();
+    assertThat(Codec.THRIFT.readSpans(producer.history().get(0).value()))
+        .containsExactly(zipkinSpan(1L, "foo"), zipkinSpan(2L, "bar"));
+    assertThat(metrics.droppedSpans.get()).isZero();
+  }
+
+  @Test
+  public void partition_matchesDefaultPartitioner() throws Exception {
+    Cluster cluster = cluster("zipkin", 7);
+    Partitioner partitioner = new Partitioner();
+
+    Random random = new Random();
+    for (int i = 0; i < 100; i++) {
+      long traceId = random.nextLong();
+      ProducerRecord<byte[], byte[]> record = new ProducerRecord<byte[], byte[]>("zipkin",
+          KafkaSpanCollector.traceIdKey(traceId), new byte[0]);
+      assertThat(KafkaSpanCollector.partition(traceId, 7))
+          .isEqualTo(partitioner.partition(record, cluster));
+    }
+  }
+
+  static Cluster cluster(String topic, int partitionCount) {
+    Node node = new Node(0, "localhost", 9092);
+    List<PartitionInfo> partitions = new ArrayList<>();
+    for (int i = 0; i < partitionCount; i++) {
+      partitions.add(new PartitionInfo(topic, i, node, new Node[] {node}, new Node[] {node}));
+    }
+    return new Cluster(asList(node), partitions);
+  }
+
+  @Test
+  public void partitionByTraceId_disabledByDefault() throws Exception {
+    MockProducer producer = new MockProducer(true);
+    KafkaSpanCollector collector = new KafkaSpanCollector(config, metrics, producer);
+
+    collector.collect(span(2L, "foo"));
+    collector.collect(span(1L, "bar"));
+    collector.flush(); // manually flush the spans
+
+    assertThat(producer.history()).hasSize(1);
+    assertThat(producer.history().get(0).key()).isNull();
+  }
+
   class TestMetricsHander implements SpanCollectorMetricsHandler {
 
     final AtomicInteger acceptedSpans = new AtomicInteger();
@@ -3,6 +3,7 @@ package com.github.kristofa.brave.local;
 import com.github.kristofa.brave.EmptySpanCollectorMetricsHandler;
 import com.github.kristofa.brave.FlushingSpanCollector;
 import com.github.kristofa.brave.SpanCollectorMetricsHandler;
+import com.github.kristofa.brave.SpanQueue;
 import com.google.auto.value.AutoValue;
 import com.twitter.zipkin.gen.Span;
 import java.io.IOException;
@@ -21,16 +22,34 @@ public final class LocalSpanCollector extends FlushingSpanCollector {
   public static abstract class Config {
     public static Builder builder() {
       return new AutoValue_LocalSpanCollector_Config.Builder()
-          .flushInterval(1);
+          .flushInterval(1)
+          .queuedMaxSpans(SpanQueue.DEFAULT_MAX_SPANS)
+          .queuedMaxBytes(SpanQueue.DEFAULT_MAX_BYTES);
     }
 
     abstract int flushInterval();
 
+    abstract int queuedMaxSpans();
+
+    abstract long queuedMaxBytes();
+
     @AutoValue.Builder
     public interface Builder {
       /** Default 1 second. 0 implies spans are {@link #flush() flushed} externally. */
       Builder flushInterval(int flushInterval);
 
+      /**
+       * Maximum count of spans pending report. Spans collected once this is reached are dropped.
+       * Default {@link SpanQueue#DEFAULT_MAX_SPANS}.
+       */
+      Builder queuedMaxSpans(int queuedMaxSpans);
+
+      /**
+       * Maximum estimated encoded size of spans pending report. Spans collected once this is
+       * reached are dropped. Default {@link SpanQueue#DEFAULT_MAX_BYTES}: 1% of the heap.
+       */
+      Builder queuedMaxBytes(long queuedMaxBytes);
+
       Config build();
     }
   }
@@ -64,7 +83,8 @@ public final class LocalSpanCollector extends FlushingSpanCollector {
   // Visible for testing. Ex when tests need to explicitly control flushing, set interval to 0.
   LocalSpanCollector(StorageComponent storageComponent, Config config,
       SpanCollectorMetricsHandler metrics) {
-    super(metrics, config.flushInterval());
+    super(metrics, config.flushInterval(),
+        SpanQueue.create(config.queuedMaxSpans(), config.queuedMaxBytes()));
     this.storageComponent = storageComponent;
     this.metrics = metrics;
   }
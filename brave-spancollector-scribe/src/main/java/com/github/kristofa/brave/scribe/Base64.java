@@ -1,6 +1,7 @@
 package com.github.kristofa.brave.scribe;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 
 /**
  * Adapted from <a href="https://github.com/square/okio/blob/master/okio/src/main/java/okio/Base64.java">okio</a>
@@ -18,16 +19,25 @@ final class Base64 {
   };
 
   static String encode(byte[] in) {
-    int length = (in.length + 2) * 4 / 3;
+    return encode(in, 0, in.length);
+  }
+
+  /** Encodes the bytes between the buffer's position and limit, which must be array-backed. */
+  static String encode(ByteBuffer in) {
+    return encode(in.array(), in.arrayOffset() + in.position(), in.remaining());
+  }
+
+  static String encode(byte[] in, int offset, int count) {
+    int length = (count + 2) * 4 / 3;
     byte[] out = new byte[length];
-    int index = 0, end = in.length - in.length % 3;
-    for (int i = 0; i < end; i += 3) {
+    int index = 0, end = offset + count - count % 3;
+    for (int i = offset; i < end; i += 3) {
       out[index++] = MAP[(in[i] & 0xff) >> 2];
       out[index++] = MAP[((in[i] & 0x03) << 4) | ((in[i + 1] & 0xff) >> 4)];
       out[index++] = MAP[((in[i + 1] & 0x0f) << 2) | ((in[i + 2] & 0xff) >> 6)];
       out[index++] = MAP[(in[i + 2] & 0x3f)];
     }
-    switch (in.length % 3) {
+    switch (count % 3) {
       case 1:
         out[index++] = MAP[(in[end] & 0xff) >> 2];
         out[index++] = MAP[(in[end] & 0x03) << 4];
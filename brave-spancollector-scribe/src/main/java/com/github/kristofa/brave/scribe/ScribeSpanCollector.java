@@ -80,7 +80,7 @@ public class ScribeSpanCollector implements SpanCollector, Closeable {
             ScribeClientProvider clientProvider = createZipkinCollectorClientProvider(host,
                     port, params);
             final SpanProcessingThread spanProcessingThread = new SpanProcessingThread(spanQueue, clientProvider,
-                    params.getBatchSize(), metricsHandler);
+                    params.getBatchSize(), params.getLingerMillis(), metricsHandler);
             spanProcessingThreads.add(spanProcessingThread);
             clientProviders.add(clientProvider);
             futures.add(executorService.submit(spanProcessingThread));
@@ -13,6 +13,7 @@ import static com.github.kristofa.brave.internal.Util.checkNotNull;
  * <li>queue size: Size of the queue that is used as buffer between producers of spans and the thread(s) that submit the
  * spans to collector.</li>
  * <li>batch size: The maximum number of spans that is submitted at once to collector of spans.</li>
+ * <li>linger: Time in milliseconds to wait for a batch to fill, once it has a span.</li>
  * <li>number of threads: The number of parallel threads for submitting spans to collector.</li>
  * <li>socket time out: Time in milliseconds after which our socket connections will time out. When it times out an exception
  * will be thrown.</li>
@@ -29,9 +30,11 @@ public class ScribeSpanCollectorParams {
     public int DEFAULT_BATCH_SIZE = 10;
     public int DEFAULT_NR_OF_THREADS = 1;
     public int DEFAULT_SOCKET_TIMEOUT = 5000;
+    public int DEFAULT_LINGER_MILLIS = 1000;
 
     private int queueSize;
     private int batchSize;
+    private int lingerMillis;
     private int nrOfThreads;
     private int socketTimeout;
     private boolean failOnSetup = true;
@@ -43,6 +46,7 @@ public class ScribeSpanCollectorParams {
     public ScribeSpanCollectorParams() {
         queueSize = DEFAULT_QUEUE_SIZE;
         batchSize = DEFAULT_BATCH_SIZE;
+        lingerMillis = DEFAULT_LINGER_MILLIS;
         nrOfThreads = DEFAULT_NR_OF_THREADS;
         socketTimeout = DEFAULT_SOCKET_TIMEOUT;
     }
@@ -86,6 +90,27 @@ public class ScribeSpanCollectorParams {
         this.batchSize = batchSize;
     }
 
+    /**
+     * Gets the linger time.
+     *
+     * @return Linger time in milliseconds.
+     */
+    public int getLingerMillis() {
+        return lingerMillis;
+    }
+
+    /**
+     * Sets how long to wait for a batch to fill, once it has a span. A batch is submitted when it reaches the batch size
+     * or this time elapses, whichever is first. Lower values reduce latency to collector at low volume, at the cost of
+     * smaller batches.
+     *
+     * @param lingerMillis Linger time in milliseconds. 0 submits whatever spans are queued immediately.
+     */
+    public void setLingerMillis(final int lingerMillis) {
+        if (lingerMillis < 0) throw new IllegalArgumentException("lingerMillis must not be negative");
+        this.lingerMillis = lingerMillis;
+    }
+
     /**
      * Gets the number of threads.
      * 
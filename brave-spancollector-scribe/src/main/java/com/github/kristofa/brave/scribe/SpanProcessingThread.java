@@ -1,18 +1,22 @@
 package com.github.kristofa.brave.scribe;
 
-import com.twitter.zipkin.gen.SpanCodec;
+import com.github.kristofa.brave.internal.Buffer;
+import com.github.kristofa.brave.internal.StreamingSpanCodec;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.github.kristofa.brave.SpanCollectorMetricsHandler;
 import org.apache.thrift.TException;
-import org.apache.thrift.protocol.TBinaryProtocol;
-import org.apache.thrift.protocol.TProtocolFactory;
 
 import com.twitter.zipkin.gen.LogEntry;
 import com.twitter.zipkin.gen.Span;
@@ -26,8 +30,11 @@ import static java.lang.String.format;
  * spans from a queue. The spans are produced by {@link ScribeSpanCollector} put on a queue and consumed and processed by
  * this thread.
  * <p/>
- * We will try to buffer spans and send them in batches to minimize communication overhead. However if the batch size is not
- * reached within 2 polls (max 10 seconds) the available spans will be sent over anyway.
+ * Spans are taken from the queue in bulk. Once a span is available, we linger for more, sending a batch once it reaches
+ * the max batch size or the linger time elapses, whichever is first.
+ * <p/>
+ * Batches are encoded on this thread and sent on another, so that encoding a batch overlaps with sending the previous
+ * one. At most one batch is in flight at a time.
  * 
  * @see ScribeSpanCollector
  * @author kristof
@@ -35,16 +42,19 @@ import static java.lang.String.format;
 class SpanProcessingThread implements Callable<Integer> {
 
     private static final Logger LOGGER = Logger.getLogger(SpanProcessingThread.class.getName());
-    private static final int MAX_SUBSEQUENT_EMPTY_BATCHES = 2;
+    private static final int POLL_TIMEOUT_SECONDS = 5;
 
     private final BlockingQueue<Span> queue;
     private final ScribeClientProvider clientProvider;
-    private final TProtocolFactory protocolFactory;
     private final SpanCollectorMetricsHandler metricsHandler;
     private volatile boolean stop = false;
-    private int processedSpans = 0;
-    private final List<LogEntry> logEntries;
+    // only written by the sender, after spans are logged successfully
+    private volatile int processedSpans = 0;
+    private final List<Span> spans;
     private final int maxBatchSize;
+    private final long lingerNanos;
+    private final ExecutorService sender;
+    private Future<?> inFlight;
 
     /**
      * Creates a new instance.
@@ -56,13 +66,36 @@ class SpanProcessingThread implements Callable<Integer> {
      */
     public SpanProcessingThread(final BlockingQueue<Span> queue, final ScribeClientProvider clientProvider,
         final int maxBatchSize, SpanCollectorMetricsHandler metricsHandler) {
+        this(queue, clientProvider, maxBatchSize, new ScribeSpanCollectorParams().getLingerMillis(), metricsHandler);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param queue BlockingQueue that will provide spans.
+     * @param clientProvider {@link ThriftClientProvider} that provides client used to submit spans to zipkin span collector.
+     * @param maxBatchSize Max batch size. Indicates how many spans we submit to collector in 1 go.
+     * @param lingerMillis Max time to wait for a batch to fill, once it has a span.
+     * @param metricsHandler Handler to be notified of span logging events.
+     */
+    public SpanProcessingThread(final BlockingQueue<Span> queue, final ScribeClientProvider clientProvider,
+        final int maxBatchSize, final int lingerMillis, SpanCollectorMetricsHandler metricsHandler) {
         if (maxBatchSize <= 0) throw new IllegalArgumentException("maxBatchSize must be positive");
+        if (lingerMillis < 0) throw new IllegalArgumentException("lingerMillis must not be negative");
         this.queue = checkNotNull(queue, "Null queue");
         this.clientProvider = checkNotNull(clientProvider, "Null clientProvider");
         this.metricsHandler = checkNotNull(metricsHandler, "Null metricsHandler");
-        protocolFactory = new TBinaryProtocol.Factory();
         this.maxBatchSize = maxBatchSize;
-        logEntries = new ArrayList<LogEntry>(maxBatchSize);
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        spans = new ArrayList<Span>(maxBatchSize);
+        sender = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread thread = new Thread(r, "SpanProcessingThread-sender");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
     }
 
     /**
@@ -77,38 +110,76 @@ class SpanProcessingThread implements Callable<Integer> {
      */
     @Override
     public Integer call() {
-
-        int subsequentEmptyBatches = 0;
-        do {
-
-            try {
-                final Span span = queue.poll(5, TimeUnit.SECONDS);
-                if (span == null) {
-                    subsequentEmptyBatches++;
-
-                } else {
-                    logEntries.add(create(span));
+        try {
+            do {
+                try {
+                    nextBatch();
+                    if (!spans.isEmpty()) {
+                        final List<LogEntry> logEntries = create(spans);
+                        spans.clear();
+                        send(logEntries);
+                    }
+                } catch (final Exception e) {
+                    LOGGER.log(Level.WARNING, "Unexpected exception flushing spans", e);
                 }
+            } while (stop == false);
+            awaitInFlight();
+        } finally {
+            sender.shutdown();
+        }
+        return processedSpans;
+    }
 
-                if (subsequentEmptyBatches >= MAX_SUBSEQUENT_EMPTY_BATCHES && !logEntries.isEmpty()
-                    || logEntries.size() >= maxBatchSize || !logEntries.isEmpty() && stop) {
-                    log(logEntries);
-                    logEntries.clear();
-                    subsequentEmptyBatches = 0;
-                }
-            } catch (final Exception e) {
-                LOGGER.log(Level.WARNING, "Unexpected exception flushing spans", e);
+    /**
+     * Waits for a span, then for the batch to fill until the linger time elapses.
+     */
+    private void nextBatch() throws InterruptedException {
+        final Span first = queue.poll(POLL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        if (first == null) return;
+        spans.add(first);
+        final long deadline = System.nanoTime() + lingerNanos;
+        while (true) {
+            queue.drainTo(spans, maxBatchSize - spans.size());
+            if (spans.size() >= maxBatchSize || stop) return;
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return;
+            final Span next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) return;
+            spans.add(next);
+        }
+    }
+
+    /**
+     * Hands the batch to the sender, once the previous batch is sent.
+     */
+    private void send(final List<LogEntry> logEntries) {
+        awaitInFlight();
+        inFlight = sender.submit(new Runnable() {
+            @Override
+            public void run() {
+                log(logEntries);
             }
+        });
+    }
 
-        } while (stop == false);
-        return processedSpans;
+    private void awaitInFlight() {
+        if (inFlight == null) return;
+        try {
+            inFlight.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final ExecutionException e) {
+            LOGGER.log(Level.WARNING, "Unexpected exception flushing spans", e.getCause());
+        }
+        inFlight = null;
     }
 
     private void log(final List<LogEntry> logEntries) {
         final long start = System.currentTimeMillis();
         final boolean success = log(clientProvider.getClient(), logEntries);
+        if (!success) return;
         processedSpans += logEntries.size();
-        if (success && LOGGER.isLoggable(Level.FINE)) {
+        if (LOGGER.isLoggable(Level.FINE)) {
             final long end = System.currentTimeMillis();
             LOGGER.fine("Submitting " + logEntries.size() + " spans to service took " + (end - start) + "ms.");
         }
@@ -137,8 +208,20 @@ class SpanProcessingThread implements Callable<Integer> {
         return false;
     }
 
-    private LogEntry create(final Span span) throws TException {
-        final String spanAsString = Base64.encode(SpanCodec.THRIFT.writeSpan(span));
+    private static List<LogEntry> create(final List<Span> spans) {
+        // a new list per batch, as the sender may still be using the previous one
+        final List<LogEntry> logEntries = new ArrayList<LogEntry>(spans.size());
+        for (final Span span : spans) {
+            logEntries.add(create(span));
+        }
+        return logEntries;
+    }
+
+    private static LogEntry create(final Span span) {
+        // encode into a reused buffer, as only the base64 string is retained
+        final Buffer buffer = Buffer.pooled();
+        StreamingSpanCodec.THRIFT.writeSpan(span, buffer);
+        final String spanAsString = Base64.encode(buffer.asByteBuffer());
         return new LogEntry("zipkin", spanAsString);
     }
 }
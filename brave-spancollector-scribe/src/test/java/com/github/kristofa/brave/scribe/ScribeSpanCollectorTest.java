@@ -2,6 +2,7 @@ package com.github.kristofa.brave.scribe;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.thrift.transport.TTransportException;
@@ -96,4 +97,32 @@ public class ScribeSpanCollectorTest {
 
     }
 
+    @Test
+    public void testBatchSentOnceLingerElapses() throws Exception {
+
+        final ScribeSpanCollectorParams params = new ScribeSpanCollectorParams();
+        params.setBatchSize(100);
+        params.setLingerMillis(50);
+        final ScribeSpanCollector scribeSpanCollector = new ScribeSpanCollector("localhost", PORT, params);
+        try {
+            for (long i = 1; i <= 3; i++) {
+                final Span span = new Span();
+                span.setId(i);
+                span.setTrace_id(TRACE_ID);
+                span.setName(SPAN_NAME);
+                scribeSpanCollector.collect(span);
+            }
+
+            // Before linger existed, a partial batch waited for two empty 5 second polls.
+            final List<Span> received = new ArrayList<Span>();
+            for (int i = 0; i < 100 && received.size() < 3; i++) {
+                Thread.sleep(10);
+                received.addAll(scribeServer.getReceivedSpans()); // drains
+            }
+            assertEquals(3, received.size());
+        } finally {
+            scribeSpanCollector.close();
+        }
+    }
+
 }